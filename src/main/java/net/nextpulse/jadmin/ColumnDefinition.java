@@ -1,5 +1,8 @@
 package net.nextpulse.jadmin;
 
+import net.nextpulse.jadmin.dao.ValueCodec;
+import net.nextpulse.jadmin.dao.ValueCodecs;
+import net.nextpulse.jadmin.dsl.BatchColumnValueTransformer;
 import net.nextpulse.jadmin.dsl.ColumnValueTransformer;
 import net.nextpulse.jadmin.dsl.InputTransformer;
 import net.nextpulse.jadmin.dsl.InputValidationRule;
@@ -32,6 +35,19 @@ public class ColumnDefinition {
   private List<InputValidationRule> validationRules = new ArrayList<>();
   private InputTransformer inputTransformer;
   private ColumnValueTransformer columnValueTransformer;
+  private BatchColumnValueTransformer batchColumnValueTransformer;
+  /**
+   * Codec used to bind user submitted values of this column, resolved from the column type if not set.
+   */
+  private ValueCodec valueCodec;
+  /**
+   * Resource referenced by this column through a foreign key, null if the column does not reference another resource.
+   */
+  private String referencedTable;
+  /**
+   * Column of the referenced resource shown instead of the raw value on the list page, null to show the raw value.
+   */
+  private String referenceLabelColumn;
 
   public ColumnDefinition() {
   }
@@ -117,4 +133,43 @@ public class ColumnDefinition {
     this.columnValueTransformer = columnValueTransformer;
     return this;
   }
+
+  public BatchColumnValueTransformer getBatchColumnValueTransformer() {
+    return batchColumnValueTransformer;
+  }
+
+  public ColumnDefinition setBatchColumnValueTransformer(BatchColumnValueTransformer batchColumnValueTransformer) {
+    this.batchColumnValueTransformer = batchColumnValueTransformer;
+    return this;
+  }
+
+  /**
+   * @return the codec used to bind values of this column, based on the column type if no codec was set
+   */
+  public ValueCodec getValueCodec() {
+    return valueCodec != null ? valueCodec : ValueCodecs.forColumnType(type);
+  }
+
+  public ColumnDefinition setValueCodec(ValueCodec valueCodec) {
+    this.valueCodec = valueCodec;
+    return this;
+  }
+
+  public String getReferencedTable() {
+    return referencedTable;
+  }
+
+  public ColumnDefinition setReferencedTable(String referencedTable) {
+    this.referencedTable = referencedTable;
+    return this;
+  }
+
+  public String getReferenceLabelColumn() {
+    return referenceLabelColumn;
+  }
+
+  public ColumnDefinition setReferenceLabelColumn(String referenceLabelColumn) {
+    this.referenceLabelColumn = referenceLabelColumn;
+    return this;
+  }
 }
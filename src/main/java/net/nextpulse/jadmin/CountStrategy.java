@@ -0,0 +1,23 @@
+package net.nextpulse.jadmin;
+
+/**
+ * Enum used to indicate how the list page of a resource determines the total number of entries.
+ */
+public enum CountStrategy {
+  /**
+   * Always count the exact number of entries.
+   */
+  EXACT,
+  /**
+   * Use an estimate when the DAO can provide one cheaply, i.e. from database statistics, falling back to an exact count.
+   */
+  ESTIMATED,
+  /**
+   * Count exactly while the estimated number of entries is below the configured threshold, use the estimate above it.
+   */
+  THRESHOLD,
+  /**
+   * Skip counting altogether, the list page only offers navigation to the next page while pages are full.
+   */
+  NONE
+}
@@ -1,22 +1,42 @@
 package net.nextpulse.jadmin;
 
+import net.nextpulse.jadmin.dao.AbstractDAO;
 import net.nextpulse.jadmin.dao.DataAccessException;
 import net.nextpulse.jadmin.dao.DatabaseEntry;
+import net.nextpulse.jadmin.dao.EntryCallback;
+import net.nextpulse.jadmin.dao.KeysetCursor;
+import net.nextpulse.jadmin.dao.PageQuery;
+import net.nextpulse.jadmin.dao.RowCount;
 import net.nextpulse.jadmin.dsl.InputTransformer;
 import net.nextpulse.jadmin.dsl.InvalidInputException;
 import net.nextpulse.jadmin.exceptions.NotFoundException;
-import net.nextpulse.jadmin.helpers.DataPresentationHelper;
+import net.nextpulse.jadmin.helpers.DataTableStreamWriter;
 import net.nextpulse.jadmin.helpers.Path;
+import net.nextpulse.jadmin.helpers.RenderPlan;
+import net.nextpulse.jadmin.helpers.ResponseCache;
 import net.nextpulse.jadmin.views.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import spark.*;
 import spark.utils.StringUtils;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -30,6 +50,14 @@ public class CrudController {
   
   private final String prefix;
   private final Map<String, Resource> resources;
+  /**
+   * Executor used to retrieve the rows and the count of a list page concurrently, null to retrieve these sequentially.
+   */
+  private final ExecutorService queryExecutor;
+  /**
+   * Cache of encoded list responses, null if list responses should not be cached.
+   */
+  private final ResponseCache responseCache;
   
   /**
    * Lists the instances of a specific resource.
@@ -50,10 +78,14 @@ public class CrudController {
    * Default direction to use for sorting, true for ascending, false for descending //TODO: make this configurable per resource
    */
   private static final boolean DEFAULT_SORT_DIR = true;
+  /**
+   * Maximum length of the prefix used to search options, longer prefixes are truncated.
+   */
+  private static final int MAX_OPTION_PREFIX_LENGTH = 100;
   
   /**
    * JSON API that returns the instances found for the provided resource, providing the data feed for the DataTables
-   * frontend.
+   * frontend. The response is written while the rows are retrieved, rather than being built in memory first.
    */
   public Route listJsonRoute = (request, response) -> {
     logger.trace("GET {}", request.uri());
@@ -72,11 +104,111 @@ public class CrudController {
     boolean sortDirection = Optional.ofNullable(sortByColumn.get("dir").value()).map(x -> x.equals("asc")).orElse(DEFAULT_SORT_DIR);
     
     logger.trace("ListJson: offset {}, count {}, sortBy {} in {}", offset, count, sortByColumnNr, sortDirection);
-    List<DatabaseEntry> rows = resource.getDao().selectMultiple(offset, count, resource.getIndexColumns().get(sortByColumnNr), sortDirection);
-    logger.trace("Received {} entries from the dao", rows.size());
-    // ensure we only include the columns that should be available on the list page
-    List<Map<String, Object>> filteredRows = DataPresentationHelper.transformDatabaseResults(resource, rows);
-    return new DataTableResponse(draw, filteredRows, resource.getDao().count());
+    RenderPlan plan = resource.getRenderPlan();
+    String sortColumn = plan.getIndexColumns().get(sortByColumnNr);
+    // only retrieve the columns shown on the list page and those needed to identify the rows
+    PageQuery query = new PageQuery(offset, count, sortColumn, sortDirection).setColumns(plan.getProjection());
+    boolean keyset = resource.getPaginationMode() == PaginationMode.KEYSET;
+    if(keyset) {
+      KeysetCursor.decode(request.queryParams("cursor")).ifPresent(query::setCursor);
+    }
+    
+    HttpServletResponse rawResponse = response.raw();
+    ResponseCache responseCache = getResponseCache();
+    if(responseCache != null) {
+      // cached pages are written to a buffer first, as the page is only cached once it was written successfully
+      String page = offset + "/" + count + "/" + sortColumn + "/" + sortDirection + "/" + (keyset ? request.queryParams("cursor") : "");
+      long generation = responseCache.getGeneration(resource.getTableName());
+      ByteBuffer body = responseCache.get(resource.getTableName(), generation, page);
+      if(body == null) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeListResponse(resource, query, 0, new DataTableStreamWriter(resource, new OutputStreamWriter(buffer, StandardCharsets.UTF_8)));
+        body = responseCache.put(resource.getTableName(), generation, page, buffer.toByteArray());
+      }
+      ResponseCache.write(body, draw, rawResponse.getOutputStream());
+      rawResponse.flushBuffer();
+      return "";
+    }
+    
+    DataTableStreamWriter writer = new DataTableStreamWriter(resource, new OutputStreamWriter(rawResponse.getOutputStream(), StandardCharsets.UTF_8));
+    try {
+      writeListResponse(resource, query, draw, writer);
+    } catch(Exception e) {
+      if(rawResponse.isCommitted()) {
+        // part of the response was already sent, ending with the error if the entries could not be retrieved
+        logger.error("Exception while streaming the list response of {}", resource.getTableName(), e);
+        return "";
+      }
+      rawResponse.resetBuffer();
+      throw e;
+    }
+    // commit the response, Spark does not write a body for committed responses
+    rawResponse.flushBuffer();
+    return "";
+  };
+  
+  /**
+   * Writes the list response for the page described by the query.
+   *
+   * @param resource resource to list
+   * @param query    description of the page to retrieve
+   * @param draw     security token sent in the request
+   * @param writer   writer to send the response to
+   * @throws Exception if the entries could not be retrieved or the response could not be written
+   */
+  private void writeListResponse(Resource resource, PageQuery query, int draw, DataTableStreamWriter writer) throws Exception {
+    RenderPlan plan = resource.getRenderPlan();
+    int count = (int) query.getCount();
+    writer.begin(draw);
+    RowCount rowCount;
+    try {
+      if(plan.hasBatchTransformers()) {
+        // batch transformers operate on the complete page, buffer the rows before writing them
+        List<DatabaseEntry> rows = new ArrayList<>(count);
+        rowCount = streamPage(resource, query, rows::add);
+        writer.writeRows(rows, getTransformExecutor());
+      } else {
+        rowCount = streamPage(resource, query, writer::writeRow);
+      }
+    } catch(DataAccessException e) {
+      // rows may have been sent already, complete the response with the error so the client can show it
+      try {
+        writer.fail(e.getMessage());
+      } catch(IOException writeFailure) {
+        e.addSuppressed(writeFailure);
+      }
+      throw e;
+    }
+    logger.trace("Received {} entries from the dao", writer.getRowCount());
+    
+    String cursor = null;
+    if(resource.getPaginationMode() == PaginationMode.KEYSET && writer.getLastEntry() != null) {
+      cursor = KeysetCursor.after(writer.getLastEntry(), query.getSortColumn(), plan.getKeyColumns())
+          .map(KeysetCursor::encode)
+          .orElse(null);
+    }
+    writer.end(countReportedRecords(rowCount, (int) query.getOffset(), writer.getRowCount(), count), rowCount.isEstimated(), rowCount.isUnknown(), cursor);
+  }
+  
+  /**
+   * Returns the entries of a resource of which the label column starts with the requested prefix, used by the
+   * typeahead fields of resources referencing it. Responds with a list of (key, label) tuples. Only the label columns
+   * shown by other resources may be searched, so other columns cannot be enumerated.
+   */
+  public Route listOptionsRoute = (request, response) -> {
+    logger.trace("GET {}", request.uri());
+    response.type("application/json");
+    Resource resource = request.attribute("resourceSchemaProvider");
+    String labelColumn = request.queryParams("label");
+    if(labelColumn == null || !resource.getReferenceLabels().isLabelColumn(labelColumn)
+        || !resource.findColumnDefinitionByName(labelColumn).isPresent() || resource.getPrimaryKeys().size() != 1) {
+      throw new NotFoundException();
+    }
+    String prefix = StringUtils.isEmpty(request.queryParams("q")) ? "" : request.queryParams("q");
+    if(prefix.length() > MAX_OPTION_PREFIX_LENGTH) {
+      prefix = prefix.substring(0, MAX_OPTION_PREFIX_LENGTH);
+    }
+    return resource.getReferenceLabels().search(labelColumn, prefix);
   };
   
   /**
@@ -112,6 +244,8 @@ public class CrudController {
     
     try {
       resource.getDao().update(postEntry);
+      resource.getReferenceLabels().invalidate();
+      invalidateResponses(resource);
     } catch(DataAccessException e) {
       logger.error("DataAccessException while updating existing row", e);
       return new EditPost(false, e.getMessage());
@@ -127,6 +261,8 @@ public class CrudController {
     String keys = request.params(":ids");
     try {
       resource.getDao().delete((Object[]) keys.split("/"));
+      resource.getReferenceLabels().invalidate();
+      invalidateResponses(resource);
     } catch(DataAccessException e) {
       logger.error("DataAccessException while deleting row", e);
       return new EditPost(false, e.getMessage());
@@ -160,6 +296,8 @@ public class CrudController {
     
     try {
       resource.getDao().insert(postEntry);
+      resource.getReferenceLabels().invalidate();
+      invalidateResponses(resource);
     } catch(DataAccessException e) {
       logger.error("DataAccessException while inserting a new row", e);
       return new EditPost(false, e.getMessage());
@@ -180,8 +318,161 @@ public class CrudController {
    * @param resources map of resources set up for JAdmin
    */
   public CrudController(String prefix, Map<String, Resource> resources) {
+    this(prefix, resources, null);
+  }
+  
+  /**
+   * Constructor for this class, used internally.
+   *
+   * @param prefix        path prefix to use, i.e. '/admin'
+   * @param resources     map of resources set up for JAdmin
+   * @param queryExecutor executor used to retrieve the rows and the count of list pages concurrently, may be null
+   */
+  public CrudController(String prefix, Map<String, Resource> resources, ExecutorService queryExecutor) {
+    this(prefix, resources, queryExecutor, null);
+  }
+  
+  /**
+   * Constructor for this class, used internally.
+   *
+   * @param prefix        path prefix to use, i.e. '/admin'
+   * @param resources     map of resources set up for JAdmin
+   * @param queryExecutor executor used to retrieve the rows and the count of list pages concurrently, may be null
+   * @param responseCache cache of encoded list responses, may be null
+   */
+  public CrudController(String prefix, Map<String, Resource> resources, ExecutorService queryExecutor, ResponseCache responseCache) {
     this.prefix = prefix;
     this.resources = resources;
+    this.queryExecutor = queryExecutor;
+    this.responseCache = responseCache;
+  }
+  
+  /**
+   * Discards the cached list responses of the resource and of the resources referencing it, which may show labels of
+   * its entries.
+   *
+   * @param resource resource that was changed
+   */
+  private void invalidateResponses(Resource resource) {
+    if(responseCache == null) {
+      return;
+    }
+    responseCache.invalidate(resource.getTableName());
+    for(Resource other : resources.values()) {
+      // schema metadata may report the referenced table name in a different case, as when resolving the references
+      if(other != resource && other.isMaterialized() && other.getColumnDefinitions().stream()
+          .anyMatch(column -> resource.getTableName().equalsIgnoreCase(column.getReferencedTable()))) {
+        responseCache.invalidate(other.getTableName());
+      }
+    }
+  }
+  
+  /**
+   * Used by the routes, which are initialized before the constructor assigns the final field and may not refer to it.
+   *
+   * @return the cache of encoded list responses, null if list responses are not cached
+   */
+  private ResponseCache getResponseCache() {
+    return responseCache;
+  }
+  
+  /**
+   * @return the executor used to run the batch column transformers of different columns in parallel
+   */
+  private Executor getTransformExecutor() {
+    return queryExecutor != null ? queryExecutor : ForkJoinPool.commonPool();
+  }
+  
+  /**
+   * Passes the rows of a list page to the callback and returns the number of entries. When a query executor is
+   * configured the entries are counted concurrently, cancelling the count as soon as the retrieval of the rows fails.
+   * Rows are passed on as soon as they are retrieved, so a failing count is only reported after all rows reached the
+   * callback.
+   *
+   * @param resource resource to retrieve the page of
+   * @param query    description of the page to retrieve
+   * @param callback callback receiving the rows in order
+   * @param <E>      type of exception thrown by the callback
+   * @return the number of entries
+   * @throws DataAccessException if an error occurred while retrieving or counting the entries
+   * @throws E                   if the callback failed
+   */
+  <E extends Exception> RowCount streamPage(Resource resource, PageQuery query, EntryCallback<E> callback) throws DataAccessException, E {
+    AbstractDAO dao = resource.getDao();
+    CountStrategy countStrategy = resource.getCountStrategy();
+    if(queryExecutor == null || countStrategy == CountStrategy.NONE) {
+      return dao.streamPage(query, countStrategy, resource.getCountThreshold(), callback);
+    }
+    
+    CountTask countTask = new CountTask(dao, countStrategy, resource.getCountThreshold());
+    Future<RowCount> countFuture = queryExecutor.submit(countTask);
+    try {
+      dao.streamMultiple(query, callback);
+      return countFuture.get();
+    } catch(ExecutionException e) {
+      Throwable cause = e.getCause();
+      if(cause instanceof DataAccessException) {
+        throw (DataAccessException) cause;
+      } else if(cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if(cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new DataAccessException("Could not count the entries", (Exception) cause);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DataAccessException("Interrupted while counting the entries", e);
+    } finally {
+      // has no effect on a completed count, stops the count if retrieving the rows failed
+      countTask.cancel();
+      countFuture.cancel(true);
+    }
+  }
+  
+  /**
+   * Counts the entries of a resource on the query executor. Cancelling the task cancels the query of a running count,
+   * which interrupting the executing thread does not.
+   */
+  private static class CountTask implements Callable<RowCount> {
+    private final AbstractDAO dao;
+    private final CountStrategy strategy;
+    private final int threshold;
+    private Thread thread;
+    private boolean cancelled = false;
+    
+    CountTask(AbstractDAO dao, CountStrategy strategy, int threshold) {
+      this.dao = dao;
+      this.strategy = strategy;
+      this.threshold = threshold;
+    }
+    
+    @Override
+    public RowCount call() throws DataAccessException {
+      synchronized(this) {
+        if(cancelled) {
+          throw new CancellationException();
+        }
+        thread = Thread.currentThread();
+      }
+      try {
+        return dao.count(strategy, threshold);
+      } finally {
+        // the thread is released under the lock, so a concurrent cancel never reaches the next task of the thread
+        synchronized(this) {
+          thread = null;
+        }
+      }
+    }
+    
+    /**
+     * Prevents the count from starting, or cancels its query when it is running.
+     */
+    synchronized void cancel() {
+      cancelled = true;
+      if(thread != null) {
+        dao.cancelCount(thread);
+      }
+    }
   }
   
   /**
@@ -194,6 +485,23 @@ public class CrudController {
     return new TemplateObject(prefix, new ArrayList<>(resources.keySet()), table);
   }
   
+  /**
+   * Determines the total number of records to report to DataTables.
+   *
+   * @param rowCount number of entries of the resource
+   * @param offset   offset of the requested page
+   * @param rows     number of rows on the page
+   * @param count    requested page length
+   * @return the number of records to report
+   */
+  private static int countReportedRecords(RowCount rowCount, int offset, int rows, int count) {
+    if(rowCount.isUnknown()) {
+      // report one more record than we've seen while the page is full, allowing the client to continue to the next page
+      return offset + rows + (rows == count ? 1 : 0);
+    }
+    return rowCount.getValue();
+  }
+  
   /**
    * Construct a new FormPostEntry from the user provided data, filtered down to only include editable fields and the object keys.
    *
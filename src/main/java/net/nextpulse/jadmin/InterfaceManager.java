@@ -1,16 +1,26 @@
 package net.nextpulse.jadmin;
 
+import com.google.common.io.CharStreams;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import freemarker.cache.ClassTemplateLoader;
+import freemarker.cache.MruCacheStorage;
 import freemarker.cache.MultiTemplateLoader;
 import freemarker.cache.TemplateLoader;
+import freemarker.core.Environment;
 import freemarker.template.Configuration;
 import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+import freemarker.template.TemplateNotFoundException;
+import net.nextpulse.jadmin.dao.AbstractDAO;
+import net.nextpulse.jadmin.dao.DataAccessException;
 import net.nextpulse.jadmin.exceptions.NotFoundException;
 import net.nextpulse.jadmin.filters.Filters;
 import net.nextpulse.jadmin.helpers.I18n;
 import net.nextpulse.jadmin.helpers.Path;
+import net.nextpulse.jadmin.helpers.ResponseCache;
+import net.nextpulse.jadmin.helpers.templatemethods.AssetPath;
 import net.nextpulse.jadmin.helpers.templatemethods.I18nTranslate;
 import net.nextpulse.jadmin.helpers.templatemethods.I18nTranslateSimpleFallback;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -19,7 +29,16 @@ import org.apache.logging.log4j.Logger;
 import spark.Service;
 import spark.template.freemarker.FreeMarkerEngine;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Top level handler for all things related to the interface with the outside world. This class initializes the Spark
@@ -31,6 +50,19 @@ public class InterfaceManager {
    * Shared Gson instance, configured to serialize null values as well
    */
   private static final Gson gson = new GsonBuilder().serializeNulls().create();
+  /**
+   * Templates parsed during the warm-up, including the form element templates included by the edit page.
+   */
+  private static final List<String> WARM_UP_TEMPLATES = Arrays.asList(
+      Path.Template.JADMIN_INDEX, Path.Template.LIST, Path.Template.EDIT, "template.ftl",
+      "includes/head.ftl", "includes/navbar.ftl", "includes/sidebar.ftl", "includes/breadcrumb.ftl",
+      "includes/footer.ftl", "includes/scripts.ftl",
+      "form/buttons.ftl", "form/checkbox.ftl", "form/datetime.ftl", "form/group.ftl", "form/input.ftl",
+      "form/paragraph.ftl", "form/select.ftl", "form/typeahead.ftl");
+  /**
+   * Templates of the pages, which refer to the bundles of static files they include.
+   */
+  private static final List<String> PAGE_TEMPLATES = Arrays.asList(Path.Template.JADMIN_INDEX, Path.Template.LIST, Path.Template.EDIT);
   /**
    * Flag to indicate whether JAdmin is running in stand alone mode or as part of an existing Spark app; in the latter
    * case we have to be careful not to overwrite any existing settings.
@@ -48,6 +80,21 @@ public class InterfaceManager {
   private Map<String, Resource> resources;
   private Configuration freemarkerConfiguration = new Configuration(Configuration.VERSION_2_3_23);
   private FreeMarkerEngine freeMarkerEngine = new FreeMarkerEngine(freemarkerConfiguration);
+  /**
+   * Optional executor used to run the queries of a list page concurrently.
+   */
+  private ExecutorService queryExecutor;
+  private ResponseCache responseCache;
+  private StaticFileServer fileServer;
+  /**
+   * Optional path of the readiness check, null if no readiness check should be exposed.
+   */
+  private String readinessPath;
+  private volatile boolean warmedUp = false;
+  /**
+   * Set once all readiness checks passed, after which the data stores are no longer checked.
+   */
+  private volatile boolean ready = false;
   
   InterfaceManager(Map<String, Resource> resources) {
     this.resources = resources;
@@ -61,6 +108,11 @@ public class InterfaceManager {
     // include our template as default import
     freemarkerConfiguration.addAutoImport("root", "template.ftl");
     
+    // templates are packaged with the application, keep them parsed rather than checking them for changes unless
+    // configured otherwise through JAdmin.setTemplateUpdateDelay
+    freemarkerConfiguration.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+    freemarkerConfiguration.setCacheStorage(new MruCacheStorage(WARM_UP_TEMPLATES.size() * 2, Integer.MAX_VALUE));
+    
     // register i() as translation function
     freemarkerConfiguration.setSharedVariable("i", new I18nTranslate());
     
@@ -117,6 +169,10 @@ public class InterfaceManager {
     freemarkerConfiguration.setDateFormat(I18n.get("format.time"));
     freemarkerConfiguration.setSharedVariable("prefix", new SimpleScalar(prefix));
     
+    // load the static files, allowing templates to refer to their fingerprinted paths through asset()
+    fileServer = new StaticFileServer(prefix);
+    freemarkerConfiguration.setSharedVariable("asset", new AssetPath(fileServer));
+    
     // ensure the urls are consistently without trailing slash
     configureFilters();
     configureRoutes();
@@ -129,7 +185,6 @@ public class InterfaceManager {
    */
   private void configureFilters() {
     // configure the static file location for JAdmin as before filter, intercepting any calls to static files.
-    final StaticFileServer fileServer = new StaticFileServer(prefix);
     spark.before((request, response) -> {
       if(fileServer.consume(request.raw(), response.raw())) {
         throw spark.halt();
@@ -147,9 +202,11 @@ public class InterfaceManager {
    * Sets up the Spark configuration for the available HTTP routes.
    */
   private void configureRoutes() {
-    CrudController controller = new CrudController(prefix, resources);
+    CrudController controller = new CrudController(prefix, resources, queryExecutor, responseCache);
     spark.path(prefix, () -> {
-      spark.get(Path.Route.LIST_ROWS_JSON, controller.listJsonRoute, gson::toJson);
+      // the list JSON route writes its own response body
+      spark.get(Path.Route.LIST_ROWS_JSON, controller.listJsonRoute);
+      spark.get(Path.Route.LIST_OPTIONS_JSON, controller.listOptionsRoute, gson::toJson);
       spark.get(Path.Route.LIST_ROWS, controller.listRoute, freeMarkerEngine);
       spark.get(Path.Route.CREATE_ROW, controller.createRoute, freeMarkerEngine);
       spark.post(Path.Route.CREATE_ROW, controller.createPostRoute, gson::toJson);
@@ -163,6 +220,18 @@ public class InterfaceManager {
       });
     });
     
+    if(readinessPath != null) {
+      spark.get(readinessPath, (request, response) -> {
+        List<String> problems = checkReadiness();
+        response.type("text/plain");
+        if(!problems.isEmpty()) {
+          response.status(503);
+          return String.join("\n", problems);
+        }
+        return "ready";
+      });
+    }
+    
     if(standAlone) {
       spark.get("*", ((request, response) -> {
         throw new NotFoundException();
@@ -170,6 +239,91 @@ public class InterfaceManager {
     }
   }
   
+  /**
+   * Parses the templates, creates the bundles of static files used by the pages and waits for the server to start, so
+   * the first requests do not pay for either. When a readiness check is exposed the lazily registered resources are
+   * materialized as well, as the check should only pass once every resource can be used.
+   */
+  void warmUp() {
+    long start = System.nanoTime();
+    if(readinessPath != null) {
+      for(Resource resource : resources.values()) {
+        try {
+          resource.materialize();
+        } catch(DataAccessException e) {
+          logger.warn("Could not materialize resource {}, retrying on the next readiness check", resource.getTableName(), e);
+        }
+      }
+    }
+    for(String templateName : WARM_UP_TEMPLATES) {
+      try {
+        freemarkerConfiguration.getTemplate(templateName);
+      } catch(TemplateNotFoundException e) {
+        logger.debug("Template {} does not exist, skipping", templateName);
+      } catch(IOException e) {
+        logger.warn("Could not parse template {}", templateName, e);
+      }
+    }
+    createBundles();
+    if(standAlone) {
+      spark.awaitInitialization();
+    }
+    warmedUp = true;
+    logger.debug("Warmed up in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+  
+  /**
+   * Renders the page templates without a data model, discarding the output and the errors caused by the missing model.
+   * Bundles of static files are created when a page first refers to them, this ensures their paths can be served
+   * before this instance rendered a page, i.e. when the page was served by another instance or before a restart.
+   */
+  private void createBundles() {
+    for(String templateName : PAGE_TEMPLATES) {
+      try {
+        Environment environment = freemarkerConfiguration.getTemplate(templateName)
+            .createProcessingEnvironment(Collections.emptyMap(), CharStreams.nullWriter());
+        environment.setTemplateExceptionHandler(TemplateExceptionHandler.IGNORE_HANDLER);
+        environment.setLogTemplateExceptions(false);
+        environment.process();
+      } catch(TemplateNotFoundException e) {
+        logger.debug("Template {} does not exist, skipping", templateName);
+      } catch(IOException | TemplateException e) {
+        logger.warn("Could not create the static file bundles of template {}", templateName, e);
+      }
+    }
+  }
+  
+  /**
+   * Checks whether the warm-up completed, each resource was materialized and the data store of each resource is
+   * available, until all checks passed once. Resources that could not be materialized during the warm-up are retried.
+   *
+   * @return descriptions of the failed checks, empty if JAdmin is ready
+   */
+  private List<String> checkReadiness() {
+    if(ready) {
+      return Collections.emptyList();
+    }
+    List<String> problems = new ArrayList<>();
+    if(!warmedUp) {
+      problems.add("JAdmin is warming up");
+    }
+    Set<AbstractDAO> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+    for(Resource resource : resources.values()) {
+      try {
+        resource.materialize();
+      } catch(DataAccessException e) {
+        problems.add("Resource " + resource.getTableName() + " could not be materialized: " + e.getMessage());
+        continue;
+      }
+      AbstractDAO dao = resource.getDao();
+      if(checked.add(dao) && !dao.isAvailable()) {
+        problems.add("Data store of " + resource.getTableName() + " is unavailable");
+      }
+    }
+    ready = problems.isEmpty();
+    return problems;
+  }
+  
   /**
    * Configures the handlers that are invoked when an exception occurs.
    */
@@ -189,6 +343,33 @@ public class InterfaceManager {
     }
   }
   
+  /**
+   * Sets the executor used to run the queries of a list page concurrently, must be invoked before initialization.
+   *
+   * @param queryExecutor executor to use or null to run the queries sequentially
+   */
+  void setQueryExecutor(ExecutorService queryExecutor) {
+    this.queryExecutor = queryExecutor;
+  }
+  
+  /**
+   * Sets the cache of encoded list responses, must be invoked before initialization.
+   *
+   * @param responseCache cache to use or null to disable caching
+   */
+  void setResponseCache(ResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+  
+  /**
+   * Sets the path of the readiness check, must be invoked before initialization.
+   *
+   * @param readinessPath path to expose the readiness check on or null to disable it
+   */
+  void setReadinessPath(String readinessPath) {
+    this.readinessPath = readinessPath;
+  }
+  
   /**
    * Halts the Spark server.
    */
@@ -1,21 +1,36 @@
 package net.nextpulse.jadmin;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import freemarker.template.Configuration;
 import net.nextpulse.jadmin.dao.AbstractDAO;
 import net.nextpulse.jadmin.dao.GenericSQLDAO;
 import net.nextpulse.jadmin.dsl.ResourceBuilder;
 import net.nextpulse.jadmin.helpers.I18n;
 import net.nextpulse.jadmin.helpers.ResourceDecorator;
+import net.nextpulse.jadmin.helpers.ResponseCache;
 import net.nextpulse.jadmin.schema.GenericSQLSchemaProvider;
 import net.nextpulse.jadmin.schema.ResourceSchemaProvider;
+import net.nextpulse.jadmin.schema.SchemaCatalog;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import spark.Service;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Main class for the JAdmin library. Provides user access to the configuration and performs the required initialization.
@@ -41,6 +56,22 @@ public class JAdmin {
    * Indicates whether the application has been initialized, after initialization certain settings may not be changed.
    */
   private boolean initialized = false;
+  /**
+   * Executor running the queries of a list page concurrently, null if these should run sequentially.
+   */
+  private ExecutorService queryExecutor;
+  /**
+   * Cache of encoded list responses, null if list responses should not be cached.
+   */
+  private ResponseCache responseCache;
+  /**
+   * Path of the readiness check, null if no readiness check should be exposed.
+   */
+  private String readinessPath;
+  /**
+   * Schema information shared by the resources of each data source.
+   */
+  private final Map<DataSource, SchemaCatalog> schemaCatalogs = new IdentityHashMap<>();
 
   /**
    * Initializes the Spark Admin application with the default /admin URL prefix.
@@ -60,8 +91,14 @@ public class JAdmin {
       logger.error("JAdmin was already initialized");
       throw new IllegalStateException("JAdmin was already initialized.");
     }
+    compileResources();
+    saveSchemaSnapshots();
+    interfaceManager.setQueryExecutor(queryExecutor);
+    interfaceManager.setResponseCache(responseCache);
+    interfaceManager.setReadinessPath(readinessPath);
     interfaceManager.initialize(prefix, port);
     initialized = true;
+    interfaceManager.warmUp();
   }
   
   /**
@@ -86,10 +123,26 @@ public class JAdmin {
       logger.error("JAdmin was already initialized");
       throw new IllegalStateException("JAdmin was already initialized.");
     }
+    compileResources();
+    saveSchemaSnapshots();
+    interfaceManager.setQueryExecutor(queryExecutor);
+    interfaceManager.setResponseCache(responseCache);
+    interfaceManager.setReadinessPath(readinessPath);
     interfaceManager.initialize(prefix, existingSpark);
     initialized = true;
+    interfaceManager.warmUp();
   }
 
+  /**
+   * Links the reference columns and freezes the configuration of all resources known at initialization, see
+   * {@link Resource#compile()}.
+   */
+  private void compileResources() {
+    List<Resource> materialized = resources.values().stream().filter(Resource::isMaterialized).collect(Collectors.toList());
+    materialized.forEach(resource -> resource.resolveReferences(resources));
+    materialized.forEach(Resource::compile);
+  }
+  
   /**
    * Adds a new resource with a custom DAO and schema provider class to the admin application and returns a
    * configuration object to allow for further customization.
@@ -102,13 +155,7 @@ public class JAdmin {
    */
   public ResourceBuilder resource(String resourceName, AbstractDAO dataAccessObject, ResourceSchemaProvider resourceSchemaProvider) {
     logger.trace("Adding resource {} with {} and {}", resourceName, dataAccessObject.getClass().getSimpleName(), resourceSchemaProvider.getClass().getSimpleName());
-    if(StringUtils.isBlank(resourceName)) {
-      throw new IllegalArgumentException("Provided resourceName was null.");
-    }
-
-    // create a new resourceSchemaProvider and look up the table properties
-    Resource resource = new Resource(resourceName);
-    resource.setDao(dataAccessObject);
+    Resource resource = createResource(resourceName, dataAccessObject);
     dataAccessObject.initialize(resourceSchemaProvider);
 
     // load the default columns for this resourceSchemaProvider
@@ -118,6 +165,76 @@ public class JAdmin {
     return new ResourceBuilder(resource);
   }
 
+  /**
+   * Adds a new resource with a custom DAO and schema provider class to the admin application, postponing the retrieval
+   * of its schema and its configuration until the resource is first requested. Keeps the startup time and memory usage
+   * of applications registering many resources proportional to the resources that are actually used.
+   *
+   * @param resourceName           name of the resource
+   * @param dataAccessObject       object providing CRUD methods for the resource
+   * @param resourceSchemaProvider method that provides schema information for the resource
+   * @param configuration          function applying further configuration once the resource is first requested
+   */
+  public void lazyResource(String resourceName, AbstractDAO dataAccessObject, ResourceSchemaProvider resourceSchemaProvider, Consumer<ResourceBuilder> configuration) {
+    logger.trace("Adding lazy resource {} with {} and {}", resourceName, dataAccessObject.getClass().getSimpleName(), resourceSchemaProvider.getClass().getSimpleName());
+    Resource resource = createResource(resourceName, dataAccessObject);
+    resource.setMaterializer(() -> {
+      logger.debug("Materializing resource {}", resourceName);
+      // configure a fresh resource, so a failed attempt leaves nothing behind for the next attempt
+      Resource configured = new Resource(resourceName);
+      configured.setDao(dataAccessObject);
+      dataAccessObject.initialize(resourceSchemaProvider);
+      new ResourceDecorator().decorate(configured, resourceSchemaProvider);
+      configuration.accept(new ResourceBuilder(configured));
+      configured.resolveReferences(resources);
+      resource.copyConfiguration(configured);
+      resource.compile();
+    });
+    this.resources.put(resource.getTableName(), resource);
+  }
+
+  /**
+   * Adds a new resource using the default JDBC DAO and schema provider via the provided DataSource, postponing the
+   * retrieval of its schema and its configuration until the resource is first requested, see
+   * {@link #lazyResource(String, AbstractDAO, ResourceSchemaProvider, Consumer)}.
+   *
+   * @param resourceName  table name of the resource
+   * @param dataSource    SQL datasource to use
+   * @param configuration function applying further configuration once the resource is first requested
+   */
+  public void lazyResource(String resourceName, DataSource dataSource, Consumer<ResourceBuilder> configuration) {
+    SchemaCatalog schemaCatalog = getSchemaCatalog(dataSource);
+    lazyResource(resourceName, new GenericSQLDAO(dataSource, resourceName), new GenericSQLSchemaProvider(dataSource, resourceName, schemaCatalog), configuration);
+  }
+
+  /**
+   * Adds a new resource using the default JDBC DAO and schema provider via the provided DataSource and the default
+   * configuration, postponing the retrieval of its schema until the resource is first requested.
+   *
+   * @param resourceName table name of the resource
+   * @param dataSource   SQL datasource to use
+   */
+  public void lazyResource(String resourceName, DataSource dataSource) {
+    lazyResource(resourceName, dataSource, builder -> {
+    });
+  }
+
+  /**
+   * Creates a new resource backed by the provided DAO.
+   *
+   * @param resourceName     name of the resource
+   * @param dataAccessObject object providing CRUD methods for the resource
+   * @return the new resource
+   */
+  private Resource createResource(String resourceName, AbstractDAO dataAccessObject) {
+    if(StringUtils.isBlank(resourceName)) {
+      throw new IllegalArgumentException("Provided resourceName was null.");
+    }
+    Resource resource = new Resource(resourceName);
+    resource.setDao(dataAccessObject);
+    return resource;
+  }
+
   /**
    * Adds a new resource to the admin application using the default JDBC DAO and schema provider via the provided DataSource.
    * Returns a configuration object to allow for further customization.
@@ -128,7 +245,33 @@ public class JAdmin {
    * @return ResourceBuilder instance for further configuration
    */
   public ResourceBuilder resource(String resourceName, DataSource dataSource) {
-    return resource(resourceName, new GenericSQLDAO(dataSource, resourceName), new GenericSQLSchemaProvider(dataSource, resourceName));
+    SchemaCatalog schemaCatalog = getSchemaCatalog(dataSource);
+    return resource(resourceName, new GenericSQLDAO(dataSource, resourceName), new GenericSQLSchemaProvider(dataSource, resourceName, schemaCatalog));
+  }
+
+  /**
+   * Returns the schema information shared by the resources of the provided data source, which is retrieved for all
+   * tables at once when the first resource of the data source is added. May be used to configure the schemas to
+   * retrieve or a schema snapshot, which must be done before adding the first resource.
+   *
+   * @param dataSource SQL datasource
+   * @return the schema catalog of the data source
+   */
+  public SchemaCatalog getSchemaCatalog(DataSource dataSource) {
+    return schemaCatalogs.computeIfAbsent(dataSource, SchemaCatalog::new);
+  }
+
+  /**
+   * Writes the snapshots of the schema catalogs that have a snapshot file configured.
+   */
+  private void saveSchemaSnapshots() {
+    for(SchemaCatalog schemaCatalog : schemaCatalogs.values()) {
+      try {
+        schemaCatalog.saveSnapshot();
+      } catch(IOException e) {
+        logger.warn("Could not write the schema snapshot", e);
+      }
+    }
   }
 
   /**
@@ -150,11 +293,101 @@ public class JAdmin {
     return resources;
   }
 
+  /**
+   * Enables the concurrent execution of the page and count queries of list pages, reducing the response time of list
+   * pages to that of the slowest query. The queries run on a bounded pool owned by JAdmin, when the pool is saturated
+   * the queries run on the request thread instead. Must be invoked before JAdmin is initialized.
+   *
+   * @param threads maximum number of query threads, or 0 to run the queries sequentially (the default)
+   */
+  public void setConcurrentQueryThreads(int threads) {
+    if(initialized) {
+      throw new IllegalStateException("JAdmin was already initialized.");
+    }
+    if(queryExecutor != null) {
+      queryExecutor.shutdown();
+    }
+    queryExecutor = threads > 0 ? createQueryExecutor(threads) : null;
+  }
+  
+  /**
+   * Enables caching of the encoded list page responses, so repeated requests for the same page are answered without
+   * querying the database. The responses are stored outside of the heap and discarded when the resource, or a resource
+   * it shows labels of, is changed through JAdmin. Must be invoked before JAdmin is initialized.
+   *
+   * @param maximumBytes maximum total size of the cached responses, or 0 to disable caching (the default)
+   * @param timeToLive   maximum age of a cached response, bounding how long changes made outside of JAdmin go unnoticed
+   */
+  public void setResponseCache(long maximumBytes, Duration timeToLive) {
+    if(initialized) {
+      throw new IllegalStateException("JAdmin was already initialized.");
+    }
+    responseCache = maximumBytes > 0 ? new ResponseCache(maximumBytes, timeToLive) : null;
+  }
+  
+  /**
+   * @return the cache of encoded list responses, null if caching is disabled
+   */
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+  
+  /**
+   * Exposes a readiness check for load balancers on the provided path, responding with status 200 once JAdmin has
+   * parsed its templates and the data store of every resource could be reached, and with status 503 listing the failed
+   * checks until then. Once all checks passed the data stores are no longer checked. Lazily registered resources are
+   * materialized during initialization when the check is enabled, and the check fails until each of them could be
+   * materialized. The path should lie outside of the JAdmin prefix, so the check is not subject to the authentication
+   * applied to the admin panel. Must be invoked before JAdmin is initialized.
+   *
+   * @param path path of the readiness check, i.e. "/ready", or null to disable the check (the default)
+   */
+  public void setReadinessPath(String path) {
+    if(initialized) {
+      throw new IllegalStateException("JAdmin was already initialized.");
+    }
+    readinessPath = path;
+  }
+  
+  /**
+   * Sets how long parsed templates are used before the templates are checked for changes. By default the templates are
+   * never checked, as they are packaged with the application. A short delay allows changes to the overriding templates
+   * in /jadmin/templates to be picked up without a restart, i.e. during development.
+   *
+   * @param delay time between checks for changes, Duration.ZERO to check on every use
+   */
+  public void setTemplateUpdateDelay(Duration delay) {
+    interfaceManager.getFreemarkerConfiguration().setTemplateUpdateDelayMilliseconds(delay.toMillis());
+  }
+  
+  /**
+   * Creates the bounded pool used for the concurrent execution of list page queries.
+   *
+   * @param threads maximum number of threads
+   * @return the new executor
+   */
+  private static ExecutorService createQueryExecutor(int threads) {
+    ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("jadmin-query-%d").setDaemon(true).build();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(threads * 4), threadFactory, (task, pool) -> {
+      // fall back to running the query on the request thread rather than failing the request
+      if(pool.isShutdown()) {
+        throw new RejectedExecutionException("JAdmin query executor was shut down");
+      }
+      task.run();
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+  
   /**
    * Halts the JAdmin interface.
    */
   public void stop() {
     interfaceManager.stop();
+    if(queryExecutor != null) {
+      queryExecutor.shutdownNow();
+    }
   }
   
   /**
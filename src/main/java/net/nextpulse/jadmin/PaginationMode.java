@@ -0,0 +1,17 @@
+package net.nextpulse.jadmin;
+
+/**
+ * Enum used to indicate how the list page of a resource retrieves the rows of the requested page.
+ */
+public enum PaginationMode {
+  /**
+   * Skips the rows preceding the requested page using an offset, cost grows with the page number.
+   */
+  OFFSET,
+  /**
+   * Continues after the last row of the previous page using its sort value and primary key(s) as cursor, keeping
+   * deep pages as cheap as the first page when the sort column is indexed. Falls back to offset pagination when no
+   * cursor is available, i.e. when jumping to an arbitrary page. Intended for sort columns without NULL values.
+   */
+  KEYSET
+}
@@ -1,11 +1,20 @@
 package net.nextpulse.jadmin;
 
 import net.nextpulse.jadmin.dao.AbstractDAO;
+import net.nextpulse.jadmin.dao.DataAccessException;
 import net.nextpulse.jadmin.dsl.*;
+import net.nextpulse.jadmin.elements.FormInput;
+import net.nextpulse.jadmin.elements.FormInputGroup;
+import net.nextpulse.jadmin.elements.FormTypeahead;
 import net.nextpulse.jadmin.elements.PageElement;
+import net.nextpulse.jadmin.exceptions.ConfigurationException;
+import net.nextpulse.jadmin.helpers.ReferenceLabelTransformer;
+import net.nextpulse.jadmin.helpers.ReferenceLabels;
+import net.nextpulse.jadmin.helpers.RenderPlan;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -37,8 +46,25 @@ public class Resource {
    */
   private AbstractDAO dao;
   private int perPageCount = 20;
+  private PaginationMode paginationMode = PaginationMode.OFFSET;
+  private CountStrategy countStrategy = CountStrategy.EXACT;
+  private int countThreshold = 100000;
+  private boolean parallelBatchColumns = false;
   private ValidationFunction afterValidation;
   private ValidationFunction beforeValidation;
+  /**
+   * Compiled list page settings, reset whenever the list page configuration changes through this class.
+   */
+  private volatile RenderPlan renderPlan;
+  /**
+   * Labels of this resource shown by columns of other resources referencing it.
+   */
+  private final ReferenceLabels referenceLabels = new ReferenceLabels(this);
+  /**
+   * Loads the schema and applies the configuration of a lazily registered resource, null once materialized.
+   */
+  private Materializer materializer;
+  private volatile boolean materialized = true;
   
   public Resource(String tableName) {
     if(tableName == null) {
@@ -73,6 +99,7 @@ public class Resource {
   
   public void setColumnDefinitions(List<ColumnDefinition> columnDefinitions) {
     this.columnDefinitions = columnDefinitions;
+    this.renderPlan = null;
   }
   
   public AbstractDAO getDao() {
@@ -141,6 +168,7 @@ public class Resource {
    */
   public void addColumn(String columnId) {
     getIndexColumns().add(columnId);
+    renderPlan = null;
   }
 
   /**
@@ -154,6 +182,193 @@ public class Resource {
     findColumnDefinitionByName(columnId)
       .orElseThrow(() -> new IllegalArgumentException("Column " + columnId + " could not be found on resource " + tableName))
       .setColumnValueTransformer(columnValueTransformer);
+    renderPlan = null;
+  }
+  
+  /**
+   * Adds the provided column to the table on the index page, transforming the values of all rows on a page at once.
+   *
+   * @param columnId                    name of this column
+   * @param batchColumnValueTransformer transforms the way the existing column values are displayed
+   */
+  public void addBatchColumn(String columnId, BatchColumnValueTransformer batchColumnValueTransformer) {
+    getIndexColumns().add(columnId);
+    findColumnDefinitionByName(columnId)
+      .orElseThrow(() -> new IllegalArgumentException("Column " + columnId + " could not be found on resource " + tableName))
+      .setBatchColumnValueTransformer(batchColumnValueTransformer);
+    renderPlan = null;
+  }
+  
+  /**
+   * Adds the provided foreign key column to the table on the index page, showing the value of the label column of the
+   * referenced resource instead of the raw key. The labels of a page are retrieved using a single query.
+   *
+   * @param columnId           name of this column
+   * @param referencedResource name of the referenced resource, or null to use the foreign key found in the schema
+   * @param labelColumn        column of the referenced resource to show
+   */
+  public void addReferenceColumn(String columnId, String referencedResource, String labelColumn) {
+    ColumnDefinition columnDefinition = findColumnDefinitionByName(columnId)
+        .orElseThrow(() -> new IllegalArgumentException("Column " + columnId + " could not be found on resource " + tableName));
+    if(referencedResource != null) {
+      columnDefinition.setReferencedTable(referencedResource);
+    } else if(columnDefinition.getReferencedTable() == null) {
+      throw new ConfigurationException("Column " + columnId + " of resource " + tableName + " does not reference another resource");
+    }
+    columnDefinition.setReferenceLabelColumn(labelColumn);
+    getIndexColumns().add(columnId);
+    renderPlan = null;
+  }
+  
+  /**
+   * Links the reference columns and typeahead fields of this resource to the referenced resources, see
+   * {@link #addReferenceColumn(String, String, String)}.
+   *
+   * @param resources all resources known to JAdmin, keyed by name
+   * @throws ConfigurationException if a referenced resource is unknown or is not identified by a single key column
+   */
+  public void resolveReferences(Map<String, Resource> resources) {
+    for(ColumnDefinition columnDefinition : columnDefinitions) {
+      if(columnDefinition.getReferenceLabelColumn() != null) {
+        Resource referenced = findReferencedResource(resources, columnDefinition.getName(), columnDefinition.getReferencedTable());
+        columnDefinition.setBatchColumnValueTransformer(new ReferenceLabelTransformer(referenced, columnDefinition.getReferenceLabelColumn()));
+        referenced.getReferenceLabels().addLabelColumn(columnDefinition.getReferenceLabelColumn());
+      }
+    }
+    for(PageElement element : formPage) {
+      if(element instanceof FormInputGroup) {
+        for(FormInput input : ((FormInputGroup) element).getInputs()) {
+          if(input instanceof FormTypeahead) {
+            FormTypeahead typeahead = (FormTypeahead) input;
+            String referencedTable = typeahead.getReferencedTable() != null ? typeahead.getReferencedTable() :
+                findColumnDefinitionByName(typeahead.getName()).map(ColumnDefinition::getReferencedTable).orElse(null);
+            Resource referenced = findReferencedResource(resources, typeahead.getName(), referencedTable);
+            typeahead.setReferencedResource(referenced);
+            referenced.getReferenceLabels().addLabelColumn(typeahead.getLabelColumn());
+          }
+        }
+      }
+    }
+    renderPlan = null;
+  }
+  
+  /**
+   * Looks up the resource referenced by a column of this resource.
+   *
+   * @param resources       all resources known to JAdmin, keyed by name
+   * @param column          name of the referencing column
+   * @param referencedTable name of the referenced resource, may be null
+   * @return the referenced resource
+   * @throws ConfigurationException if the referenced resource is unknown or is not identified by a single key column
+   */
+  private Resource findReferencedResource(Map<String, Resource> resources, String column, String referencedTable) {
+    if(referencedTable == null) {
+      throw new ConfigurationException("Column " + column + " of resource " + tableName + " does not reference another resource");
+    }
+    Resource referenced = resources.get(referencedTable);
+    if(referenced == null) {
+      // schema metadata may report the table name in a different case than the resource was registered with
+      referenced = resources.values().stream()
+          .filter(x -> x.getTableName().equalsIgnoreCase(referencedTable))
+          .findFirst()
+          .orElseThrow(() -> new ConfigurationException("Column " + column + " of resource " + tableName + " references unknown resource " + referencedTable));
+    }
+    // lazily registered resources are checked once their labels are first used
+    if(referenced.isMaterialized() && referenced.getPrimaryKeys().size() != 1) {
+      throw new ConfigurationException("Resource " + referencedTable + " must have a single key column to be referenced by " + tableName);
+    }
+    return referenced;
+  }
+  
+  /**
+   * @return the labels of this resource shown by columns of other resources referencing it
+   */
+  public ReferenceLabels getReferenceLabels() {
+    return referenceLabels;
+  }
+  
+  /**
+   * Defers loading the schema and configuration of this resource until {@link #materialize()} is invoked, keeping
+   * resources that are never used cheap to register.
+   *
+   * @param materializer function loading the schema and applying the configuration of this resource
+   */
+  public synchronized void setMaterializer(Materializer materializer) {
+    this.materializer = materializer;
+    this.materialized = false;
+  }
+  
+  /**
+   * Loads the schema and applies the configuration of a lazily registered resource, exactly once even when invoked
+   * concurrently. Does nothing for resources that were already materialized or were not registered lazily. When the
+   * materialization fails, the next invocation tries again. Resources referenced by this resource are not materialized
+   * until their labels are used, avoiding lock cycles between resources referencing each other.
+   *
+   * @throws DataAccessException if the schema of the resource could not be loaded
+   */
+  public void materialize() throws DataAccessException {
+    if(!materialized) {
+      synchronized(this) {
+        if(!materialized) {
+          materializer.materialize();
+          materializer = null;
+          materialized = true;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Replaces the configuration of this resource by that of the provided resource, used to apply the configuration of a
+   * lazily registered resource once it was built successfully.
+   *
+   * @param source resource to copy the columns, pages, DAO and settings of
+   */
+  public void copyConfiguration(Resource source) {
+    indexColumns.clear();
+    indexColumns.addAll(source.indexColumns);
+    formPage.clear();
+    formPage.addAll(source.formPage);
+    columnDefinitions = source.columnDefinitions;
+    dao = source.dao;
+    perPageCount = source.perPageCount;
+    paginationMode = source.paginationMode;
+    countStrategy = source.countStrategy;
+    countThreshold = source.countThreshold;
+    parallelBatchColumns = source.parallelBatchColumns;
+    afterValidation = source.afterValidation;
+    beforeValidation = source.beforeValidation;
+    renderPlan = null;
+  }
+  
+  /**
+   * @return false if this resource was registered lazily and has not been used yet
+   */
+  public boolean isMaterialized() {
+    return materialized;
+  }
+  
+  /**
+   * Compiles the current list page configuration into an immutable plan, which is used by all following requests.
+   * Invoked for all resources when JAdmin is initialized.
+   *
+   * @return the compiled plan
+   */
+  public RenderPlan compile() {
+    RenderPlan plan = new RenderPlan(this);
+    renderPlan = plan;
+    return plan;
+  }
+  
+  /**
+   * Returns the compiled list page configuration, compiling it if this did not happen yet. Note that changes made to
+   * the column definitions or index columns other than through this class are only picked up by {@link #compile()}.
+   *
+   * @return the compiled plan
+   */
+  public RenderPlan getRenderPlan() {
+    RenderPlan plan = renderPlan;
+    return plan != null ? plan : compile();
   }
   
   /**
@@ -179,6 +394,59 @@ public class Resource {
     return perPageCount;
   }
   
+  /**
+   * Sets the way the list page retrieves the requested page of entries.
+   *
+   * @param paginationMode either offset or keyset based pagination
+   */
+  public void setPaginationMode(PaginationMode paginationMode) {
+    this.paginationMode = paginationMode;
+  }
+  
+  public PaginationMode getPaginationMode() {
+    return paginationMode;
+  }
+  
+  /**
+   * Sets the way the list page determines the total number of entries.
+   *
+   * @param countStrategy strategy to use
+   */
+  public void setCountStrategy(CountStrategy countStrategy) {
+    this.countStrategy = countStrategy;
+  }
+  
+  public CountStrategy getCountStrategy() {
+    return countStrategy;
+  }
+  
+  /**
+   * Sets the estimated number of entries from which the threshold count strategy uses the estimate.
+   *
+   * @param countThreshold number of entries
+   */
+  public void setCountThreshold(int countThreshold) {
+    this.countThreshold = countThreshold;
+  }
+  
+  public int getCountThreshold() {
+    return countThreshold;
+  }
+  
+  /**
+   * Sets whether the batch column transformers of a page may run in parallel, which reduces the response time when
+   * multiple batch columns perform lookups.
+   *
+   * @param parallelBatchColumns true to run the batch transformers of different columns in parallel
+   */
+  public void setParallelBatchColumns(boolean parallelBatchColumns) {
+    this.parallelBatchColumns = parallelBatchColumns;
+    renderPlan = null;
+  }
+  
+  public boolean isParallelBatchColumns() {
+    return parallelBatchColumns;
+  }
   
   /**
    * Sets a validation function to execute before the per-column validation.
@@ -211,4 +479,12 @@ public class Resource {
   public ValidationFunction getAfterValidation() {
     return afterValidation;
   }
+  
+  /**
+   * Loads the schema and applies the configuration of a lazily registered resource.
+   */
+  @FunctionalInterface
+  public interface Materializer {
+    void materialize() throws DataAccessException;
+  }
 }
@@ -1,91 +1,373 @@
 package net.nextpulse.jadmin;
 
-import com.google.common.io.Files;
+import com.google.common.hash.Hashing;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import spark.resource.ClassPathResource;
 import spark.staticfiles.MimeType;
-import spark.utils.GzipUtils;
-import spark.utils.IOUtils;
+import spark.utils.ClassUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.regex.Matcher;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Class that handles serving static files.
+ * <p>
+ * All static files are loaded in to memory on construction, along with a gzipped copy and a hash of their contents.
+ * Requests are answered from memory, with a 304 response if the client already has the current version of the file.
+ * <p>
+ * Every file is also served under a fingerprinted name containing its hash, see {@link #assetPath(String)}, and files
+ * of the same type can be combined in to a single fingerprinted bundle, see {@link #bundlePath(String, List)}. As the
+ * contents behind a fingerprinted name never change, clients may cache these files indefinitely.
  */
 public class StaticFileServer {
   private static final Logger logger = LogManager.getLogger();
   private static final String RESOURCE_OVERRIDE_PATH = "/jadmin/public/";
   private static final String DEFAULT_RESOURCE_PATH = "/net/nextpulse/jadmin/public/";
   private static final String CONTENT_TYPE = "Content-Type";
-  private static final String STATIC_FILE_PATH_REGEX = "\\A%s(?:/css/.+|/fonts/.+|/js/.+|/favicon\\.ico)\\z";
-  private final Pattern allowedPrefixes;
+  private static final String[] STATIC_DIRECTORIES = {"/css/", "/fonts/", "/js/"};
+  private static final String FAVICON = "/favicon.ico";
+  /**
+   * Allows clients to use their copy of a file for a day without revalidating it.
+   */
+  private static final String CACHE_CONTROL = "public, max-age=86400";
+  /**
+   * Allows clients to use their copy of a fingerprinted file for a year without revalidating it.
+   */
+  private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+  /**
+   * Byte order mark and @charset rule at the start of a file, which are only valid at the start of a bundle.
+   */
+  private static final Pattern LEADING_CHARSET = Pattern.compile("\\A\\uFEFF?(@charset\\s+[\"'][^\"']*[\"']\\s*;[ \\t]*\\R?)?");
+  /**
+   * Source map references of stylesheets and scripts, of which the maps no longer match the positions in a bundle.
+   */
+  private static final Pattern SOURCE_MAP_COMMENT = Pattern.compile("/\\*[#@][ \\t]*sourceMappingURL=[^*]*\\*/[ \\t]*\\R?|(?m)^[ \\t]*//[#@][ \\t]*sourceMappingURL=\\S*[ \\t]*\\R?");
   private final String prefix;
+  /**
+   * Static files by request path.
+   */
+  private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+  /**
+   * Fingerprinted request paths by file path relative to the public directory, or by the comma separated file paths of
+   * a bundle.
+   */
+  private final Map<String, String> manifest = new ConcurrentHashMap<>();
   
   public StaticFileServer(String prefix) {
     this.prefix = prefix;
-    allowedPrefixes = Pattern.compile(String.format(STATIC_FILE_PATH_REGEX, prefix));
+    // files in the override path take precedence over the default files
+    loadAssets(RESOURCE_OVERRIDE_PATH);
+    loadAssets(DEFAULT_RESOURCE_PATH);
+    logger.debug("Loaded {} static files", assets.size());
   }
   
   /**
-   * Given a request and response object, attempts to serve a static file if a matching file might be available.
+   * Given a request and response object, attempts to serve a static file if a matching file is available.
    *
    * @param request  user's request
-   * @param response
+   * @param response response object
    * @return true if a response was sent to the client
    */
   public boolean consume(HttpServletRequest request, HttpServletResponse response) {
-    if(matchesStaticPath(request.getPathInfo())) {
-      return loadFileFromResourcePath(request, response, RESOURCE_OVERRIDE_PATH)
-          || loadFileFromResourcePath(request, response, DEFAULT_RESOURCE_PATH);
+    Asset asset = assets.get(request.getPathInfo());
+    if(asset == null) {
+      return false;
+    }
+    
+    boolean gzip = asset.gzipped != null && acceptsGzip(request);
+    String etag = gzip ? asset.gzippedEtag : asset.etag;
+    response.setHeader(CONTENT_TYPE, asset.contentType);
+    response.setHeader("Cache-Control", asset.cacheControl);
+    response.setHeader("Vary", "Accept-Encoding");
+    response.setHeader("ETag", etag);
+    try {
+      if(matchesEtag(request.getHeader("If-None-Match"), etag)) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        logger.trace("{} was not modified", request.getPathInfo());
+      } else {
+        byte[] body = gzip ? asset.gzipped : asset.contents;
+        if(gzip) {
+          response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        logger.trace("Served {} from memory", request.getPathInfo());
+      }
+      // commit the response, so the status is not changed by the filter halting the request
+      response.flushBuffer();
+    } catch(IOException e) {
+      logger.error("Failed to write static file {}", request.getPathInfo(), e);
+    }
+    return true;
+  }
+  
+  /**
+   * @param file path of a static file relative to the public directory, i.e. "css/style.css"
+   * @return request path of the fingerprinted file
+   * @throws IllegalArgumentException if the file does not exist
+   */
+  public String assetPath(String file) {
+    String path = manifest.get(file);
+    if(path == null) {
+      throw new IllegalArgumentException("Unknown static file " + file);
+    }
+    return path;
+  }
+  
+  /**
+   * Returns the request path of a fingerprinted bundle containing the provided files in order, creating the bundle on
+   * its first use. Duplicate files are included once. A bundle is only served once it was created, the bundles of the
+   * pages are created by rendering them during the warm-up of JAdmin.
+   *
+   * @param directory directory of the files relative to the public directory, i.e. "css"
+   * @param files     paths of the files relative to the directory, all having the same extension
+   * @return request path of the fingerprinted bundle, or of the fingerprinted file if only one file was provided
+   * @throws IllegalArgumentException if a file does not exist or the files have different extensions
+   */
+  public String bundlePath(String directory, List<String> files) {
+    List<String> paths = files.stream()
+        .map(file -> directory + "/" + file)
+        .distinct()
+        .collect(Collectors.toList());
+    if(paths.size() == 1) {
+      return assetPath(paths.get(0));
+    }
+    return manifest.computeIfAbsent(String.join(",", paths), key -> createBundle(directory, paths));
+  }
+  
+  /**
+   * @param pathInfo request path
+   * @return true iff the request has path that matches one of the accepted static file locations
+   */
+  protected boolean matchesStaticPath(String pathInfo) {
+    if(!pathInfo.startsWith(prefix)) {
+      return false;
+    }
+    if(pathInfo.length() == prefix.length() + FAVICON.length() && pathInfo.endsWith(FAVICON)) {
+      return true;
+    }
+    for(String directory : STATIC_DIRECTORIES) {
+      if(pathInfo.startsWith(directory, prefix.length()) && pathInfo.length() > prefix.length() + directory.length()) {
+        return true;
+      }
     }
     return false;
   }
   
   /**
-   * Method that loads the requested file from the resource path and writes it to the response stream.
+   * Loads the static files from every classpath entry containing the provided location, skipping files that were
+   * already loaded.
    *
-   * @param request  request object containing the request path and encoding headers
-   * @param response response object
    * @param location resource location to use
-   * @return true iff a file was loaded and copied to the response
    */
-  private boolean loadFileFromResourcePath(HttpServletRequest request, HttpServletResponse response, String location) {
-    String filePath = location + request.getPathInfo().replace(prefix, "");
-    String simplifiedPath = Files.simplifyPath(filePath);
-    
-    // make sure we don't allow path traversal (i.e. visiting /jadmin/css/../../conf/database.properties)
-    if(!simplifiedPath.startsWith(location)) {
+  private void loadAssets(String location) {
+    try {
+      Enumeration<URL> roots = ClassUtils.getDefaultClassLoader().getResources(location.substring(1));
+      while(roots.hasMoreElements()) {
+        loadAssets(roots.nextElement().toURI(), location);
+      }
+    } catch(IOException | URISyntaxException e) {
+      throw new IllegalStateException("Could not load static files from " + location, e);
+    }
+  }
+  
+  private void loadAssets(URI root, String location) throws IOException {
+    try {
+      loadAssets(Paths.get(root), location);
+    } catch(FileSystemNotFoundException e) {
+      // the location is inside a jar file that has not been opened yet
+      try(FileSystem jar = FileSystems.newFileSystem(root, Collections.emptyMap())) {
+        loadAssets(jar.provider().getPath(root), location);
+      }
+    }
+  }
+  
+  private void loadAssets(Path root, String location) throws IOException {
+    try(Stream<Path> files = Files.walk(root)) {
+      files.filter(Files::isRegularFile).forEach(file -> {
+        String relativePath = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+        String requestPath = prefix + "/" + relativePath;
+        if(matchesStaticPath(requestPath) && !assets.containsKey(requestPath)) {
+          try {
+            Asset asset = new Asset(Files.readAllBytes(file), MimeType.fromResource(new ClassPathResource(location + relativePath)), CACHE_CONTROL);
+            assets.put(requestPath, asset);
+            String fingerprintedPath = prefix + "/" + fingerprint(relativePath, asset.hash);
+            assets.put(fingerprintedPath, new Asset(asset, IMMUTABLE_CACHE_CONTROL));
+            manifest.put(relativePath, fingerprintedPath);
+          } catch(IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+  
+  /**
+   * Concatenates the files in to a new fingerprinted file in the provided directory, so relative references in
+   * stylesheets keep working. Source map references are removed, as are the byte order marks and @charset rules of all
+   * but the first file.
+   *
+   * @return request path of the bundle
+   */
+  private String createBundle(String directory, List<String> paths) {
+    String extension = extension(paths.get(0));
+    // separate scripts by a semicolon in case a script omits its trailing semicolon
+    byte[] separator = (".js".equals(extension) ? "\n;\n" : "\n").getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream contents = new ByteArrayOutputStream();
+    String contentType = null;
+    for(String path : paths) {
+      Asset asset = assets.get(prefix + "/" + path);
+      if(asset == null) {
+        throw new IllegalArgumentException("Unknown static file " + path);
+      }
+      if(!extension.equals(extension(path))) {
+        throw new IllegalArgumentException("Cannot bundle " + path + " with files of type " + extension);
+      }
+      byte[] bundled = stripForBundle(asset.contents, contentType == null);
+      if(contentType == null) {
+        contentType = asset.contentType;
+      } else {
+        contents.write(separator, 0, separator.length);
+      }
+      contents.write(bundled, 0, bundled.length);
+    }
+    try {
+      Asset bundle = new Asset(contents.toByteArray(), contentType, IMMUTABLE_CACHE_CONTROL);
+      String bundlePath = prefix + "/" + directory + "/bundle." + bundle.hash + extension;
+      assets.put(bundlePath, bundle);
+      logger.debug("Bundled {} in to {}", paths, bundlePath);
+      return bundlePath;
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+  
+  /**
+   * Removes the parts of a file that are invalid or misleading inside a bundle.
+   *
+   * @param contents contents of the file
+   * @param leading  true for the first file of the bundle, which keeps its byte order mark and @charset rule
+   * @return the contents to bundle, the provided array if nothing was removed
+   */
+  static byte[] stripForBundle(byte[] contents, boolean leading) {
+    String text = new String(contents, StandardCharsets.UTF_8);
+    String stripped = SOURCE_MAP_COMMENT.matcher(text).replaceAll("");
+    if(!leading) {
+      stripped = LEADING_CHARSET.matcher(stripped).replaceFirst("");
+    }
+    return stripped.length() == text.length() ? contents : stripped.getBytes(StandardCharsets.UTF_8);
+  }
+  
+  /**
+   * @return the path with the hash inserted before the extension of the file name, i.e. css/style.0123456789abcdef.css
+   */
+  private static String fingerprint(String path, String hash) {
+    String extension = extension(path);
+    return path.substring(0, path.length() - extension.length()) + "." + hash + extension;
+  }
+  
+  /**
+   * @return the extension of the file name including the dot, or an empty string if the file has no extension
+   */
+  private static String extension(String path) {
+    int dot = path.lastIndexOf('.');
+    return dot > path.lastIndexOf('/') ? path.substring(dot) : "";
+  }
+  
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    return acceptEncoding != null && acceptEncoding.contains("gzip");
+  }
+  
+  /**
+   * @param ifNoneMatch value of the If-None-Match header, may be null
+   * @param etag        entity tag of the file
+   * @return true iff the header contains the entity tag, ignoring a weak validator prefix
+   */
+  private static boolean matchesEtag(String ifNoneMatch, String etag) {
+    if(ifNoneMatch == null) {
       return false;
     }
-    
-    ClassPathResource resource = new ClassPathResource(simplifiedPath);
-    if(resource.exists()) {
-      response.setHeader(CONTENT_TYPE, MimeType.fromResource(resource));
-      
-      try(OutputStream wrappedOutputStream = GzipUtils.checkAndWrap(request, response, true)) {
-        IOUtils.copy(resource.getInputStream(), wrappedOutputStream);
-        wrappedOutputStream.flush();
-        logger.trace("Served {} from disk", simplifiedPath);
+    for(String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      if(candidate.startsWith("W/")) {
+        candidate = candidate.substring(2);
+      }
+      if(candidate.equals(etag) || candidate.equals("*")) {
         return true;
-      } catch(IOException e) {
-        logger.error("Failed to copy resource {}", simplifiedPath, e);
       }
     }
     return false;
   }
   
   /**
-   * @param pathInfo
-   * @return true iff the request has path that matches one of the accepted static file locations
+   * Static file held in memory.
    */
-  protected boolean matchesStaticPath(String pathInfo) {
-    Matcher matcher = allowedPrefixes.matcher(pathInfo);
-    return matcher.matches();
+  private static final class Asset {
+    private final byte[] contents;
+    /**
+     * Gzipped contents, null if compressing the file does not reduce its size.
+     */
+    private final byte[] gzipped;
+    private final String etag;
+    private final String gzippedEtag;
+    private final String contentType;
+    private final String cacheControl;
+    /**
+     * Hash of the contents, used in the entity tags and fingerprinted file names.
+     */
+    private final String hash;
+    
+    private Asset(byte[] contents, String contentType, String cacheControl) throws IOException {
+      this.contents = contents;
+      this.contentType = contentType;
+      this.cacheControl = cacheControl;
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try(GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+        out.write(contents);
+      }
+      this.gzipped = compressed.size() < contents.length ? compressed.toByteArray() : null;
+      this.hash = Hashing.sha256().hashBytes(contents).toString().substring(0, 16);
+      this.etag = "\"" + hash + "\"";
+      this.gzippedEtag = "\"" + hash + "-gzip\"";
+    }
+    
+    /**
+     * Creates a copy of the asset that is served with different cache directives.
+     */
+    private Asset(Asset asset, String cacheControl) {
+      this.contents = asset.contents;
+      this.gzipped = asset.gzipped;
+      this.etag = asset.etag;
+      this.gzippedEtag = asset.gzippedEtag;
+      this.contentType = asset.contentType;
+      this.hash = asset.hash;
+      this.cacheControl = cacheControl;
+    }
   }
 }
@@ -1,13 +1,17 @@
 package net.nextpulse.jadmin.dao;
 
 import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.CountStrategy;
 import net.nextpulse.jadmin.FormPostEntry;
 import net.nextpulse.jadmin.schema.ResourceSchemaProvider;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -43,6 +47,49 @@ public abstract class AbstractDAO {
    */
   public abstract Optional<DatabaseEntry> selectOne(Object... keys) throws DataAccessException;
   
+  /**
+   * Retrieves the DatabaseEntry objects identified by the provided keys, for resources identified by a single key
+   * column. Keys that do not match an entry are skipped, the order of the returned entries is undefined. DAO
+   * implementations that can retrieve multiple entries at once should override this method, the default implementation
+   * calls {@link #selectOne(Object...)} for each key.
+   *
+   * @param keys primary key values
+   * @return the entries matching the keys
+   * @throws DataAccessException if an error occurred while retrieving the objects or the provided keys are invalid.
+   */
+  public List<DatabaseEntry> selectByKeys(Collection<String> keys) throws DataAccessException {
+    List<DatabaseEntry> entries = new ArrayList<>(keys.size());
+    for(String key : keys) {
+      selectOne(key).ifPresent(entries::add);
+    }
+    return entries;
+  }
+  
+  /**
+   * Retrieves up to limit DatabaseEntry objects of which the value of the provided column starts with the prefix,
+   * ordered by that column. Used to offer the entries of large resources as options. DAO implementations that can
+   * filter in the data store should override this method, the default implementation scans all entries.
+   *
+   * @param column column to match the prefix against
+   * @param prefix prefix the column values should start with, may be empty
+   * @param limit  maximum number of entries to return
+   * @return the matching entries
+   * @throws DataAccessException if an error occurred while retrieving the objects
+   */
+  public List<DatabaseEntry> selectByPrefix(String column, String prefix, int limit) throws DataAccessException {
+    List<DatabaseEntry> entries = new ArrayList<>();
+    for(DatabaseEntry entry : selectMultiple(0, Integer.MAX_VALUE, column, true)) {
+      Object value = entry.getProperties().get(column);
+      if(value != null && value.toString().startsWith(prefix)) {
+        entries.add(entry);
+        if(entries.size() >= limit) {
+          break;
+        }
+      }
+    }
+    return entries;
+  }
+  
   /**
    * Retrieves multiple DatabaseEntry objects from the data store, optionally sorting by the provided column and in the provided direction.
    *
@@ -55,6 +102,37 @@ public abstract class AbstractDAO {
    */
   public abstract List<DatabaseEntry> selectMultiple(long offset, long count, String sortColumn, boolean sortDirection) throws DataAccessException;
   
+  /**
+   * Retrieves the page of DatabaseEntry objects described by the provided query. DAO implementations that support keyset
+   * pagination should override this method and continue after the query's cursor when present, the default
+   * implementation ignores the cursor and uses the offset instead. The query's column projection may be used to only
+   * retrieve the requested columns.
+   *
+   * @param query description of the page to retrieve
+   * @return list of results
+   * @throws DataAccessException if an error occurred while retrieving the objects
+   */
+  public List<DatabaseEntry> selectMultiple(PageQuery query) throws DataAccessException {
+    return selectMultiple(query.getOffset(), query.getCount(), query.getSortColumn(), query.getSortDirection());
+  }
+  
+  /**
+   * Passes the entries of the page described by the provided query to the callback as they are retrieved, allowing the
+   * caller to process a page without holding all of its entries in memory. DAO implementations reading from a cursor
+   * should override this method, the default implementation iterates over {@link #selectMultiple(PageQuery)}.
+   *
+   * @param query    description of the page to retrieve
+   * @param callback callback receiving the entries in order
+   * @param <E>      type of exception thrown by the callback
+   * @throws DataAccessException if an error occurred while retrieving the objects
+   * @throws E                   if the callback failed
+   */
+  public <E extends Exception> void streamMultiple(PageQuery query, EntryCallback<E> callback) throws DataAccessException, E {
+    for(DatabaseEntry entry : selectMultiple(query)) {
+      callback.accept(entry);
+    }
+  }
+  
   /**
    * Inserts a single resourceSchemaProvider instance in to the database, using the unfiltered client submitted data.
    *
@@ -75,18 +153,110 @@ public abstract class AbstractDAO {
    * Deletes a single DatabaseEntry using the primary key(s) of the resourceSchemaProvider.
    *
    * @param keys primary key(s)
-   * @throws DataAccessException if an error occurred while deleting the object or the provided keys are invalid.
+   * @throws DataAccessException if an error occurred while deleting the object, the provided keys are invalid or no
+   *                             object matched the keys.
    */
   public abstract void delete(Object... keys) throws DataAccessException;
   
   /**
-   * Returns (possibly an estimate of) the total number of entries for this particular resource.
+   * Returns the total number of entries for this particular resource.
    *
-   * @return
-   * @throws DataAccessException
+   * @return number of entries
+   * @throws DataAccessException if an error occurred while counting the entries
    */
   public abstract int count() throws DataAccessException;
   
+  /**
+   * Returns an estimate of the total number of entries, which should be considerably cheaper to obtain than
+   * {@link #count()}. The default implementation offers no estimate.
+   *
+   * @return the estimated number of entries or an empty optional if no estimate is available
+   * @throws DataAccessException if an error occurred while retrieving the estimate
+   */
+  public OptionalInt estimateCount() throws DataAccessException {
+    return OptionalInt.empty();
+  }
+  
+  /**
+   * Cancels the count or estimate that is being executed by the provided thread, i.e. once the number of entries is no
+   * longer needed. The default implementation does nothing, leaving the count to run to completion.
+   *
+   * @param thread thread executing the count
+   */
+  public void cancelCount(Thread thread) {
+  }
+  
+  /**
+   * Determines the number of entries for this resource using the provided strategy.
+   *
+   * @param strategy  strategy to use
+   * @param threshold estimated number of entries from which the threshold strategy uses the estimate
+   * @return the exact, estimated or unknown number of entries
+   * @throws DataAccessException if an error occurred while counting the entries
+   */
+  public RowCount count(CountStrategy strategy, int threshold) throws DataAccessException {
+    switch(strategy) {
+      case NONE:
+        return RowCount.unknown();
+      case ESTIMATED: {
+        OptionalInt estimate = estimateCount();
+        return estimate.isPresent() ? RowCount.estimated(estimate.getAsInt()) : RowCount.exact(count());
+      }
+      case THRESHOLD: {
+        OptionalInt estimate = estimateCount();
+        return estimate.isPresent() && estimate.getAsInt() >= threshold ? RowCount.estimated(estimate.getAsInt()) : RowCount.exact(count());
+      }
+      case EXACT:
+      default:
+        return RowCount.exact(count());
+    }
+  }
+  
+  /**
+   * Retrieves a page of entries together with the number of entries of this resource. DAO implementations that can
+   * retrieve both using a single query or connection should override this method, the default implementation calls
+   * {@link #selectMultiple(PageQuery)} followed by {@link #count(CountStrategy, int)}.
+   *
+   * @param query     description of the page to retrieve
+   * @param strategy  strategy to use for counting the entries
+   * @param threshold estimated number of entries from which the threshold strategy uses the estimate
+   * @return the page of entries and the number of entries
+   * @throws DataAccessException if an error occurred while retrieving or counting the entries
+   */
+  public Page selectPage(PageQuery query, CountStrategy strategy, int threshold) throws DataAccessException {
+    List<DatabaseEntry> rows = selectMultiple(query);
+    return new Page(rows, count(strategy, threshold));
+  }
+  
+  /**
+   * Streaming counterpart of {@link #selectPage(PageQuery, CountStrategy, int)}, passing the entries of the page to the
+   * callback before returning the number of entries. The default implementation calls
+   * {@link #streamMultiple(PageQuery, EntryCallback)} followed by {@link #count(CountStrategy, int)}.
+   *
+   * @param query     description of the page to retrieve
+   * @param strategy  strategy to use for counting the entries
+   * @param threshold estimated number of entries from which the threshold strategy uses the estimate
+   * @param callback  callback receiving the entries in order
+   * @param <E>       type of exception thrown by the callback
+   * @return the number of entries
+   * @throws DataAccessException if an error occurred while retrieving or counting the entries
+   * @throws E                   if the callback failed
+   */
+  public <E extends Exception> RowCount streamPage(PageQuery query, CountStrategy strategy, int threshold, EntryCallback<E> callback) throws DataAccessException, E {
+    streamMultiple(query, callback);
+    return count(strategy, threshold);
+  }
+  
+  /**
+   * Checks whether the underlying data store can currently be reached, used by the readiness check. The default
+   * implementation assumes the data store is always available.
+   *
+   * @return true if the data store can be reached
+   */
+  public boolean isAvailable() {
+    return true;
+  }
+  
   /**
    * @return mapping of string to column definition
    * @throws DataAccessException if the column definitions could not be retrieved
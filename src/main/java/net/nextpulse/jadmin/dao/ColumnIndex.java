@@ -0,0 +1,78 @@
+package net.nextpulse.jadmin.dao;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable mapping of column names to slots of an array-backed row, shared by all rows read from the same result set.
+ * Names are matched case insensitively, in line with the case insensitive maps previously used for rows.
+ *
+ * @author yholkamp
+ */
+public final class ColumnIndex {
+  
+  private final String[] names;
+  private final Map<String, Integer> slots;
+  
+  /**
+   * @param names column names, in slot order
+   */
+  public ColumnIndex(String... names) {
+    this.names = names.clone();
+    this.slots = new HashMap<>(names.length * 2);
+    for(int i = 0; i < names.length; i++) {
+      // in case of duplicate names the first column wins, as with ResultSet.findColumn
+      slots.putIfAbsent(normalize(names[i]), i);
+    }
+  }
+  
+  /**
+   * Creates an index of the first columns of a result set, using the column labels as names.
+   *
+   * @param metaData    metadata of the result set
+   * @param columnCount number of leading columns to include
+   * @return the new index
+   * @throws SQLException if the metadata could not be read
+   */
+  public static ColumnIndex of(ResultSetMetaData metaData, int columnCount) throws SQLException {
+    String[] names = new String[columnCount];
+    for(int i = 0; i < columnCount; i++) {
+      names[i] = metaData.getColumnLabel(i + 1);
+    }
+    return new ColumnIndex(names);
+  }
+  
+  /**
+   * @return number of columns in this index
+   */
+  public int size() {
+    return names.length;
+  }
+  
+  /**
+   * @param slot zero based slot
+   * @return name of the column stored in the slot
+   */
+  public String getName(int slot) {
+    return names[slot];
+  }
+  
+  /**
+   * @param name column name, matched case insensitively
+   * @return slot of the column or -1 if the column is not part of this index
+   */
+  public int indexOf(Object name) {
+    if(!(name instanceof String)) {
+      return -1;
+    }
+    Integer slot = slots.get(normalize((String) name));
+    return slot == null ? -1 : slot;
+  }
+  
+  private static String normalize(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,653 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.ColumnType;
+import net.nextpulse.jadmin.FormPostEntry;
+
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * In-memory DAO storing its entries per column rather than per row, intended for large read-mostly resources. Integer
+ * and datetime columns are stored in long arrays, boolean columns in bit sets and string columns as codes into a
+ * per-column dictionary, while nulls are tracked using a bit set per column. DatabaseEntry objects are only created for
+ * the entries that are returned and sorting compares the stored values directly.
+ * <p>
+ * The columns are either provided to the constructor or read from the resource schema on first use. Values are
+ * converted to the type of their column on insert, empty values of non-string columns are stored as null. Entries are
+ * kept in insertion order, deleted entries are removed from the columns once they make up half of the stored rows. The
+ * DAO is safe for concurrent use, reads share a read lock while writes take the write lock.
+ *
+ * @author yholkamp
+ */
+public class ColumnarInMemoryDAO extends AbstractDAO {
+  
+  private static final int INITIAL_CAPACITY = 16;
+  
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile List<ColumnDefinition> definitions;
+  private ColumnIndex columnIndex;
+  private Column[] columns;
+  private int[] keySlots;
+  /**
+   * Set once the columns were set up, allowing readers to skip the monitor guarding their setup.
+   */
+  private volatile boolean columnsReady;
+  private final Map<List<Object>, Integer> rowsByKey = new HashMap<>();
+  private final BitSet deleted = new BitSet();
+  /**
+   * Number of used rows, including deleted rows that have not been removed yet.
+   */
+  private int rows;
+  private int capacity;
+  
+  /**
+   * Creates a DAO that reads its columns from the resource schema on first use.
+   */
+  public ColumnarInMemoryDAO() {
+  }
+  
+  /**
+   * Creates a DAO storing the provided columns.
+   *
+   * @param definitions columns to store, the key columns identify the entries
+   */
+  public ColumnarInMemoryDAO(List<ColumnDefinition> definitions) {
+    this.definitions = new ArrayList<>(definitions);
+  }
+  
+  /**
+   * Retrieves a single DatabaseEntry using the primary key(s) of the resourceSchemaProvider.
+   *
+   * @param keys primary key(s)
+   * @return either an empty optional object or the object represented by the provided keys.
+   * @throws DataAccessException if the columns could not be determined or the provided keys are invalid.
+   */
+  @Override
+  public Optional<DatabaseEntry> selectOne(Object... keys) throws DataAccessException {
+    ensureColumns();
+    List<Object> key = parseKey(keys);
+    lock.readLock().lock();
+    try {
+      Integer row = rowsByKey.get(key);
+      return row == null ? Optional.empty() : Optional.of(toEntry(row));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+  
+  /**
+   * Retrieves multiple DatabaseEntry objects from the data store. Entries with equal values for the sort column are
+   * kept in insertion order, as are all entries if no or an unknown sort column is provided.
+   *
+   * @param offset        number of objects to skip
+   * @param count         number of objects to retrieve
+   * @param sortColumn    column to sort by, may be null
+   * @param sortDirection direction to sort by, true for ascending, false for descending
+   * @return list of results
+   * @throws DataAccessException if the columns could not be determined
+   */
+  @Override
+  public List<DatabaseEntry> selectMultiple(long offset, long count, String sortColumn, boolean sortDirection) throws DataAccessException {
+    ensureColumns();
+    lock.readLock().lock();
+    try {
+      int live = rows - deleted.cardinality();
+      if(offset >= live || count <= 0) {
+        return Collections.emptyList();
+      }
+      int[] order = new int[live];
+      for(int row = deleted.nextClearBit(0), i = 0; row < rows; row = deleted.nextClearBit(row + 1)) {
+        order[i++] = row;
+      }
+      int slot = sortColumn == null ? -1 : columnIndex.indexOf(sortColumn);
+      if(slot >= 0) {
+        IntBinaryOperator compare = columns[slot].comparator();
+        int direction = sortDirection ? 1 : -1;
+        sort(order, (a, b) -> {
+          int result = compare.applyAsInt(a, b) * direction;
+          return result != 0 ? result : Integer.compare(a, b);
+        });
+      }
+      int end = (int) Math.min(live, offset + count);
+      List<DatabaseEntry> entries = new ArrayList<>(end - (int) offset);
+      for(int i = (int) offset; i < end; i++) {
+        entries.add(toEntry(order[i]));
+      }
+      return entries;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+  
+  /**
+   * Inserts a single resourceSchemaProvider instance in to the database, replacing the entry with the same key(s) if
+   * present.
+   *
+   * @param postData unfiltered user submitted data, must be used with caution
+   * @throws DataAccessException if a value could not be converted to the type of its column
+   */
+  @Override
+  public void insert(FormPostEntry postData) throws DataAccessException {
+    ensureColumns();
+    Object[] values = toValues(postData);
+    List<Object> key = keyOf(values);
+    lock.writeLock().lock();
+    try {
+      Integer row = rowsByKey.get(key);
+      if(row == null) {
+        row = rows++;
+        ensureCapacity(rows);
+        rowsByKey.put(key, row);
+      }
+      write(row, values);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+  
+  /**
+   * Updates a single resourceSchemaProvider instance in the database using the unfiltered client submitted data.
+   *
+   * @param postData unfiltered user submitted data, must be used with caution
+   * @throws DataAccessException if the entry does not exist or a value could not be converted
+   */
+  @Override
+  public void update(FormPostEntry postData) throws DataAccessException {
+    ensureColumns();
+    Object[] values = toValues(postData);
+    List<Object> key = keyOf(values);
+    lock.writeLock().lock();
+    try {
+      Integer row = rowsByKey.get(key);
+      if(row == null) {
+        throw new DataAccessException("Could not access object identified by " + key);
+      }
+      write(row, values);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+  
+  /**
+   * Deletes a single DatabaseEntry using the primary key(s) of the resourceSchemaProvider.
+   *
+   * @param keys primary key(s)
+   * @throws DataAccessException if the entry does not exist
+   */
+  @Override
+  public void delete(Object... keys) throws DataAccessException {
+    ensureColumns();
+    List<Object> key = parseKey(keys);
+    lock.writeLock().lock();
+    try {
+      Integer row = rowsByKey.remove(key);
+      if(row == null) {
+        throw new DataAccessException("Could not access object identified by " + key);
+      }
+      deleted.set(row);
+      if(rows > INITIAL_CAPACITY && deleted.cardinality() * 2 > rows) {
+        compact();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+  
+  /**
+   * Returns the number of stored objects.
+   *
+   * @return number of objects
+   * @throws DataAccessException never
+   */
+  @Override
+  public int count() throws DataAccessException {
+    lock.readLock().lock();
+    try {
+      return rows - deleted.cardinality();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+  
+  /**
+   * Sets up the columns on first use, reading them from the resource schema if none were provided.
+   */
+  private void ensureColumns() throws DataAccessException {
+    if(!columnsReady) {
+      createColumns();
+    }
+  }
+  
+  private synchronized void createColumns() throws DataAccessException {
+    if(columnsReady) {
+      return;
+    }
+    if(definitions == null) {
+      if(resourceSchemaProvider == null) {
+        throw new DataAccessException("No columns provided and no resource schema available");
+      }
+      definitions = new ArrayList<>(resourceSchemaProvider.getColumnDefinitions());
+    }
+    String[] names = new String[definitions.size()];
+    Column[] newColumns = new Column[definitions.size()];
+    List<Integer> keys = new ArrayList<>();
+    for(int i = 0; i < names.length; i++) {
+      ColumnDefinition definition = definitions.get(i);
+      names[i] = definition.getName();
+      newColumns[i] = Column.of(definition.getType());
+      if(definition.isKeyColumn()) {
+        keys.add(i);
+      }
+    }
+    if(keys.isEmpty()) {
+      throw new DataAccessException("At least one key column is required");
+    }
+    keySlots = keys.stream().mapToInt(Integer::intValue).toArray();
+    columnIndex = new ColumnIndex(names);
+    capacity = INITIAL_CAPACITY;
+    for(Column column : newColumns) {
+      column.resize(capacity);
+    }
+    columns = newColumns;
+    columnsReady = true;
+  }
+  
+  /**
+   * Converts the submitted values to the types of their columns, in slot order.
+   */
+  private Object[] toValues(FormPostEntry postData) throws DataAccessException {
+    Object[] values = new Object[columns.length];
+    for(Map<String, String> source : Arrays.asList(postData.getKeyValues(), postData.getValues())) {
+      for(Map.Entry<String, String> entry : source.entrySet()) {
+        int slot = columnIndex.indexOf(entry.getKey());
+        if(slot < 0) {
+          throw new DataAccessException("Unknown column " + entry.getKey());
+        }
+        values[slot] = entry.getValue() == null ? null : parse(columns[slot], entry.getValue());
+      }
+    }
+    return values;
+  }
+  
+  private List<Object> parseKey(Object[] keys) throws DataAccessException {
+    if(keys.length != keySlots.length) {
+      throw new DataAccessException("Expected " + keySlots.length + " key values, got " + keys.length);
+    }
+    List<Object> key = new ArrayList<>(keys.length);
+    for(int i = 0; i < keys.length; i++) {
+      key.add(keys[i] == null ? null : parse(columns[keySlots[i]], keys[i].toString()));
+    }
+    return key;
+  }
+  
+  private static Object parse(Column column, String value) throws DataAccessException {
+    try {
+      return column.parse(value);
+    } catch(IllegalArgumentException | DateTimeException e) {
+      throw new DataAccessException("Could not convert value " + value, e);
+    }
+  }
+  
+  private List<Object> keyOf(Object[] values) {
+    List<Object> key = new ArrayList<>(keySlots.length);
+    for(int slot : keySlots) {
+      key.add(values[slot]);
+    }
+    return key;
+  }
+  
+  private void write(int row, Object[] values) {
+    for(int i = 0; i < columns.length; i++) {
+      columns[i].set(row, values[i]);
+    }
+  }
+  
+  private DatabaseEntry toEntry(int row) {
+    Object[] values = new Object[columns.length];
+    for(int i = 0; i < columns.length; i++) {
+      values[i] = columns[i].get(row);
+    }
+    return DatabaseEntry.buildFrom(columnIndex, values);
+  }
+  
+  private void ensureCapacity(int required) {
+    if(required > capacity) {
+      capacity = Math.max(required, capacity + (capacity >> 1));
+      for(Column column : columns) {
+        column.resize(capacity);
+      }
+    }
+  }
+  
+  /**
+   * Moves the remaining rows down over the deleted rows, keeping them in insertion order, and drops the values that are
+   * no longer used from the dictionaries of the columns.
+   */
+  private void compact() {
+    int target = 0;
+    for(int row = deleted.nextClearBit(0); row < rows; row = deleted.nextClearBit(row + 1), target++) {
+      if(row != target) {
+        for(Column column : columns) {
+          column.move(row, target);
+        }
+      }
+    }
+    rows = target;
+    deleted.clear();
+    for(Column column : columns) {
+      column.compact(rows);
+    }
+    rowsByKey.clear();
+    for(int row = 0; row < rows; row++) {
+      List<Object> key = new ArrayList<>(keySlots.length);
+      for(int slot : keySlots) {
+        key.add(columns[slot].get(row));
+      }
+      rowsByKey.put(key, row);
+    }
+  }
+  
+  /**
+   * Returns the number of distinct values stored for a string column, including values that are no longer used.
+   *
+   * @param column name of the column
+   * @return the size of the dictionary of the column
+   */
+  int dictionarySize(String column) {
+    lock.readLock().lock();
+    try {
+      return ((StringColumn) columns[columnIndex.indexOf(column)]).dictionarySize();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+  
+  /**
+   * Stable merge sort of row numbers, avoiding the boxing required by the sort methods of the JDK.
+   */
+  static void sort(int[] rows, IntBinaryOperator comparator) {
+    int[] source = rows;
+    int[] target = new int[rows.length];
+    for(int width = 1; width < rows.length; width *= 2) {
+      for(int start = 0; start < rows.length; start += 2 * width) {
+        int middle = Math.min(start + width, rows.length);
+        int end = Math.min(start + 2 * width, rows.length);
+        int left = start;
+        int right = middle;
+        for(int i = start; i < end; i++) {
+          if(left < middle && (right >= end || comparator.applyAsInt(source[left], source[right]) <= 0)) {
+            target[i] = source[left++];
+          } else {
+            target[i] = source[right++];
+          }
+        }
+      }
+      int[] swap = source;
+      source = target;
+      target = swap;
+    }
+    if(source != rows) {
+      System.arraycopy(source, 0, rows, 0, rows.length);
+    }
+  }
+  
+  /**
+   * Storage of the values of a single column, tracking nulls in a bit set.
+   */
+  private abstract static class Column {
+    protected final BitSet nulls = new BitSet();
+    
+    static Column of(ColumnType type) {
+      if(type == null) {
+        return new StringColumn();
+      }
+      switch(type) {
+        case integer:
+          return new LongColumn();
+        case datetime:
+          return new DateTimeColumn();
+        case bool:
+          return new BooleanColumn();
+        case string:
+        case text:
+        default:
+          return new StringColumn();
+      }
+    }
+    
+    /**
+     * Converts a submitted value to the type stored by this column, empty values of non-string columns convert to null.
+     */
+    abstract Object parse(String value);
+    
+    abstract void resize(int capacity);
+    
+    /**
+     * Stores the value, which was converted using {@link #parse(String)}.
+     */
+    void set(int row, Object value) {
+      nulls.set(row, value == null);
+      if(value != null) {
+        setValue(row, value);
+      }
+    }
+    
+    abstract void setValue(int row, Object value);
+    
+    Object get(int row) {
+      return nulls.get(row) ? null : getValue(row);
+    }
+    
+    abstract Object getValue(int row);
+    
+    void move(int from, int to) {
+      set(to, get(from));
+    }
+    
+    /**
+     * Releases the storage used for values that no longer occur in the first rows, called after compaction.
+     */
+    void compact(int rows) {
+    }
+    
+    /**
+     * Returns a comparator of row numbers ordering nulls first, valid until the column is changed.
+     */
+    IntBinaryOperator comparator() {
+      IntBinaryOperator values = valueComparator();
+      return (a, b) -> {
+        boolean aNull = nulls.get(a);
+        boolean bNull = nulls.get(b);
+        if(aNull || bNull) {
+          return Boolean.compare(!aNull, !bNull);
+        }
+        return values.applyAsInt(a, b);
+      };
+    }
+    
+    abstract IntBinaryOperator valueComparator();
+  }
+  
+  private static class LongColumn extends Column {
+    protected long[] values = new long[0];
+    
+    @Override
+    Object parse(String value) {
+      return value.isEmpty() ? null : Long.parseLong(value);
+    }
+    
+    @Override
+    void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+    
+    @Override
+    void setValue(int row, Object value) {
+      values[row] = (Long) value;
+    }
+    
+    @Override
+    Object getValue(int row) {
+      return values[row];
+    }
+    
+    @Override
+    IntBinaryOperator valueComparator() {
+      return (a, b) -> Long.compare(values[a], values[b]);
+    }
+  }
+  
+  /**
+   * Stores datetime values as milliseconds since the epoch of the local date and time.
+   */
+  private static class DateTimeColumn extends LongColumn {
+    
+    @Override
+    Object parse(String value) {
+      return value.isEmpty() ? null : Timestamp.valueOf(ValueCodecs.parseDateTime(value).truncatedTo(ChronoUnit.MILLIS));
+    }
+    
+    @Override
+    void setValue(int row, Object value) {
+      values[row] = ((Timestamp) value).toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    
+    @Override
+    Object getValue(int row) {
+      return Timestamp.valueOf(LocalDateTime.ofEpochSecond(Math.floorDiv(values[row], 1000L),
+          (int) Math.floorMod(values[row], 1000L) * 1_000_000, ZoneOffset.UTC));
+    }
+  }
+  
+  private static class BooleanColumn extends Column {
+    private final BitSet values = new BitSet();
+    
+    @Override
+    Object parse(String value) {
+      return value.isEmpty() ? null : Boolean.valueOf(value);
+    }
+    
+    @Override
+    void resize(int capacity) {
+      // bit sets grow as needed
+    }
+    
+    @Override
+    void setValue(int row, Object value) {
+      values.set(row, (Boolean) value);
+    }
+    
+    @Override
+    Object getValue(int row) {
+      return values.get(row);
+    }
+    
+    @Override
+    IntBinaryOperator valueComparator() {
+      return (a, b) -> Boolean.compare(values.get(a), values.get(b));
+    }
+  }
+  
+  /**
+   * Stores strings as codes into a dictionary of the distinct values of the column.
+   */
+  private static class StringColumn extends Column {
+    private int[] codes = new int[0];
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codesByValue = new HashMap<>();
+    /**
+     * Rank of each code, computed by readers and therefore shared through a volatile field.
+     */
+    private volatile int[] ranks;
+    
+    @Override
+    Object parse(String value) {
+      return value;
+    }
+    
+    @Override
+    void resize(int capacity) {
+      codes = Arrays.copyOf(codes, capacity);
+    }
+    
+    @Override
+    void setValue(int row, Object value) {
+      codes[row] = codesByValue.computeIfAbsent((String) value, v -> {
+        dictionary.add(v);
+        return dictionary.size() - 1;
+      });
+    }
+    
+    @Override
+    Object getValue(int row) {
+      return dictionary.get(codes[row]);
+    }
+    
+    /**
+     * Rebuilds the dictionary from the values of the remaining rows, as values of deleted or updated rows are never
+     * removed otherwise.
+     */
+    @Override
+    void compact(int rows) {
+      List<String> previous = new ArrayList<>(dictionary);
+      dictionary.clear();
+      codesByValue.clear();
+      ranks = null;
+      for(int row = 0; row < rows; row++) {
+        if(!nulls.get(row)) {
+          setValue(row, previous.get(codes[row]));
+        }
+      }
+    }
+    
+    /**
+     * @return number of distinct values in the dictionary
+     */
+    int dictionarySize() {
+      return dictionary.size();
+    }
+    
+    @Override
+    IntBinaryOperator valueComparator() {
+      int[] ranks = rankCodes();
+      return (a, b) -> Integer.compare(ranks[codes[a]], ranks[codes[b]]);
+    }
+    
+    /**
+     * Ranks the codes by the order of their values. As codes are only added between compactions, which discard the
+     * ranks, the ranks remain valid until the dictionary grows.
+     */
+    private int[] rankCodes() {
+      int[] cached = ranks;
+      if(cached != null && cached.length == dictionary.size()) {
+        return cached;
+      }
+      Integer[] sortedCodes = new Integer[dictionary.size()];
+      for(int i = 0; i < sortedCodes.length; i++) {
+        sortedCodes[i] = i;
+      }
+      Arrays.sort(sortedCodes, (a, b) -> dictionary.get(a).compareTo(dictionary.get(b)));
+      int[] ranks = new int[sortedCodes.length];
+      for(int i = 0; i < sortedCodes.length; i++) {
+        ranks[sortedCodes[i]] = i;
+      }
+      this.ranks = ranks;
+      return ranks;
+    }
+  }
+}
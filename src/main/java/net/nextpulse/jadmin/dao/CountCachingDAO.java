@@ -0,0 +1,212 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.CountStrategy;
+import net.nextpulse.jadmin.FormPostEntry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * DAO decorator that caches the result of {@link #count()}. Inserts and deletes made through this DAO adjust the cached
+ * count directly, while the time to live bounds how long changes made by other applications may go unnoticed.
+ *
+ * @author yholkamp
+ */
+public class CountCachingDAO extends ForwardingDAO {
+  private static final Logger logger = LogManager.getLogger();
+  
+  private final long timeToLiveNanos;
+  private final AtomicReference<CachedCount> cachedCount = new AtomicReference<>();
+  /**
+   * Number of writes made through this DAO, used to discard counts that were running while a write took place.
+   */
+  private final AtomicLong writes = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  
+  /**
+   * @param delegate   DAO to cache the count of
+   * @param timeToLive maximum age of a cached count
+   */
+  public CountCachingDAO(AbstractDAO delegate, Duration timeToLive) {
+    super(delegate);
+    this.timeToLiveNanos = timeToLive.toNanos();
+  }
+  
+  /**
+   * Returns the cached number of entries, counting the entries using the underlying DAO if the cached value expired.
+   *
+   * @return number of entries
+   * @throws DataAccessException if an error occurred while counting the entries
+   */
+  @Override
+  public int count() throws DataAccessException {
+    CachedCount cached = getFreshCount();
+    if(cached != null) {
+      return cached.value;
+    }
+    long writesBefore = writes.get();
+    int value = delegate.count();
+    store(value, writesBefore);
+    return value;
+  }
+  
+  /**
+   * Retrieves the page using the underlying DAO. For the exact count strategy the cached count is used when available,
+   * otherwise the count returned alongside the page is cached.
+   *
+   * @param query     description of the page to retrieve
+   * @param strategy  strategy to use for counting the entries
+   * @param threshold estimated number of entries from which the threshold strategy uses the estimate
+   * @return the page of entries and the number of entries
+   * @throws DataAccessException if an error occurred while retrieving or counting the entries
+   */
+  @Override
+  public Page selectPage(PageQuery query, CountStrategy strategy, int threshold) throws DataAccessException {
+    if(strategy != CountStrategy.EXACT) {
+      // other strategies call count() where needed, which is served by the cache
+      return new Page(delegate.selectMultiple(query), count(strategy, threshold));
+    }
+    CachedCount cached = getFreshCount();
+    if(cached != null) {
+      return new Page(delegate.selectMultiple(query), RowCount.exact(cached.value));
+    }
+    long writesBefore = writes.get();
+    Page page = delegate.selectPage(query, strategy, threshold);
+    if(page.getRowCount().isExact()) {
+      store(page.getRowCount().getValue(), writesBefore);
+    }
+    return page;
+  }
+  
+  /**
+   * Streams the page using the underlying DAO, using or caching the count like
+   * {@link #selectPage(PageQuery, CountStrategy, int)}.
+   *
+   * @param query     description of the page to retrieve
+   * @param strategy  strategy to use for counting the entries
+   * @param threshold estimated number of entries from which the threshold strategy uses the estimate
+   * @param callback  callback receiving the entries in order
+   * @param <E>       type of exception thrown by the callback
+   * @return the number of entries
+   * @throws DataAccessException if an error occurred while retrieving or counting the entries
+   * @throws E                   if the callback failed
+   */
+  @Override
+  public <E extends Exception> RowCount streamPage(PageQuery query, CountStrategy strategy, int threshold, EntryCallback<E> callback) throws DataAccessException, E {
+    if(strategy != CountStrategy.EXACT) {
+      delegate.streamMultiple(query, callback);
+      return count(strategy, threshold);
+    }
+    CachedCount cached = getFreshCount();
+    if(cached != null) {
+      delegate.streamMultiple(query, callback);
+      return RowCount.exact(cached.value);
+    }
+    long writesBefore = writes.get();
+    RowCount rowCount = delegate.streamPage(query, strategy, threshold, callback);
+    if(rowCount.isExact()) {
+      store(rowCount.getValue(), writesBefore);
+    }
+    return rowCount;
+  }
+  
+  @Override
+  public void insert(FormPostEntry postData) throws DataAccessException {
+    delegate.insert(postData);
+    adjust(1);
+  }
+  
+  @Override
+  public void delete(Object... keys) throws DataAccessException {
+    // only reached when an entry was removed, deleting a missing entry fails
+    delegate.delete(keys);
+    adjust(-1);
+  }
+  
+  /**
+   * Discards the cached count, i.e. after a bulk change made outside of JAdmin.
+   */
+  public void invalidate() {
+    writes.incrementAndGet();
+    cachedCount.set(null);
+  }
+  
+  /**
+   * @return number of count calls answered from the cache
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+  
+  /**
+   * @return number of count calls forwarded to the underlying DAO
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+  
+  /**
+   * @return ratio of count calls answered from the cache, 0 if count was never called
+   */
+  public double getHitRatio() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+  
+  /**
+   * Returns the cached count if it has not expired yet, updating the hit/miss statistics.
+   *
+   * @return the cached count or null if it should be retrieved again
+   */
+  private CachedCount getFreshCount() {
+    CachedCount cached = cachedCount.get();
+    if(cached != null && cached.expiresAt - System.nanoTime() > 0) {
+      hits.incrementAndGet();
+      return cached;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+  
+  /**
+   * Caches the provided count, unless a write took place after the count was started.
+   *
+   * @param value        counted number of entries
+   * @param writesBefore number of writes at the start of the count
+   */
+  private void store(int value, long writesBefore) {
+    if(writes.get() == writesBefore) {
+      cachedCount.set(new CachedCount(value, System.nanoTime() + timeToLiveNanos));
+    } else {
+      logger.trace("Not caching count, a write took place while counting");
+    }
+  }
+  
+  /**
+   * Adjusts the cached count after a successful write, keeping its expiry time.
+   *
+   * @param delta change in the number of entries
+   */
+  private void adjust(int delta) {
+    writes.incrementAndGet();
+    cachedCount.updateAndGet(cached -> cached == null ? null : new CachedCount(cached.value + delta, cached.expiresAt));
+  }
+  
+  /**
+   * Immutable cached count and the moment it expires, following {@link System#nanoTime()}.
+   */
+  private static class CachedCount {
+    private final int value;
+    private final long expiresAt;
+    
+    CachedCount(int value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -1,16 +1,24 @@
 package net.nextpulse.jadmin.dao;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
- * Representation of a single database entry.
+ * Representation of a single database entry. Entries either hold their own map of properties or, for rows read from a
+ * database, an array of values sharing a single {@link ColumnIndex} with the other rows of the result set.
  *
  * @author yholkamp
  */
 public class DatabaseEntry {
 
   private Map<String, Object> properties = new HashMap<>();
+  private ColumnIndex columns;
+  private Object[] values;
 
   /**
    * Constructs a new entry using the provided map.
@@ -24,6 +32,24 @@ public class DatabaseEntry {
     return entry;
   }
 
+  /**
+   * Constructs a new array-backed entry.
+   *
+   * @param columns index describing the slots of the values
+   * @param values  column values, one per slot of the index
+   * @return new DatabaseEntry object
+   */
+  public static DatabaseEntry buildFrom(ColumnIndex columns, Object[] values) {
+    if(columns.size() != values.length) {
+      throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.length);
+    }
+    DatabaseEntry entry = new DatabaseEntry();
+    entry.properties = null;
+    entry.columns = columns;
+    entry.values = values;
+    return entry;
+  }
+
   /**
    * Constructs an empty object.
    *
@@ -33,7 +59,95 @@ public class DatabaseEntry {
     return new DatabaseEntry();
   }
 
+  /**
+   * Creates an independent copy of this entry, of which changes do not affect this entry. Array-backed entries share
+   * their column index with the copy.
+   *
+   * @return the copied entry
+   */
+  public DatabaseEntry copy() {
+    return properties != null ? buildFrom(new HashMap<>(properties)) : buildFrom(columns, values.clone());
+  }
+
+  /**
+   * Returns the properties of this entry. For array-backed entries this is a view on the values, which supports
+   * changing the value of existing columns but not the addition or removal of columns.
+   *
+   * @return map of column names and values
+   */
   public Map<String, Object> getProperties() {
-    return properties;
+    return properties != null ? properties : new RowView();
+  }
+
+  /**
+   * Map view on the values of an array-backed entry, looking up columns case insensitively.
+   */
+  private class RowView extends AbstractMap<String, Object> {
+    
+    @Override
+    public int size() {
+      return values.length;
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+      return columns.indexOf(key) >= 0;
+    }
+    
+    @Override
+    public Object get(Object key) {
+      int slot = columns.indexOf(key);
+      return slot < 0 ? null : values[slot];
+    }
+    
+    @Override
+    public Object put(String key, Object value) {
+      int slot = columns.indexOf(key);
+      if(slot < 0) {
+        throw new UnsupportedOperationException("Column " + key + " is not part of this entry");
+      }
+      Object previous = values[slot];
+      values[slot] = value;
+      return previous;
+    }
+    
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public int size() {
+          return values.length;
+        }
+        
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new Iterator<Entry<String, Object>>() {
+            private int slot = 0;
+            
+            @Override
+            public boolean hasNext() {
+              return slot < values.length;
+            }
+            
+            @Override
+            public Entry<String, Object> next() {
+              if(!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int current = slot++;
+              return new SimpleEntry<String, Object>(columns.getName(current), values[current]) {
+                @Override
+                public Object setValue(Object value) {
+                  super.setValue(value);
+                  Object previous = values[current];
+                  values[current] = value;
+                  return previous;
+                }
+              };
+            }
+          };
+        }
+      };
+    }
   }
 }
@@ -0,0 +1,17 @@
+package net.nextpulse.jadmin.dao;
+
+/**
+ * Callback receiving the entries of a page one by one, as they are read from the data store.
+ *
+ * @param <E> type of exception the callback may throw, i.e. an IOException when writing the entries to a client
+ * @author yholkamp
+ */
+@FunctionalInterface
+public interface EntryCallback<E extends Exception> {
+  
+  /**
+   * @param entry the next entry of the page
+   * @throws E if the entry could not be processed, which aborts the retrieval of the page
+   */
+  void accept(DatabaseEntry entry) throws E;
+}
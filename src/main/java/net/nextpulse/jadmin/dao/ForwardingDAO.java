@@ -0,0 +1,126 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.CountStrategy;
+import net.nextpulse.jadmin.FormPostEntry;
+import net.nextpulse.jadmin.schema.ResourceSchemaProvider;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * DAO that forwards all calls to another DAO, serving as base class for decorators that add behaviour such as caching
+ * to any AbstractDAO implementation.
+ *
+ * @author yholkamp
+ */
+public abstract class ForwardingDAO extends AbstractDAO {
+  
+  /**
+   * DAO receiving the forwarded calls.
+   */
+  protected final AbstractDAO delegate;
+  
+  protected ForwardingDAO(AbstractDAO delegate) {
+    if(delegate == null) {
+      throw new NullPointerException("delegate was null");
+    }
+    this.delegate = delegate;
+  }
+  
+  @Override
+  public void initialize(ResourceSchemaProvider resourceSchemaProvider) {
+    super.initialize(resourceSchemaProvider);
+    delegate.initialize(resourceSchemaProvider);
+  }
+  
+  @Override
+  public Optional<DatabaseEntry> selectOne(Object... keys) throws DataAccessException {
+    return delegate.selectOne(keys);
+  }
+  
+  @Override
+  public List<DatabaseEntry> selectByKeys(Collection<String> keys) throws DataAccessException {
+    return delegate.selectByKeys(keys);
+  }
+  
+  @Override
+  public List<DatabaseEntry> selectByPrefix(String column, String prefix, int limit) throws DataAccessException {
+    return delegate.selectByPrefix(column, prefix, limit);
+  }
+  
+  @Override
+  public List<DatabaseEntry> selectMultiple(long offset, long count, String sortColumn, boolean sortDirection) throws DataAccessException {
+    return delegate.selectMultiple(offset, count, sortColumn, sortDirection);
+  }
+  
+  @Override
+  public List<DatabaseEntry> selectMultiple(PageQuery query) throws DataAccessException {
+    return delegate.selectMultiple(query);
+  }
+  
+  @Override
+  public <E extends Exception> void streamMultiple(PageQuery query, EntryCallback<E> callback) throws DataAccessException, E {
+    delegate.streamMultiple(query, callback);
+  }
+  
+  @Override
+  public <E extends Exception> RowCount streamPage(PageQuery query, CountStrategy strategy, int threshold, EntryCallback<E> callback) throws DataAccessException, E {
+    return delegate.streamPage(query, strategy, threshold, callback);
+  }
+  
+  @Override
+  public Page selectPage(PageQuery query, CountStrategy strategy, int threshold) throws DataAccessException {
+    return delegate.selectPage(query, strategy, threshold);
+  }
+  
+  @Override
+  public void insert(FormPostEntry postData) throws DataAccessException {
+    delegate.insert(postData);
+  }
+  
+  @Override
+  public void update(FormPostEntry postData) throws DataAccessException {
+    delegate.update(postData);
+  }
+  
+  @Override
+  public void delete(Object... keys) throws DataAccessException {
+    delegate.delete(keys);
+  }
+  
+  @Override
+  public int count() throws DataAccessException {
+    return delegate.count();
+  }
+  
+  @Override
+  public OptionalInt estimateCount() throws DataAccessException {
+    return delegate.estimateCount();
+  }
+  
+  @Override
+  public void cancelCount(Thread thread) {
+    delegate.cancelCount(thread);
+  }
+  
+  @Override
+  public boolean isAvailable() {
+    return delegate.isAvailable();
+  }
+  
+  @Override
+  public Map<String, ColumnDefinition> getColumnDefinitions() throws DataAccessException {
+    return delegate.getColumnDefinitions();
+  }
+  
+  /**
+   * @return the DAO receiving the forwarded calls
+   */
+  public AbstractDAO getDelegate() {
+    return delegate;
+  }
+}
@@ -1,9 +1,10 @@
 package net.nextpulse.jadmin.dao;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
 import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.CountStrategy;
 import net.nextpulse.jadmin.FormPostEntry;
-import org.apache.commons.dbutils.BasicRowProcessor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -13,9 +14,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.sql.Statement;
+import java.time.DateTimeException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 /**
  * DAO implementation for resources backed by a SQL database.
@@ -24,13 +28,36 @@ import java.util.*;
  */
 public class GenericSQLDAO extends AbstractDAO {
   private static final Logger logger = LogManager.getLogger();
+  /**
+   * Alias of the window function column holding the total number of rows, see {@link #selectPage(PageQuery, CountStrategy, int)}.
+   */
+  private static final String TOTAL_COUNT_COLUMN = "jadmin_total_count";
+  /**
+   * Maximum number of keys bound in a single IN condition, below the parameter limit of the supported databases.
+   */
+  private static final int MAX_KEYS_PER_QUERY = 500;
+  /**
+   * Number of seconds to wait for the database to confirm a connection is valid, see {@link #isAvailable()}.
+   */
+  private static final int AVAILABILITY_TIMEOUT_SECONDS = 2;
   private final String tableName;
+  private final String countQuery;
+  /**
+   * Statement plans built so far, keyed by the operation and the column set it was built for.
+   */
+  private final ConcurrentMap<String, StatementPlan> statementPlans = new ConcurrentHashMap<>();
+  /**
+   * Count and estimate statements being executed, keyed by the thread executing them, see {@link #cancelCount(Thread)}.
+   */
+  private final ConcurrentMap<Thread, Statement> runningCounts = new ConcurrentHashMap<>();
   
   private DataSource dataSource;
+  private volatile SQLDialect dialect;
   
   public GenericSQLDAO(DataSource dataSource, String tableName) {
     this.dataSource = dataSource;
     this.tableName = tableName;
+    this.countQuery = String.format("SELECT COUNT(*) FROM %s", tableName);
   }
   
   /**
@@ -41,29 +68,115 @@ public class GenericSQLDAO extends AbstractDAO {
   @Override
   public Optional<DatabaseEntry> selectOne(Object[] keys) throws DataAccessException {
     logger.trace("Selecting one {}", tableName);
-    Map<String, Object> editedObject = null;
+    DatabaseEntry editedObject = null;
+    StatementPlan plan = getPlan("selectOne", () -> createKeyConditionPlan("SELECT * FROM %s WHERE %s LIMIT 1"));
     try(Connection conn = dataSource.getConnection()) {
-      String conditions = resourceSchemaProvider.getKeyColumns().stream()
-          .map(x -> String.format("%s = ?", x.getName()))
-          .reduce((s, s2) -> s + " AND " + s2)
-          .orElseThrow(() -> new DataAccessException("Could not generate SQL condition"));
-      
-      PreparedStatement statement = conn.prepareStatement(String.format("SELECT * FROM %s WHERE %s LIMIT 1", tableName, conditions));
-      for(int i = 1; i <= resourceSchemaProvider.getKeyColumns().size(); i++) {
-        ColumnDefinition columnDefinition = resourceSchemaProvider.getKeyColumns().get(i - 1);
-        setValue(statement, i, (String) keys[i - 1], columnDefinition, columnDefinition.getName());
-      }
+      PreparedStatement statement = conn.prepareStatement(plan.getSql());
+      bind(statement, 1, plan, keys);
       logger.debug("Executing statement {}", statement.toString());
       ResultSet results = statement.executeQuery();
       
       if(results.next()) {
-        editedObject = new BasicRowProcessor().toMap(results);
+        ColumnIndex columns = ColumnIndex.of(results.getMetaData(), results.getMetaData().getColumnCount());
+        editedObject = readRow(results, columns);
       }
     } catch(SQLException e) {
       logger.error("Exception occurred while executing");
       throw new DataAccessException(e);
     }
-    return editedObject == null ? Optional.empty() : Optional.of(DatabaseEntry.buildFrom(editedObject));
+    return Optional.ofNullable(editedObject);
+  }
+  
+  /**
+   * Retrieves the entries matching the provided keys using an IN condition, split into multiple queries when more keys
+   * are provided than the database accepts as parameters.
+   *
+   * @param keys primary key values
+   * @return the entries matching the keys
+   * @throws DataAccessException if an error occurs while accessing the database or the resource has multiple key columns
+   */
+  @Override
+  public List<DatabaseEntry> selectByKeys(Collection<String> keys) throws DataAccessException {
+    logger.trace("Selecting {} {} by key", keys.size(), tableName);
+    List<ColumnDefinition> keyColumns = resourceSchemaProvider.getKeyColumns();
+    if(keyColumns.size() != 1) {
+      throw new DataAccessException("Selecting by keys requires a single key column, found " + keyColumns.size() + " on " + tableName);
+    }
+    ColumnDefinition keyColumn = keyColumns.get(0);
+    List<DatabaseEntry> entries = new ArrayList<>(keys.size());
+    try(Connection conn = dataSource.getConnection()) {
+      for(List<String> batch : Iterables.partition(keys, MAX_KEYS_PER_QUERY)) {
+        String parameters = String.join(", ", Collections.nCopies(batch.size(), "?"));
+        String sql = String.format("SELECT * FROM %s WHERE %s IN (%s)", tableName, keyColumn.getName(), parameters);
+        try(PreparedStatement statement = conn.prepareStatement(sql)) {
+          for(int i = 0; i < batch.size(); i++) {
+            setValue(statement, i + 1, batch.get(i), keyColumn, keyColumn.getName());
+          }
+          logger.debug("Executing statement {}", statement.toString());
+          ResultSet results = statement.executeQuery();
+          ColumnIndex columns = null;
+          while(results.next()) {
+            if(columns == null) {
+              columns = ColumnIndex.of(results.getMetaData(), results.getMetaData().getColumnCount());
+            }
+            entries.add(readRow(results, columns));
+          }
+        }
+      }
+    } catch(SQLException e) {
+      throw new DataAccessException(e);
+    }
+    return entries;
+  }
+  
+  /**
+   * Retrieves the key columns and the provided column of the entries matching the prefix using a LIKE condition.
+   *
+   * @param column column to match the prefix against
+   * @param prefix prefix the column values should start with, may be empty
+   * @param limit  maximum number of entries to return
+   * @return the matching entries
+   * @throws DataAccessException if an error occurs while accessing the database or the column is unknown
+   */
+  @Override
+  public List<DatabaseEntry> selectByPrefix(String column, String prefix, int limit) throws DataAccessException {
+    logger.trace("Selecting {} by prefix of {}", tableName, column);
+    if(!getColumnDefinitions().containsKey(column)) {
+      throw new DataAccessException("Unknown column " + column + " for " + tableName);
+    }
+    List<String> columns = resourceSchemaProvider.getKeyColumns().stream()
+        .map(ColumnDefinition::getName)
+        .collect(Collectors.toCollection(ArrayList::new));
+    columns.add(column);
+    String sql = String.format("SELECT %s FROM %s WHERE %s LIKE ? ESCAPE '!' ORDER BY %s LIMIT ?", createSelectList(columns), tableName, column, column);
+    List<DatabaseEntry> entries = new ArrayList<>();
+    try(Connection conn = dataSource.getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
+      statement.setString(1, escapeLikePattern(prefix) + "%");
+      statement.setInt(2, limit);
+      logger.debug("Executing statement {}", statement.toString());
+      ResultSet results = statement.executeQuery();
+      ColumnIndex columnIndex = null;
+      while(results.next()) {
+        if(columnIndex == null) {
+          columnIndex = ColumnIndex.of(results.getMetaData(), results.getMetaData().getColumnCount());
+        }
+        entries.add(readRow(results, columnIndex));
+      }
+    } catch(SQLException e) {
+      throw new DataAccessException(e);
+    }
+    return entries;
+  }
+  
+  /**
+   * Escapes the wildcards of a LIKE pattern, using ! as escape character as the backslash is treated as escape
+   * character in string literals by some databases.
+   *
+   * @param value literal value
+   * @return value matching itself in a LIKE pattern with ESCAPE '!'
+   */
+  static String escapeLikePattern(String value) {
+    return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
   }
   
   /**
@@ -76,23 +189,176 @@ public class GenericSQLDAO extends AbstractDAO {
    */
   @Override
   public List<DatabaseEntry> selectMultiple(long offset, long count, String sortColumn, boolean sortDirection) throws DataAccessException {
-    logger.trace("Selecting multiple {}, {} offset, {} count", tableName, offset, count);
+    return selectMultiple(new PageQuery(offset, count, sortColumn, sortDirection));
+  }
+  
+  /**
+   * Retrieves a page of entries, sorted by the requested column and the primary key(s) as tie breaker. When the query
+   * holds a keyset cursor, the page continues directly after the cursor instead of skipping the offset.
+   *
+   * @param query description of the page to retrieve
+   * @return list of entries of up to count long
+   * @throws DataAccessException if an error occurs while accessing the database.
+   */
+  @Override
+  public List<DatabaseEntry> selectMultiple(PageQuery query) throws DataAccessException {
+    List<DatabaseEntry> rows = new ArrayList<>();
+    streamMultiple(query, rows::add);
+    return rows;
+  }
+  
+  /**
+   * Passes the entries of a page to the callback while reading them from the result set, see
+   * {@link #selectMultiple(PageQuery)}.
+   *
+   * @param query    description of the page to retrieve
+   * @param callback callback receiving the entries in order
+   * @param <E>      type of exception thrown by the callback
+   * @throws DataAccessException if an error occurs while accessing the database.
+   * @throws E                   if the callback failed
+   */
+  @Override
+  public <E extends Exception> void streamMultiple(PageQuery query, EntryCallback<E> callback) throws DataAccessException, E {
+    logger.trace("Selecting multiple {}, {} offset, {} count", tableName, query.getOffset(), query.getCount());
+    try(Connection conn = dataSource.getConnection()) {
+      readPage(conn, query, false, callback);
+    } catch(SQLException e) {
+      throw new DataAccessException(e);
+    }
+  }
+  
+  /**
+   * Retrieves a page of entries and the exact number of entries using a single connection, see
+   * {@link #streamPage(PageQuery, CountStrategy, int, EntryCallback)}.
+   *
+   * @param query     description of the page to retrieve
+   * @param strategy  strategy to use for counting the entries
+   * @param threshold estimated number of entries from which the threshold strategy uses the estimate
+   * @return the page of entries and the number of entries
+   * @throws DataAccessException if an error occurs while accessing the database.
+   */
+  @Override
+  public Page selectPage(PageQuery query, CountStrategy strategy, int threshold) throws DataAccessException {
     List<DatabaseEntry> rows = new ArrayList<>();
+    RowCount rowCount = streamPage(query, strategy, threshold, rows::add);
+    return new Page(rows, rowCount);
+  }
+  
+  /**
+   * Passes the entries of a page to the callback and returns the exact number of entries, using a single connection. On
+   * databases supporting window functions the total is selected alongside the rows using {@code COUNT(*) OVER()}, other
+   * databases (and pages continuing after a keyset cursor, which only select the remaining rows) execute a separate
+   * count query.
+   *
+   * @param query     description of the page to retrieve
+   * @param strategy  strategy to use for counting the entries
+   * @param threshold estimated number of entries from which the threshold strategy uses the estimate
+   * @param callback  callback receiving the entries in order
+   * @param <E>       type of exception thrown by the callback
+   * @return the number of entries
+   * @throws DataAccessException if an error occurs while accessing the database.
+   * @throws E                   if the callback failed
+   */
+  @Override
+  public <E extends Exception> RowCount streamPage(PageQuery query, CountStrategy strategy, int threshold, EntryCallback<E> callback) throws DataAccessException, E {
+    if(strategy != CountStrategy.EXACT) {
+      return super.streamPage(query, strategy, threshold, callback);
+    }
+    logger.trace("Selecting page of {}, {} offset, {} count", tableName, query.getOffset(), query.getCount());
     try(Connection conn = dataSource.getConnection()) {
-      // TODO: only select columns that are displayed or part of the primary key
-      String sorting = sortDirection ? "asc" : "desc";
-      String query = String.format("SELECT * FROM %s ORDER BY %s %s LIMIT %d OFFSET %d", tableName, sortColumn, sorting, count, offset);
-      logger.trace("Formatted selectMultiple query: {}", query);
-      PreparedStatement statement = conn.prepareStatement(query);
-      ResultSet results = statement.executeQuery();
-      while(results.next()) {
-        Map<String, Object> row = new BasicRowProcessor().toMap(results);
-        rows.add(DatabaseEntry.buildFrom(row));
+      boolean windowed = query.getCursor() == null && getDialect(conn).supportsWindowFunctions();
+      long total = readPage(conn, query, windowed, callback);
+      // an empty page, i.e. past the last row, does not provide the total
+      if(total < 0) {
+        total = count(conn);
       }
+      return RowCount.exact((int) total);
     } catch(SQLException e) {
       throw new DataAccessException(e);
     }
-    return rows;
+  }
+  
+  /**
+   * Executes the query for the provided page and passes the rows to the callback.
+   *
+   * @param conn           open connection to use
+   * @param query          description of the page to retrieve
+   * @param withTotalCount true to select the total number of rows as well, see {@link #executePageQuery}
+   * @param callback       callback receiving the entries in order
+   * @param <E>            type of exception thrown by the callback
+   * @return the total number of rows, or -1 if not selected or the page is empty
+   * @throws SQLException        if an error occurs while executing the query
+   * @throws DataAccessException if the statement plan could not be built
+   * @throws E                   if the callback failed
+   */
+  private <E extends Exception> long readPage(Connection conn, PageQuery query, boolean withTotalCount, EntryCallback<E> callback) throws SQLException, DataAccessException, E {
+    ResultSet results = executePageQuery(conn, query, withTotalCount);
+    long total = -1;
+    ColumnIndex columns = null;
+    while(results.next()) {
+      if(columns == null) {
+        // the total is selected as last column, leave it out of the rows
+        int columnCount = results.getMetaData().getColumnCount();
+        columns = ColumnIndex.of(results.getMetaData(), withTotalCount ? columnCount - 1 : columnCount);
+        if(withTotalCount) {
+          total = results.getLong(columnCount);
+        }
+      }
+      callback.accept(readRow(results, columns));
+    }
+    return total;
+  }
+  
+  /**
+   * Prepares, binds and executes the query for the provided page.
+   *
+   * @param conn           open connection to use
+   * @param query          description of the page to retrieve
+   * @param withTotalCount true to add the total number of rows to every row as {@link #TOTAL_COUNT_COLUMN}, may only be
+   *                       used on databases supporting window functions
+   * @return the results of the query
+   * @throws SQLException        if an error occurs while executing the query
+   * @throws DataAccessException if the statement plan could not be built
+   */
+  private ResultSet executePageQuery(Connection conn, PageQuery query, boolean withTotalCount) throws SQLException, DataAccessException {
+    String selection = createSelectList(query.getColumns());
+    List<String> orderColumns = getOrderColumns(query.getSortColumn());
+    List<String> cursorValues = getCursorValues(query, orderColumns);
+    boolean keyset = cursorValues != null;
+    String signature = String.format("select:%s:%s:%b:%b:%b", selection, query.getSortColumn(), query.getSortDirection(), keyset, withTotalCount);
+    StatementPlan plan = getPlan(signature, () -> {
+      String columns = selection;
+      if(withTotalCount) {
+        // an unqualified * can't be combined with other columns in MySQL
+        String qualified = "*".equals(selection) ? tableName + ".*" : selection;
+        columns = String.format("%s, COUNT(*) OVER() AS %s", qualified, TOTAL_COUNT_COLUMN);
+      }
+      return createSelectMultiplePlan(columns, orderColumns, query.getSortDirection(), keyset);
+    });
+    logger.trace("Planned selectMultiple query: {}", plan.getSql());
+    PreparedStatement statement = conn.prepareStatement(plan.getSql());
+    int index = bind(statement, 1, plan, keyset ? cursorValues.toArray() : new Object[0]);
+    statement.setLong(index++, query.getCount());
+    if(!keyset) {
+      statement.setLong(index, query.getOffset());
+    }
+    return statement.executeQuery();
+  }
+  
+  /**
+   * Reads the current row of the result set into an array-backed entry, reading the values by column position.
+   *
+   * @param results result set positioned on a row
+   * @param columns index of the columns to read, shared by all rows of the result set
+   * @return the new entry
+   * @throws SQLException if a value could not be read
+   */
+  private static DatabaseEntry readRow(ResultSet results, ColumnIndex columns) throws SQLException {
+    Object[] values = new Object[columns.size()];
+    for(int i = 0; i < values.length; i++) {
+      values[i] = results.getObject(i + 1);
+    }
+    return DatabaseEntry.buildFrom(columns, values);
   }
   
   /**
@@ -102,20 +368,25 @@ public class GenericSQLDAO extends AbstractDAO {
   @Override
   public void insert(FormPostEntry postEntry) throws DataAccessException {
     logger.trace("Inserting a new {}", tableName);
+    String signature = "insert:" + postEntry.getKeyValues().keySet() + postEntry.getValues().keySet();
+    StatementPlan plan = getPlan(signature, () -> {
+      List<String> parameters = new ArrayList<>(postEntry.getKeyValues().keySet());
+      parameters.addAll(postEntry.getValues().keySet());
+      return new StatementPlan(createInsertStatement(postEntry), parameters, getColumnDefinitions());
+    });
     try(Connection conn = dataSource.getConnection()) {
-      // construct the SQL query
-      String query = createInsertStatement(postEntry);
-      
-      PreparedStatement statement = conn.prepareStatement(query);
-      int index = 1;
-      for(String columnName : postEntry.getKeyValues().keySet()) {
-        setValue(statement, index++, postEntry.getKeyValues().get(columnName), getColumnDefinitions().get(columnName), columnName);
+      PreparedStatement statement = conn.prepareStatement(plan.getSql());
+      Object[] values = new Object[plan.getParameterCount()];
+      int index = 0;
+      for(String value : postEntry.getKeyValues().values()) {
+        values[index++] = value;
       }
-      for(String columnName : postEntry.getValues().keySet()) {
-        setValue(statement, index++, postEntry.getValues().get(columnName), getColumnDefinitions().get(columnName), columnName);
+      for(String value : postEntry.getValues().values()) {
+        values[index++] = value;
       }
+      bind(statement, 1, plan, values);
       
-      logger.debug("Prepared statement SQL: {}", query);
+      logger.debug("Prepared statement SQL: {}", plan.getSql());
       int updatedRows = statement.executeUpdate();
       if(updatedRows != 1) {
         throw new SQLException("Updated " + updatedRows + ", expected 1");
@@ -132,21 +403,26 @@ public class GenericSQLDAO extends AbstractDAO {
   @Override
   public void update(FormPostEntry postEntry) throws DataAccessException {
     logger.trace("Updating an existing {}", tableName);
+    String signature = "update:" + postEntry.getValues().keySet() + postEntry.getKeyValues().keySet();
+    StatementPlan plan = getPlan(signature, () -> {
+      // first the SET field = ? portion, next the WHERE field = ? part
+      List<String> parameters = new ArrayList<>(postEntry.getValues().keySet());
+      parameters.addAll(postEntry.getKeyValues().keySet());
+      return new StatementPlan(createUpdateQuery(postEntry), parameters, getColumnDefinitions());
+    });
     try(Connection conn = dataSource.getConnection()) {
-      // construct the SQL query
-      String query = createUpdateQuery(postEntry);
-      logger.debug("Prepared statement SQL: {}", query);
-      PreparedStatement statement = conn.prepareStatement(query);
+      logger.debug("Prepared statement SQL: {}", plan.getSql());
+      PreparedStatement statement = conn.prepareStatement(plan.getSql());
       
-      int index = 1;
-      // first bind the SET field = ? portion
-      for(String columnName : postEntry.getValues().keySet()) {
-        setValue(statement, index++, postEntry.getValues().get(columnName), getColumnDefinitions().get(columnName), columnName);
+      Object[] values = new Object[plan.getParameterCount()];
+      int index = 0;
+      for(String value : postEntry.getValues().values()) {
+        values[index++] = value;
       }
-      // and next the WHERE field = ? part
-      for(String columnName : postEntry.getKeyValues().keySet()) {
-        setValue(statement, index++, postEntry.getKeyValues().get(columnName), getColumnDefinitions().get(columnName), columnName);
+      for(String value : postEntry.getKeyValues().values()) {
+        values[index++] = value;
       }
+      bind(statement, 1, plan, values);
       logger.debug("Query: {}", statement.toString());
       int updatedRows = statement.executeUpdate();
       if(updatedRows != 1) {
@@ -166,39 +442,219 @@ public class GenericSQLDAO extends AbstractDAO {
   @Override
   public int count() throws DataAccessException {
     try(Connection conn = dataSource.getConnection()) {
-      PreparedStatement statement = conn.prepareStatement(String.format("SELECT COUNT(*) FROM %s", tableName));
-      ResultSet results = statement.executeQuery();
-      results.next();
-      return results.getInt(1);
+      return count(conn);
     } catch(SQLException e) {
       throw new DataAccessException(e);
     }
   }
   
+  private int count(Connection conn) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(countQuery);
+    ResultSet results = executeCount(statement);
+    results.next();
+    return results.getInt(1);
+  }
+  
+  /**
+   * Executes a count or estimate query, allowing it to be cancelled by {@link #cancelCount(Thread)} while it runs.
+   *
+   * @param statement prepared query
+   * @return the results of the query
+   * @throws SQLException if the query failed or was cancelled
+   */
+  private ResultSet executeCount(PreparedStatement statement) throws SQLException {
+    Thread thread = Thread.currentThread();
+    runningCounts.put(thread, statement);
+    try {
+      return statement.executeQuery();
+    } finally {
+      runningCounts.remove(thread, statement);
+    }
+  }
+  
+  /**
+   * Cancels the count or estimate query executed by the thread using {@link Statement#cancel()}, as interrupting the
+   * thread does not stop a running query.
+   *
+   * @param thread thread executing the count
+   */
+  @Override
+  public void cancelCount(Thread thread) {
+    Statement statement = runningCounts.get(thread);
+    if(statement == null) {
+      return;
+    }
+    try {
+      statement.cancel();
+    } catch(SQLException e) {
+      logger.debug("Could not cancel the count of {}", tableName, e);
+    }
+  }
+  
+  /**
+   * Reads the estimated number of rows from the catalog statistics of databases that offer these, i.e. pg_class for
+   * PostgreSQL and information_schema for MySQL and H2.
+   *
+   * @return the estimated number of entries or an empty optional if no (usable) estimate is available
+   * @throws DataAccessException if an SQL exception occurred
+   */
+  @Override
+  public OptionalInt estimateCount() throws DataAccessException {
+    try(Connection conn = dataSource.getConnection()) {
+      String query = getDialect(conn).getEstimatedCountQuery();
+      if(query == null) {
+        return OptionalInt.empty();
+      }
+      PreparedStatement statement = conn.prepareStatement(query);
+      statement.setString(1, tableName);
+      ResultSet results = executeCount(statement);
+      // tables that were never analyzed report an estimate of 0 or -1
+      if(results.next() && results.getLong(1) > 0) {
+        return OptionalInt.of((int) Math.min(results.getLong(1), Integer.MAX_VALUE));
+      }
+      return OptionalInt.empty();
+    } catch(SQLException e) {
+      throw new DataAccessException(e);
+    }
+  }
+  
+  /**
+   * Checks whether a valid connection to the database can be obtained.
+   *
+   * @return true if the database confirmed the connection is valid
+   */
+  @Override
+  public boolean isAvailable() {
+    try(Connection conn = dataSource.getConnection()) {
+      return conn.isValid(AVAILABILITY_TIMEOUT_SECONDS);
+    } catch(SQLException e) {
+      logger.warn("Could not connect to the database of {}", tableName, e);
+      return false;
+    }
+  }
+  
+  /**
+   * Returns the dialect of the database, detected on first use.
+   *
+   * @param conn open connection to the database
+   * @return the database dialect
+   * @throws SQLException if the database metadata could not be read
+   */
+  protected SQLDialect getDialect(Connection conn) throws SQLException {
+    if(dialect == null) {
+      dialect = SQLDialect.of(conn.getMetaData());
+    }
+    return dialect;
+  }
   
   @Override
   public void delete(Object... keys) throws DataAccessException {
     logger.trace("Updating an existing {}", tableName);
+    StatementPlan plan = getPlan("delete", () -> createKeyConditionPlan("DELETE FROM %s WHERE %s"));
     try(Connection conn = dataSource.getConnection()) {
-      // construct the SQL query
-      String conditions = resourceSchemaProvider.getKeyColumns().stream()
-          .map(x -> String.format("%s = ?", x.getName()))
-          .reduce((s, s2) -> s + " AND " + s2)
-          .orElseThrow(() -> new DataAccessException("Could not generate SQL condition"));
-      
-      PreparedStatement statement = conn.prepareStatement(String.format("DELETE FROM %s WHERE %s", tableName, conditions));
-      for(int i = 1; i <= resourceSchemaProvider.getKeyColumns().size(); i++) {
-        ColumnDefinition columnDefinition = resourceSchemaProvider.getKeyColumns().get(i - 1);
-        setValue(statement, i, (String) keys[i - 1], columnDefinition, columnDefinition.getName());
-      }
+      PreparedStatement statement = conn.prepareStatement(plan.getSql());
+      bind(statement, 1, plan, keys);
       logger.debug("Executing statement {}", statement.toString());
-      boolean results = statement.execute();
-      
+      int deletedRows = statement.executeUpdate();
+      if(deletedRows != 1) {
+        throw new SQLException("Deleted " + deletedRows + ", expected 1");
+      }
     } catch(SQLException e) {
       throw new DataAccessException(e);
     }
   }
   
+  /**
+   * Returns the statement plan for the provided signature, building it if it wasn't built before.
+   *
+   * @param signature   identifies the operation and the set of columns the plan applies to
+   * @param planFactory function that builds the plan
+   * @return the cached or newly built plan
+   * @throws DataAccessException if the plan could not be built
+   */
+  protected StatementPlan getPlan(String signature, PlanFactory planFactory) throws DataAccessException {
+    StatementPlan plan = statementPlans.get(signature);
+    if(plan == null) {
+      plan = planFactory.create();
+      StatementPlan existing = statementPlans.putIfAbsent(signature, plan);
+      if(existing != null) {
+        plan = existing;
+      }
+    }
+    return plan;
+  }
+  
+  /**
+   * Creates a plan for a statement that identifies a single row by its primary key(s).
+   *
+   * @param format statement format, receiving the table name and the key condition
+   * @return plan binding the key values in the order of the key columns
+   * @throws DataAccessException if the key columns could not be retrieved
+   */
+  private StatementPlan createKeyConditionPlan(String format) throws DataAccessException {
+    List<String> keyColumns = resourceSchemaProvider.getKeyColumns().stream()
+        .map(ColumnDefinition::getName)
+        .collect(Collectors.toList());
+    if(keyColumns.isEmpty()) {
+      throw new DataAccessException("Could not generate SQL condition");
+    }
+    String conditions = Joiner.on(" AND ").join(keyColumns.stream().map(x -> x + " = ?").iterator());
+    return new StatementPlan(String.format(format, tableName, conditions), keyColumns, getColumnDefinitions());
+  }
+  
+  /**
+   * Creates a plan for the retrieval of a page, binding the keyset cursor values (if any) followed by the limit and,
+   * for offset pagination, the offset.
+   *
+   * @param selection     column list to select
+   * @param orderColumns  columns the page is ordered by
+   * @param sortDirection true for ascending, false for descending
+   * @param keyset        true if the page continues after a keyset cursor
+   * @return the new plan
+   * @throws DataAccessException if the column definitions could not be retrieved
+   */
+  private StatementPlan createSelectMultiplePlan(String selection, List<String> orderColumns, boolean sortDirection, boolean keyset) throws DataAccessException {
+    String sorting = sortDirection ? "asc" : "desc";
+    String ordering = orderColumns.stream().map(x -> x + " " + sorting).collect(Collectors.joining(", "));
+    if(!keyset) {
+      String sql = String.format("SELECT %s FROM %s ORDER BY %s LIMIT ? OFFSET ?", selection, tableName, ordering);
+      return new StatementPlan(sql, Collections.emptyList(), getColumnDefinitions());
+    }
+    
+    // bind the leading range condition followed by each of the alternatives, see createKeysetCondition
+    List<String> parameters = new ArrayList<>();
+    List<Integer> valueIndexes = new ArrayList<>();
+    if(orderColumns.size() > 1) {
+      parameters.add(orderColumns.get(0));
+      valueIndexes.add(0);
+    }
+    for(int i = 0; i < orderColumns.size(); i++) {
+      for(int j = 0; j <= i; j++) {
+        parameters.add(orderColumns.get(j));
+        valueIndexes.add(j);
+      }
+    }
+    String sql = String.format("SELECT %s FROM %s WHERE %s ORDER BY %s LIMIT ?", selection, tableName, createKeysetCondition(orderColumns, sortDirection), ordering);
+    return new StatementPlan(sql, parameters, valueIndexes.stream().mapToInt(Integer::intValue).toArray(), getColumnDefinitions());
+  }
+  
+  /**
+   * Binds the provided values to the parameters of the plan.
+   *
+   * @param statement  statement to fill
+   * @param firstIndex JDBC index of the first parameter of the plan
+   * @param plan       plan the statement was prepared for
+   * @param values     user-provided values, bound according to the value indexes of the plan
+   * @return JDBC index of the next unbound parameter
+   * @throws DataAccessException if a value could not be bound
+   */
+  private int bind(PreparedStatement statement, int firstIndex, StatementPlan plan, Object[] values) throws DataAccessException {
+    for(int i = 0; i < plan.getParameterCount(); i++) {
+      setValue(statement, firstIndex + i, (String) values[plan.getValueIndex(i)], plan.getParameterColumn(i), plan.getParameterName(i));
+    }
+    return firstIndex + plan.getParameterCount();
+  }
+  
   /**
    * Creates an SQL update query for the provided postEntry.
    *
@@ -233,14 +689,107 @@ public class GenericSQLDAO extends AbstractDAO {
   }
   
   /**
-   * Query updater that attempts to use the most specific setX method based on the provided input.
+   * Creates the column list of a SELECT query for the requested projection, skipping any column unknown to this table.
+   *
+   * @param columns requested columns, or null to select all columns
+   * @return comma separated column names or * if all columns should be retrieved
+   * @throws DataAccessException if the column definitions could not be retrieved
+   */
+  protected String createSelectList(Collection<String> columns) throws DataAccessException {
+    if(columns == null) {
+      return "*";
+    }
+    Map<String, ColumnDefinition> columnDefinitions = getColumnDefinitions();
+    List<String> selection = columns.stream()
+        .distinct()
+        .filter(columnDefinitions::containsKey)
+        .collect(Collectors.toList());
+    return selection.isEmpty() ? "*" : Joiner.on(",").join(selection);
+  }
+  
+  /**
+   * Returns the columns to order a page by: the sort column followed by any primary key column not already included,
+   * ensuring a stable order that a keyset cursor can continue from.
+   *
+   * @param sortColumn column requested by the user
+   * @return list of column names
+   * @throws DataAccessException if the key columns could not be retrieved
+   */
+  protected List<String> getOrderColumns(String sortColumn) throws DataAccessException {
+    List<String> orderColumns = new ArrayList<>();
+    orderColumns.add(sortColumn);
+    for(ColumnDefinition keyColumn : resourceSchemaProvider.getKeyColumns()) {
+      if(!keyColumn.getName().equals(sortColumn)) {
+        orderColumns.add(keyColumn.getName());
+      }
+    }
+    return orderColumns;
+  }
+  
+  /**
+   * Matches the values of the query's cursor to the provided order columns.
+   *
+   * @param query        query that may hold a keyset cursor
+   * @param orderColumns columns the page is ordered by, see {@link #getOrderColumns(String)}
+   * @return one value per order column or null if the query has no cursor that can be used for these columns
+   * @throws DataAccessException if the key columns could not be retrieved
+   */
+  private List<String> getCursorValues(PageQuery query, List<String> orderColumns) throws DataAccessException {
+    KeysetCursor cursor = query.getCursor();
+    if(cursor == null) {
+      return null;
+    }
+    List<ColumnDefinition> keyColumns = resourceSchemaProvider.getKeyColumns();
+    if(keyColumns.isEmpty() || cursor.getKeyValues().size() != keyColumns.size() || !getColumnDefinitions().containsKey(query.getSortColumn())) {
+      logger.debug("Keyset cursor does not match {}, falling back to offset pagination", tableName);
+      return null;
+    }
+    List<String> values = new ArrayList<>(orderColumns.size());
+    values.add(cursor.getSortValue());
+    for(int i = 0; i < keyColumns.size(); i++) {
+      if(!keyColumns.get(i).getName().equals(query.getSortColumn())) {
+        values.add(cursor.getKeyValues().get(i));
+      }
+    }
+    return values;
+  }
+  
+  /**
+   * Creates the WHERE condition that selects all rows following the cursor, i.e. for ascending order on columns a and b:
+   * {@code a >= ? AND (a > ? OR (a = ? AND b > ?))}. The leading range condition allows the database to use an index
+   * on the sort column.
+   *
+   * @param orderColumns  columns the page is ordered by
+   * @param sortDirection true for ascending, false for descending
+   * @return condition with unbound parameters
+   */
+  protected String createKeysetCondition(List<String> orderColumns, boolean sortDirection) {
+    String comparison = sortDirection ? " > ?" : " < ?";
+    List<String> alternatives = new ArrayList<>();
+    for(int i = 0; i < orderColumns.size(); i++) {
+      StringBuilder sb = new StringBuilder();
+      for(int j = 0; j < i; j++) {
+        sb.append(orderColumns.get(j)).append(" = ? AND ");
+      }
+      sb.append(orderColumns.get(i)).append(comparison);
+      alternatives.add(i == 0 ? sb.toString() : "(" + sb + ")");
+    }
+    if(orderColumns.size() == 1) {
+      return alternatives.get(0);
+    }
+    String range = orderColumns.get(0) + (sortDirection ? " >= ?" : " <= ?");
+    return String.format("%s AND (%s)", range, Joiner.on(" OR ").join(alternatives));
+  }
+  
+  /**
+   * Query updater that binds the provided value using the value codec of the column.
    *
    * @param statement        statement to fill
    * @param index            index of the parameter to configure
    * @param value            user-provided value
    * @param columnDefinition column definition, used to obtain type information
    * @param columnName       name of the column being set
-   * @throws DataAccessException exception that may be thrown by {@link PreparedStatement#setObject(int, Object)} and others
+   * @throws DataAccessException if the value could not be converted to the column type or could not be set
    */
   protected void setValue(PreparedStatement statement, int index, String value, ColumnDefinition columnDefinition, String columnName) throws DataAccessException {
     if(columnDefinition == null) {
@@ -252,36 +801,22 @@ public class GenericSQLDAO extends AbstractDAO {
         logger.trace("Setting null for column {}", columnDefinition.getName());
         statement.setObject(index, null);
       } else {
-        switch(columnDefinition.getType()) {
-          case integer:
-            statement.setInt(index, Integer.valueOf(value));
-            break;
-          case bool:
-            statement.setBoolean(index, Boolean.valueOf(value));
-            break;
-          case datetime:
-            // TODO: handle input-to-date conversion
-            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            try {
-              Date date = format.parse(value);
-              statement.setDate(index, new java.sql.Date(date.getTime()));
-            } catch(ParseException e) {
-              logger.error("Could not parse the provided datetime string: {}", value, e);
-            }
-            break;
-          case string:
-          case text:
-            statement.setString(index, value);
-            break;
-          default:
-            logger.error("Unsupported column definition type {} found, setting without type checking", columnDefinition.getType());
-            statement.setObject(index, value);
-            break;
-        }
+        columnDefinition.getValueCodec().bind(statement, index, value);
       }
+    } catch(IllegalArgumentException | DateTimeException e) {
+      logger.error("Could not convert {} for {}.{} (type {})", value, tableName, columnDefinition.getName(), columnDefinition.getType());
+      throw new DataAccessException("Invalid value for column " + columnDefinition.getName() + ": " + value, e);
     } catch(SQLException e) {
       logger.error("Could not set {}.{} (type {}) to {}", tableName, columnDefinition.getName(), columnDefinition.getType(), value);
       throw new DataAccessException(e);
     }
   }
+  
+  /**
+   * Function that builds a statement plan, see {@link #getPlan(String, PlanFactory)}.
+   */
+  @FunctionalInterface
+  protected interface PlanFactory {
+    StatementPlan create() throws DataAccessException;
+  }
 }
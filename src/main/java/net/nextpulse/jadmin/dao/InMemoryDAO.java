@@ -1,5 +1,6 @@
 package net.nextpulse.jadmin.dao;
 
+import net.nextpulse.jadmin.CountStrategy;
 import net.nextpulse.jadmin.FormPostEntry;
 
 import java.util.*;
@@ -8,12 +9,42 @@ import java.util.stream.Collectors;
 /**
  * Example DAO that provides access to an in-memory representation of objects, which are kept in insertion order.
  * May be used for testing purposes or as an example implementation.
+ * <p>
+ * The DAO is safe for concurrent use and keeps its data in immutable versions: every insert, update and delete derives
+ * a new version from the current one and publishes it. Versions are balanced trees sharing all unchanged nodes, so a
+ * write copies only the nodes on the path to the changed entry and costs time and garbage logarithmic in the number of
+ * entries, for the entries and for each index. Readers never take a lock and always see a consistent
+ * {@link Snapshot}, while versions that are no longer referenced by any reader are reclaimed by the garbage collector.
+ * Writes are serialized; use {@link #insertAll(Collection)} to publish many entries as a single version.
+ * <p>
+ * Columns registered using {@link #addIndex(String)} are backed by a sorted index, which allows pages sorted by that
+ * column to be read by skipping to the offset in the index. Pages sorted by any other column are retrieved by selecting
+ * the top offset + count entries. Entries returned by this DAO are shared between versions and should not be modified by
+ * the caller.
  *
  * @author yholkamp
  */
 public class InMemoryDAO extends AbstractDAO {
   
-  private LinkedHashMap<DatabaseEntryKey, DatabaseEntry> objects = new LinkedHashMap<>();
+  private final Object writeLock = new Object();
+  private volatile Snapshot current = new Snapshot();
+  
+  /**
+   * Creates a new DAO without any indexed columns.
+   */
+  public InMemoryDAO() {
+  }
+  
+  /**
+   * Creates a new DAO keeping a sorted index for each of the provided columns.
+   *
+   * @param indexedColumns columns to index
+   */
+  public InMemoryDAO(String... indexedColumns) {
+    for(String column : indexedColumns) {
+      addIndex(column);
+    }
+  }
   
   /**
    * Generic compare function for two objects of unknown types. Returns a negative integer, zero, or a positive integer
@@ -38,6 +69,46 @@ public class InMemoryDAO extends AbstractDAO {
     }
   }
   
+  /**
+   * Returns the current version of the data. The snapshot is not affected by later changes, allowing multiple reads to
+   * be answered from the same version.
+   *
+   * @return the current snapshot
+   */
+  public Snapshot snapshot() {
+    return current;
+  }
+  
+  /**
+   * Adds a sorted index on the provided column, indexing the entries that are already stored. Does nothing if the
+   * column is already indexed. Indexing the stored entries costs time proportional to n log n for n entries, and every
+   * index adds a logarithmic cost to each following write.
+   *
+   * @param column column to index
+   */
+  public void addIndex(String column) {
+    synchronized(writeLock) {
+      if(current.indexes.containsKey(column)) {
+        return;
+      }
+      Snapshot next = current.copy();
+      PersistentTreeMap<IndexKey, DatabaseEntry> index = PersistentTreeMap.empty();
+      for(Stored stored : next.inOrder.values(0, Long.MAX_VALUE, true)) {
+        index = index.put(new IndexKey(stored.entry.getProperties().get(column), stored.key), stored.entry);
+      }
+      next.indexes.put(column, index);
+      current = next;
+    }
+  }
+  
+  /**
+   * @param column column to check
+   * @return true if the provided column is backed by a sorted index
+   */
+  public boolean isIndexed(String column) {
+    return current.indexes.containsKey(column);
+  }
+  
   /**
    * Retrieves a single DatabaseEntry using the primary key(s) of the resourceSchemaProvider.
    *
@@ -47,28 +118,62 @@ public class InMemoryDAO extends AbstractDAO {
    */
   @Override
   public Optional<DatabaseEntry> selectOne(Object... keys) throws DataAccessException {
-    DatabaseEntryKey key = new DatabaseEntryKey(keys);
-    return Optional.ofNullable(objects.get(key));
+    return current.selectOne(keys);
   }
   
   /**
-   * Retrieves multiple DatabaseEntry objects from the data store.
+   * Retrieves multiple DatabaseEntry objects from the data store. Entries with equal values for the sort column are
+   * ordered by their primary key(s), entries are returned in insertion order if no sort column is provided.
    *
    * @param offset        number of objects to skip
    * @param count         number of objects to retrieve
-   * @param sortColumn    column to sort by
+   * @param sortColumn    column to sort by, may be null
    * @param sortDirection direction to sort by, true for ascending, false for descending
    * @return list of results
    * @throws DataAccessException if an error occurred while retrieving the objects
    */
   @Override
   public List<DatabaseEntry> selectMultiple(long offset, long count, String sortColumn, boolean sortDirection) throws DataAccessException {
-    if(offset >= objects.size()) {
-      return Collections.emptyList();
-    } else {
-      int direction = sortDirection ? 1 : -1;
-      return objects.values().stream().sorted((o1, o2) -> genericCompare(o1, o2) * direction).skip(offset).limit(count).collect(Collectors.toList());
+    return current.selectMultiple(offset, count, sortColumn, sortDirection);
+  }
+  
+  /**
+   * Retrieves the page and the number of entries from the same snapshot, so both agree even if entries are changed
+   * concurrently.
+   *
+   * @param query     description of the page to retrieve
+   * @param strategy  strategy to use for counting the entries
+   * @param threshold ignored, the exact number of entries is always available
+   * @return the page of entries and the number of entries
+   * @throws DataAccessException never
+   */
+  @Override
+  public Page selectPage(PageQuery query, CountStrategy strategy, int threshold) throws DataAccessException {
+    Snapshot snapshot = current;
+    List<DatabaseEntry> rows = snapshot.selectMultiple(query.getOffset(), query.getCount(), query.getSortColumn(), query.getSortDirection());
+    return new Page(rows, snapshot.count(strategy));
+  }
+  
+  /**
+   * Streaming counterpart of {@link #selectPage(PageQuery, CountStrategy, int)}, reading the page and the number of
+   * entries from the same snapshot.
+   *
+   * @param query     description of the page to retrieve
+   * @param strategy  strategy to use for counting the entries
+   * @param threshold ignored, the exact number of entries is always available
+   * @param callback  callback receiving the entries in order
+   * @param <E>       type of exception thrown by the callback
+   * @return the number of entries
+   * @throws DataAccessException never
+   * @throws E                   if the callback failed
+   */
+  @Override
+  public <E extends Exception> RowCount streamPage(PageQuery query, CountStrategy strategy, int threshold, EntryCallback<E> callback) throws DataAccessException, E {
+    Snapshot snapshot = current;
+    for(DatabaseEntry entry : snapshot.selectMultiple(query.getOffset(), query.getCount(), query.getSortColumn(), query.getSortDirection())) {
+      callback.accept(entry);
     }
+    return snapshot.count(strategy);
   }
   
   /**
@@ -79,11 +184,18 @@ public class InMemoryDAO extends AbstractDAO {
    */
   @Override
   public void insert(FormPostEntry postData) throws DataAccessException {
-    DatabaseEntry entry = new DatabaseEntry();
-    postData.getKeyValues().forEach((column, value) -> entry.getProperties().put(column, value));
-    postData.getValues().forEach((column, value) -> entry.getProperties().put(column, value));
-    DatabaseEntryKey key = new DatabaseEntryKey(postData.getKeyValues().values());
-    objects.put(key, entry);
+    insertAll(Collections.singletonList(postData));
+  }
+  
+  /**
+   * Inserts multiple resourceSchemaProvider instances in to the database as a single new version, so readers see either
+   * none or all of the entries.
+   *
+   * @param postData unfiltered user submitted data, must be used with caution
+   * @throws DataAccessException if an error occurred while inserting the objects
+   */
+  public void insertAll(Collection<FormPostEntry> postData) throws DataAccessException {
+    apply(next -> postData.forEach(next::insert));
   }
   
   /**
@@ -94,15 +206,7 @@ public class InMemoryDAO extends AbstractDAO {
    */
   @Override
   public void update(FormPostEntry postData) throws DataAccessException {
-    DatabaseEntryKey key = new DatabaseEntryKey(postData.getKeyValues().values());
-    DatabaseEntry entry = objects.get(key);
-    if(entry != null) {
-      entry.getProperties().clear();
-      postData.getKeyValues().forEach((column, value) -> entry.getProperties().put(column, value));
-      postData.getValues().forEach((column, value) -> entry.getProperties().put(column, value));
-    } else {
-      throw new DataAccessException("Could not access object identified by " + key);
-    }
+    apply(next -> next.update(postData));
   }
   
   /**
@@ -113,7 +217,7 @@ public class InMemoryDAO extends AbstractDAO {
    */
   @Override
   public int count() throws DataAccessException {
-    return objects.size();
+    return current.count();
   }
   
   /**
@@ -124,30 +228,253 @@ public class InMemoryDAO extends AbstractDAO {
    */
   @Override
   public void delete(Object... keys) throws DataAccessException {
-    DatabaseEntryKey key = new DatabaseEntryKey(keys);
-    DatabaseEntry entry = objects.get(key);
-    if(entry != null) {
-      objects.remove(key);
-    } else {
-      throw new DataAccessException("Could not access object identified by " + key);
+    apply(next -> next.delete(keys));
+  }
+  
+  /**
+   * Applies one or more changes to a new version derived from the current version and publishes the result. Nothing is
+   * published if the change fails.
+   *
+   * @param change change to apply
+   * @throws DataAccessException if the change failed
+   */
+  void apply(Change change) throws DataAccessException {
+    synchronized(writeLock) {
+      Snapshot next = current.copy();
+      change.applyTo(next);
+      current = next;
+    }
+  }
+  
+  /**
+   * Change applied to a new version of the data before it is published.
+   */
+  @FunctionalInterface
+  interface Change {
+    void applyTo(Snapshot next) throws DataAccessException;
+  }
+  
+  /**
+   * Immutable version of the data of an InMemoryDAO. A snapshot is only modified while it is being built by a writer,
+   * before it is published, by replacing its trees with derived trees.
+   */
+  public static class Snapshot {
+    /**
+     * Stored entries by key.
+     */
+    private PersistentTreeMap<DatabaseEntryKey, Stored> objects;
+    /**
+     * Stored entries by insertion sequence number, keeping the entries in insertion order.
+     */
+    private PersistentTreeMap<Long, Stored> inOrder;
+    private final Map<String, PersistentTreeMap<IndexKey, DatabaseEntry>> indexes;
+    private long nextSequence;
+    
+    private Snapshot() {
+      this(PersistentTreeMap.empty(), PersistentTreeMap.empty(), new HashMap<>(), 0);
+    }
+    
+    private Snapshot(PersistentTreeMap<DatabaseEntryKey, Stored> objects, PersistentTreeMap<Long, Stored> inOrder, Map<String, PersistentTreeMap<IndexKey, DatabaseEntry>> indexes, long nextSequence) {
+      this.objects = objects;
+      this.inOrder = inOrder;
+      this.indexes = indexes;
+      this.nextSequence = nextSequence;
+    }
+    
+    /**
+     * Retrieves a single DatabaseEntry using the primary key(s) of the resourceSchemaProvider.
+     *
+     * @param keys primary key(s)
+     * @return either an empty optional object or the object represented by the provided keys.
+     */
+    public Optional<DatabaseEntry> selectOne(Object... keys) {
+      return Optional.ofNullable(objects.get(new DatabaseEntryKey(keys))).map(stored -> stored.entry);
+    }
+    
+    /**
+     * Retrieves multiple DatabaseEntry objects, see {@link InMemoryDAO#selectMultiple(long, long, String, boolean)}.
+     *
+     * @param offset        number of objects to skip
+     * @param count         number of objects to retrieve
+     * @param sortColumn    column to sort by, may be null
+     * @param sortDirection direction to sort by, true for ascending, false for descending
+     * @return list of results
+     */
+    public List<DatabaseEntry> selectMultiple(long offset, long count, String sortColumn, boolean sortDirection) {
+      if(offset >= objects.size() || count <= 0) {
+        return Collections.emptyList();
+      } else if(sortColumn == null) {
+        return inOrder.values(offset, count, true).stream().map(stored -> stored.entry).collect(Collectors.toList());
+      }
+      PersistentTreeMap<IndexKey, DatabaseEntry> index = indexes.get(sortColumn);
+      if(index != null) {
+        return index.values(offset, count, sortDirection);
+      }
+      return selectTop(offset, count, sortColumn, sortDirection);
+    }
+    
+    /**
+     * @return the number of entries in this snapshot
+     */
+    public int count() {
+      return objects.size();
+    }
+    
+    private RowCount count(CountStrategy strategy) {
+      return strategy == CountStrategy.NONE ? RowCount.unknown() : RowCount.exact(count());
+    }
+    
+    /**
+     * Selects a page sorted by a column without an index, only keeping the first offset + count entries in a bounded
+     * heap rather than sorting all entries.
+     */
+    private List<DatabaseEntry> selectTop(long offset, long count, String sortColumn, boolean sortDirection) {
+      int limit = (int) Math.min(objects.size(), offset + Math.min(count, objects.size()));
+      Comparator<Map.Entry<IndexKey, DatabaseEntry>> order = Map.Entry.comparingByKey();
+      if(!sortDirection) {
+        order = order.reversed();
+      }
+      // the heap keeps the last entry of the page on top, so it can be replaced by any entry sorting before it
+      PriorityQueue<Map.Entry<IndexKey, DatabaseEntry>> heap = new PriorityQueue<>(limit, order.reversed());
+      Comparator<Map.Entry<IndexKey, DatabaseEntry>> heapOrder = order;
+      objects.forEach((key, stored) -> {
+        IndexKey indexKey = new IndexKey(stored.entry.getProperties().get(sortColumn), key);
+        Map.Entry<IndexKey, DatabaseEntry> candidate = new AbstractMap.SimpleImmutableEntry<>(indexKey, stored.entry);
+        if(heap.size() < limit) {
+          heap.add(candidate);
+        } else if(heapOrder.compare(candidate, heap.peek()) < 0) {
+          heap.poll();
+          heap.add(candidate);
+        }
+      });
+      List<Map.Entry<IndexKey, DatabaseEntry>> sorted = new ArrayList<>(heap);
+      sorted.sort(order);
+      return sorted.stream().skip(offset).map(Map.Entry::getValue).collect(Collectors.toList());
+    }
+    
+    /**
+     * Returns the entries of this snapshot in insertion order, split in key values and other values as submitted.
+     */
+    List<FormPostEntry> toPostEntries() {
+      List<FormPostEntry> entries = new ArrayList<>(objects.size());
+      inOrder.forEach((sequence, stored) -> {
+        FormPostEntry postEntry = new FormPostEntry();
+        stored.entry.getProperties().forEach((column, value) -> {
+          String stringValue = value == null ? null : value.toString();
+          if(stored.key.columns.contains(column)) {
+            postEntry.addKeyValue(column, stringValue);
+          } else {
+            postEntry.addValue(column, stringValue);
+          }
+        });
+        entries.add(postEntry);
+      });
+      return entries;
+    }
+    
+    void insert(FormPostEntry postData) {
+      store(new DatabaseEntryKey(postData.getKeyValues()), toDatabaseEntry(postData));
+    }
+    
+    void update(FormPostEntry postData) throws DataAccessException {
+      DatabaseEntryKey key = new DatabaseEntryKey(postData.getKeyValues());
+      if(objects.get(key) == null) {
+        throw new DataAccessException("Could not access object identified by " + key);
+      }
+      store(key, toDatabaseEntry(postData));
+    }
+    
+    void delete(Object... keys) throws DataAccessException {
+      DatabaseEntryKey key = new DatabaseEntryKey(keys);
+      Stored stored = objects.get(key);
+      if(stored == null) {
+        throw new DataAccessException("Could not access object identified by " + key);
+      }
+      objects = objects.remove(key);
+      inOrder = inOrder.remove(stored.sequence);
+      unindex(stored);
+    }
+    
+    private static DatabaseEntry toDatabaseEntry(FormPostEntry postData) {
+      DatabaseEntry entry = new DatabaseEntry();
+      postData.getKeyValues().forEach((column, value) -> entry.getProperties().put(column, value));
+      postData.getValues().forEach((column, value) -> entry.getProperties().put(column, value));
+      return entry;
+    }
+    
+    /**
+     * @return a snapshot sharing the trees of this snapshot, which are replaced rather than modified by changes
+     */
+    private Snapshot copy() {
+      return new Snapshot(objects, inOrder, new HashMap<>(indexes), nextSequence);
+    }
+    
+    /**
+     * Stores the entry under the provided key, replacing any previous entry in both the objects and the indexes. A
+     * replaced entry keeps its position in the insertion order.
+     */
+    private void store(DatabaseEntryKey key, DatabaseEntry entry) {
+      Stored previous = objects.get(key);
+      if(previous != null) {
+        unindex(previous);
+      }
+      Stored stored = new Stored(previous != null ? previous.sequence : nextSequence++, key, entry);
+      objects = objects.put(key, stored);
+      inOrder = inOrder.put(stored.sequence, stored);
+      indexes.replaceAll((column, index) -> index.put(new IndexKey(entry.getProperties().get(column), key), entry));
+    }
+    
+    private void unindex(Stored stored) {
+      indexes.replaceAll((column, index) -> index.remove(new IndexKey(stored.entry.getProperties().get(column), stored.key)));
+    }
+  }
+  
+  /**
+   * Entry stored in a snapshot together with its key and its position in the insertion order.
+   */
+  private static final class Stored {
+    private final long sequence;
+    private final DatabaseEntryKey key;
+    private final DatabaseEntry entry;
+    
+    private Stored(long sequence, DatabaseEntryKey key, DatabaseEntry entry) {
+      this.sequence = sequence;
+      this.key = key;
+      this.entry = entry;
     }
   }
   
   /**
    * Internal representation of the object key.
    */
-  private class DatabaseEntryKey {
+  private static class DatabaseEntryKey implements Comparable<DatabaseEntryKey> {
     List<Object> keyValues;
+    /**
+     * Names of the key columns, only known for keys of stored entries and not part of the identity of the key.
+     */
+    List<String> columns = Collections.emptyList();
     
     
-    public DatabaseEntryKey(Collection<String> keys) {
-      keyValues = new ArrayList<>(keys);
+    public DatabaseEntryKey(Map<String, String> keys) {
+      keyValues = new ArrayList<>(keys.values());
+      columns = new ArrayList<>(keys.keySet());
     }
     
     public DatabaseEntryKey(Object[] keys) {
       keyValues = Arrays.asList(keys);
     }
     
+    @Override
+    public int compareTo(DatabaseEntryKey o) {
+      for(int i = 0; i < Math.min(keyValues.size(), o.keyValues.size()); i++) {
+        int result = genericCompare(keyValues.get(i), o.keyValues.get(i));
+        if(result != 0) {
+          return result;
+        }
+      }
+      return Integer.compare(keyValues.size(), o.keyValues.size());
+    }
+    
     @Override
     public boolean equals(Object o) {
       if(this == o) return true;
@@ -160,6 +487,30 @@ public class InMemoryDAO extends AbstractDAO {
     public int hashCode() {
       return Objects.hash(keyValues);
     }
+    
+    @Override
+    public String toString() {
+      return keyValues.toString();
+    }
+  }
+  
+  /**
+   * Key of a sorted index, ordering entries by the value of the indexed column followed by their primary key(s).
+   */
+  private static class IndexKey implements Comparable<IndexKey> {
+    private final Object value;
+    private final DatabaseEntryKey key;
+    
+    IndexKey(Object value, DatabaseEntryKey key) {
+      this.value = value;
+      this.key = key;
+    }
+    
+    @Override
+    public int compareTo(IndexKey o) {
+      int result = genericCompare(value, o.value);
+      return result != 0 ? result : key.compareTo(o.key);
+    }
   }
   
 }
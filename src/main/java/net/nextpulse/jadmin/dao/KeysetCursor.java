@@ -0,0 +1,113 @@
+package net.nextpulse.jadmin.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Position in a sorted list of entries used for keyset pagination, consisting of the sort column value and the primary
+ * key value(s) of the last entry of the previous page.
+ *
+ * @author yholkamp
+ */
+public class KeysetCursor {
+  private static final Logger logger = LogManager.getLogger();
+  private static final String SEPARATOR = "/";
+  private static final String ENCODING = "UTF-8";
+  
+  private final String sortValue;
+  private final List<String> keyValues;
+  
+  /**
+   * @param sortValue value of the sort column of the last entry of the previous page
+   * @param keyValues primary key value(s) of the last entry of the previous page, in the order of the key columns
+   */
+  public KeysetCursor(String sortValue, List<String> keyValues) {
+    this.sortValue = sortValue;
+    this.keyValues = Collections.unmodifiableList(new ArrayList<>(keyValues));
+  }
+  
+  /**
+   * Creates a cursor pointing directly after the provided entry.
+   *
+   * @param entry             last entry of the current page
+   * @param sortColumn        name of the column the page was sorted by
+   * @param primaryKeyColumns column names of the primary keys
+   * @return a cursor or an empty optional if the entry lacks a sort or key value, which can't be used as a cursor
+   */
+  public static Optional<KeysetCursor> after(DatabaseEntry entry, String sortColumn, List<String> primaryKeyColumns) {
+    Map<String, Object> properties = entry.getProperties();
+    Object sortValue = properties.get(sortColumn);
+    if(sortValue == null || primaryKeyColumns.isEmpty()) {
+      return Optional.empty();
+    }
+    List<String> keyValues = new ArrayList<>(primaryKeyColumns.size());
+    for(String column : primaryKeyColumns) {
+      Object keyValue = properties.get(column);
+      if(keyValue == null) {
+        return Optional.empty();
+      }
+      keyValues.add(String.valueOf(keyValue));
+    }
+    return Optional.of(new KeysetCursor(String.valueOf(sortValue), keyValues));
+  }
+  
+  /**
+   * Parses a cursor previously created by {@link #encode()}.
+   *
+   * @param encoded encoded cursor as sent by the client
+   * @return the decoded cursor or an empty optional if the input was blank or malformed
+   */
+  public static Optional<KeysetCursor> decode(String encoded) {
+    if(encoded == null || encoded.isEmpty()) {
+      return Optional.empty();
+    }
+    String[] parts = encoded.split(SEPARATOR, -1);
+    if(parts.length < 2) {
+      logger.debug("Ignoring malformed keyset cursor {}", encoded);
+      return Optional.empty();
+    }
+    try {
+      List<String> keyValues = new ArrayList<>(parts.length - 1);
+      for(int i = 1; i < parts.length; i++) {
+        keyValues.add(URLDecoder.decode(parts[i], ENCODING));
+      }
+      return Optional.of(new KeysetCursor(URLDecoder.decode(parts[0], ENCODING), keyValues));
+    } catch(UnsupportedEncodingException | IllegalArgumentException e) {
+      logger.debug("Ignoring malformed keyset cursor {}", encoded, e);
+      return Optional.empty();
+    }
+  }
+  
+  /**
+   * @return URL encoded representation of this cursor, the sort value followed by the key value(s), separated by a forward slash
+   */
+  public String encode() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      sb.append(URLEncoder.encode(sortValue, ENCODING));
+      for(String keyValue : keyValues) {
+        sb.append(SEPARATOR).append(URLEncoder.encode(keyValue, ENCODING));
+      }
+    } catch(UnsupportedEncodingException e) {
+      logger.error("Unsupported encoding exception", e);
+    }
+    return sb.toString();
+  }
+  
+  public String getSortValue() {
+    return sortValue;
+  }
+  
+  public List<String> getKeyValues() {
+    return keyValues;
+  }
+}
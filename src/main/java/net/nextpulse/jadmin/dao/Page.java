@@ -0,0 +1,32 @@
+package net.nextpulse.jadmin.dao;
+
+import java.util.List;
+
+/**
+ * Page of entries retrieved from a DAO together with the total number of entries of the resource.
+ *
+ * @author yholkamp
+ */
+public class Page {
+  private final List<DatabaseEntry> rows;
+  private final RowCount rowCount;
+  
+  public Page(List<DatabaseEntry> rows, RowCount rowCount) {
+    this.rows = rows;
+    this.rowCount = rowCount;
+  }
+  
+  /**
+   * @return entries on this page
+   */
+  public List<DatabaseEntry> getRows() {
+    return rows;
+  }
+  
+  /**
+   * @return total number of entries of the resource
+   */
+  public RowCount getRowCount() {
+    return rowCount;
+  }
+}
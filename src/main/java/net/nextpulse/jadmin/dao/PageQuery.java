@@ -0,0 +1,104 @@
+package net.nextpulse.jadmin.dao;
+
+import java.util.Collection;
+
+/**
+ * Description of a single page of entries to retrieve from a DAO, as requested by the list page.
+ *
+ * @author yholkamp
+ */
+public class PageQuery {
+  
+  /**
+   * Number of entries to skip, ignored when a keyset cursor is present.
+   */
+  private long offset;
+  /**
+   * Number of entries to retrieve.
+   */
+  private long count;
+  /**
+   * Name of the column to sort by.
+   */
+  private String sortColumn;
+  /**
+   * True for ascending, false for descending.
+   */
+  private boolean sortDirection = true;
+  /**
+   * Optional position to continue from, identifying the last entry of the previous page.
+   */
+  private KeysetCursor cursor;
+  /**
+   * Optional projection, the names of the columns to retrieve. Null to retrieve all columns.
+   */
+  private Collection<String> columns;
+  
+  public PageQuery(long offset, long count, String sortColumn, boolean sortDirection) {
+    this.offset = offset;
+    this.count = count;
+    this.sortColumn = sortColumn;
+    this.sortDirection = sortDirection;
+  }
+  
+  public long getOffset() {
+    return offset;
+  }
+  
+  public PageQuery setOffset(long offset) {
+    this.offset = offset;
+    return this;
+  }
+  
+  public long getCount() {
+    return count;
+  }
+  
+  public PageQuery setCount(long count) {
+    this.count = count;
+    return this;
+  }
+  
+  public String getSortColumn() {
+    return sortColumn;
+  }
+  
+  public PageQuery setSortColumn(String sortColumn) {
+    this.sortColumn = sortColumn;
+    return this;
+  }
+  
+  public boolean getSortDirection() {
+    return sortDirection;
+  }
+  
+  public PageQuery setSortDirection(boolean sortDirection) {
+    this.sortDirection = sortDirection;
+    return this;
+  }
+  
+  public KeysetCursor getCursor() {
+    return cursor;
+  }
+  
+  public PageQuery setCursor(KeysetCursor cursor) {
+    this.cursor = cursor;
+    return this;
+  }
+  
+  public Collection<String> getColumns() {
+    return columns;
+  }
+  
+  /**
+   * Limits the retrieved columns to the provided set, allowing the DAO to skip large columns that are not shown. DAO
+   * implementations may ignore the projection and return all columns.
+   *
+   * @param columns names of the columns to retrieve, should include the primary key and sort columns
+   * @return this instance
+   */
+  public PageQuery setColumns(Collection<String> columns) {
+    this.columns = columns;
+    return this;
+  }
+}
@@ -0,0 +1,376 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.FormPostEntry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * DAO decorator persisting the contents of an {@link InMemoryDAO} to a directory, so the data survives a restart
+ * without being loaded again from its source.
+ * <p>
+ * Every insert, update and delete is appended to a write-ahead log and only applied to the in-memory data once the log
+ * was forced to disk, with concurrent writes sharing a single force. Changes are applied in the order they were logged.
+ * When the log cannot be written the change is not applied and all following writes are rejected before they are
+ * logged, as the in-memory data could no longer be restored. {@link #checkpoint()} writes the current data to a snapshot file and starts a new log, after
+ * which older logs are removed.
+ * <p>
+ * On construction the snapshot is loaded through a memory map and the logs are replayed as a single new version of the
+ * in-memory data, up to the first incomplete or corrupt record. Changes that failed when they were made, such as
+ * updates of missing entries, fail again on replay and are skipped.
+ *
+ * @author yholkamp
+ */
+public class PersistentInMemoryDAO extends ForwardingDAO implements Closeable {
+  private static final Logger logger = LogManager.getLogger();
+  
+  private static final String SNAPSHOT_FILE = "snapshot.bin";
+  private static final Pattern LOG_FILE = Pattern.compile("wal-(\\d+)\\.log");
+  private static final int SNAPSHOT_MAGIC = 0x4a41444d;
+  
+  private final InMemoryDAO memory;
+  private final Path directory;
+  /**
+   * Guards the current log and orders the logged changes in the order they are applied.
+   */
+  private final Object writeLock = new Object();
+  private final Object checkpointLock = new Object();
+  /**
+   * Guards the application of logged changes, which are applied in the order of their tickets.
+   */
+  private final Object applyLock = new Object();
+  private WriteAheadLog log;
+  private long generation;
+  /**
+   * Number of changes logged, guarded by the write lock.
+   */
+  private long issued;
+  /**
+   * Ticket of the last change applied or skipped, guarded by the apply lock.
+   */
+  private long applied;
+  /**
+   * Error that occurred while writing the log, after which no further changes are accepted. Set while holding the apply
+   * lock.
+   */
+  private volatile IOException failure;
+  private ScheduledExecutorService checkpointScheduler;
+  
+  /**
+   * Restores the data stored in the directory in to the provided DAO and starts logging the changes made through this
+   * DAO.
+   *
+   * @param delegate  empty DAO to restore the data in to
+   * @param directory directory holding the snapshot and logs, created if it does not exist
+   * @throws IOException if the stored data could not be read or the log could not be opened
+   */
+  public PersistentInMemoryDAO(InMemoryDAO delegate, Path directory) throws IOException {
+    super(delegate);
+    this.memory = delegate;
+    this.directory = directory;
+    Files.createDirectories(directory);
+    boolean complete = recover();
+    log = openLog(logFile(generation));
+    if(!complete) {
+      // replace the logs by a snapshot, as changes logged after the damaged record would never be replayed
+      checkpoint();
+    }
+  }
+  
+  @Override
+  public void insert(FormPostEntry postData) throws DataAccessException {
+    write(WriteAheadLog.encode(WriteAheadLog.INSERT, postData), () -> memory.insert(postData));
+  }
+  
+  @Override
+  public void update(FormPostEntry postData) throws DataAccessException {
+    write(WriteAheadLog.encode(WriteAheadLog.UPDATE, postData), () -> memory.update(postData));
+  }
+  
+  @Override
+  public void delete(Object... keys) throws DataAccessException {
+    write(WriteAheadLog.encodeDelete(keys), () -> memory.delete(keys));
+  }
+  
+  /**
+   * Logs the record, waits for it to become durable and then applies the change, after all changes logged before it.
+   */
+  private void write(byte[] record, Write change) throws DataAccessException {
+    WriteAheadLog target;
+    long sequence;
+    long ticket;
+    synchronized(writeLock) {
+      if(failure != null) {
+        // rejected changes must not be logged, or they would reappear on recovery
+        throw new DataAccessException("Could not write to the log in " + directory, failure);
+      }
+      target = log;
+      sequence = target.append(record);
+      ticket = ++issued;
+    }
+    IOException syncFailure = null;
+    try {
+      target.sync(sequence);
+    } catch(IOException e) {
+      syncFailure = e;
+    }
+    
+    boolean interrupted = false;
+    synchronized(applyLock) {
+      try {
+        while(applied != ticket - 1 && failure == null) {
+          try {
+            applyLock.wait();
+          } catch(InterruptedException e) {
+            // the change is already logged, it has to be applied regardless
+            interrupted = true;
+          }
+        }
+        if(failure == null && syncFailure != null) {
+          failure = syncFailure;
+        }
+        if(failure != null) {
+          throw new DataAccessException("Could not write to the log in " + directory, failure);
+        }
+        change.apply();
+      } finally {
+        applied = Math.max(applied, ticket);
+        applyLock.notifyAll();
+        if(interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+  
+  /**
+   * Waits until all logged changes were applied, must be invoked while holding the write lock.
+   */
+  private void awaitApplied() throws IOException {
+    synchronized(applyLock) {
+      while(applied < issued && failure == null) {
+        try {
+          applyLock.wait();
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for logged changes to be applied");
+        }
+      }
+      if(failure != null) {
+        throw new IOException("Could not write to the log in " + directory, failure);
+      }
+    }
+  }
+  
+  /**
+   * Writes the current data to the snapshot file and removes the logs of the changes included in it. Writes continue
+   * while the snapshot is written.
+   *
+   * @throws IOException if the snapshot could not be written
+   */
+  public void checkpoint() throws IOException {
+    synchronized(checkpointLock) {
+      InMemoryDAO.Snapshot snapshot;
+      WriteAheadLog previous;
+      long firstGeneration;
+      synchronized(writeLock) {
+        // the snapshot has to include every change logged to the logs it replaces
+        awaitApplied();
+        snapshot = memory.snapshot();
+        previous = log;
+        log = openLog(logFile(generation + 1));
+        firstGeneration = ++generation;
+      }
+      previous.close();
+      
+      Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+      try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeLong(firstGeneration);
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for(FormPostEntry entry : snapshot.toPostEntries()) {
+          buffer = WriteAheadLog.frame(buffer, WriteAheadLog.encode(WriteAheadLog.INSERT, entry));
+          out.write(buffer.array(), 0, buffer.position());
+          buffer.clear();
+        }
+        out.flush();
+        channel.force(true);
+      }
+      Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      for(Long logGeneration : findLogs().headMap(firstGeneration).keySet()) {
+        Files.deleteIfExists(logFile(logGeneration));
+      }
+      logger.debug("Wrote snapshot of {} entries to {}", snapshot.count(), directory);
+    }
+  }
+  
+  /**
+   * Periodically calls {@link #checkpoint()} from a background thread until this DAO is closed.
+   *
+   * @param interval time between checkpoints
+   */
+  public synchronized void scheduleCheckpoints(Duration interval) {
+    if(checkpointScheduler != null) {
+      checkpointScheduler.shutdown();
+    }
+    checkpointScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jadmin-checkpoint");
+      thread.setDaemon(true);
+      return thread;
+    });
+    checkpointScheduler.scheduleWithFixedDelay(() -> {
+      try {
+        checkpoint();
+      } catch(IOException | RuntimeException e) {
+        logger.error("Could not write snapshot to {}", directory, e);
+      }
+    }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+  
+  /**
+   * Stops the scheduled checkpoints and closes the log, the data remains available in memory.
+   *
+   * @throws IOException if the log could not be closed
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized(this) {
+      if(checkpointScheduler != null) {
+        checkpointScheduler.shutdown();
+      }
+    }
+    synchronized(checkpointLock) {
+      synchronized(writeLock) {
+        log.close();
+      }
+    }
+  }
+  
+  /**
+   * Loads the snapshot and replays the logs written after it, up to the first incomplete or corrupt record.
+   *
+   * @return false if the logs contained an incomplete or corrupt record
+   */
+  private boolean recover() throws IOException {
+    long firstGeneration = 0;
+    List<WriteAheadLog.Record> records = new ArrayList<>();
+    Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+    if(Files.exists(snapshotFile)) {
+      ByteBuffer buffer = map(snapshotFile);
+      if(buffer.remaining() < 12 || buffer.getInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a snapshot file: " + snapshotFile);
+      }
+      firstGeneration = buffer.getLong();
+      if(!WriteAheadLog.read(buffer, records::add)) {
+        throw new IOException("Snapshot file is corrupt: " + snapshotFile);
+      }
+      logger.debug("Loaded {} entries from {}", records.size(), snapshotFile);
+    }
+    
+    TreeMap<Long, Path> logs = findLogs();
+    for(Long logGeneration : logs.headMap(firstGeneration).keySet()) {
+      Files.deleteIfExists(logFile(logGeneration));
+    }
+    int snapshotEntries = records.size();
+    boolean complete = true;
+    for(Path file : logs.tailMap(firstGeneration).values()) {
+      if(!WriteAheadLog.read(map(file), records::add)) {
+        // later records were never acknowledged, as changes are only applied once all earlier records are durable
+        logger.warn("Ignoring incomplete record in {} and all records logged after it", file);
+        complete = false;
+        break;
+      }
+    }
+    try {
+      memory.apply(next -> replay(next, records));
+    } catch(DataAccessException e) {
+      throw new IOException("Could not restore the data from " + directory, e);
+    }
+    logger.debug("Replayed {} logged changes from {}", records.size() - snapshotEntries, directory);
+    generation = logs.isEmpty() ? firstGeneration : Math.max(firstGeneration, logs.lastKey() + 1);
+    return complete;
+  }
+  
+  private static void replay(InMemoryDAO.Snapshot next, List<WriteAheadLog.Record> records) {
+    for(WriteAheadLog.Record record : records) {
+      try {
+        switch(record.type) {
+          case WriteAheadLog.INSERT:
+            next.insert(record.postData);
+            break;
+          case WriteAheadLog.UPDATE:
+            next.update(record.postData);
+            break;
+          case WriteAheadLog.DELETE:
+            next.delete((Object[]) record.keys);
+            break;
+          default:
+            throw new DataAccessException("Unknown record type " + record.type);
+        }
+      } catch(DataAccessException e) {
+        logger.debug("Skipping logged change that could not be applied", e);
+      }
+    }
+  }
+  
+  private static ByteBuffer map(Path file) throws IOException {
+    try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if(channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("File too large to map: " + file);
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+  
+  private TreeMap<Long, Path> findLogs() throws IOException {
+    TreeMap<Long, Path> logs = new TreeMap<>();
+    try(Stream<Path> files = Files.list(directory)) {
+      files.forEach(file -> {
+        Matcher matcher = LOG_FILE.matcher(file.getFileName().toString());
+        if(matcher.matches()) {
+          logs.put(Long.parseLong(matcher.group(1)), file);
+        }
+      });
+    }
+    return logs;
+  }
+  
+  /**
+   * Opens the log of the provided file, overridden by tests to simulate failing writes.
+   */
+  WriteAheadLog openLog(Path file) throws IOException {
+    return WriteAheadLog.open(file);
+  }
+  
+  private Path logFile(long logGeneration) {
+    return directory.resolve("wal-" + logGeneration + ".log");
+  }
+  
+  @FunctionalInterface
+  private interface Write {
+    void apply() throws DataAccessException;
+  }
+}
@@ -0,0 +1,231 @@
+package net.nextpulse.jadmin.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable sorted map backed by an AVL tree. Changes return a new map that shares all unchanged nodes with the map
+ * it was derived from, so a change only copies the path from the root to the changed node and costs time and memory
+ * logarithmic in the size of the map. Each node records the size of its subtree, allowing a range of values to be
+ * read by position without walking the values before it.
+ *
+ * @param <K> type of the keys, ordered by their natural ordering
+ * @param <V> type of the values
+ * @author yholkamp
+ */
+final class PersistentTreeMap<K extends Comparable<? super K>, V> {
+  
+  private static final PersistentTreeMap<?, ?> EMPTY = new PersistentTreeMap<>(null);
+  
+  private final Node<K, V> root;
+  
+  private PersistentTreeMap(Node<K, V> root) {
+    this.root = root;
+  }
+  
+  /**
+   * @return the empty map
+   */
+  @SuppressWarnings("unchecked")
+  static <K extends Comparable<? super K>, V> PersistentTreeMap<K, V> empty() {
+    return (PersistentTreeMap<K, V>) EMPTY;
+  }
+  
+  /**
+   * @return the number of entries
+   */
+  int size() {
+    return size(root);
+  }
+  
+  /**
+   * @param key key to look up
+   * @return the value stored under the key, or null if the key is not present
+   */
+  V get(K key) {
+    Node<K, V> node = root;
+    while(node != null) {
+      int result = key.compareTo(node.key);
+      if(result == 0) {
+        return node.value;
+      }
+      node = result < 0 ? node.left : node.right;
+    }
+    return null;
+  }
+  
+  /**
+   * @param key   key to store the value under
+   * @param value value to store
+   * @return a map holding the value under the key, replacing the entry of an equal key
+   */
+  PersistentTreeMap<K, V> put(K key, V value) {
+    return new PersistentTreeMap<>(put(root, key, value));
+  }
+  
+  /**
+   * @param key key to remove
+   * @return a map without the key, or this map if the key is not present
+   */
+  PersistentTreeMap<K, V> remove(K key) {
+    Node<K, V> removed = remove(root, key);
+    return removed == root ? this : new PersistentTreeMap<>(removed);
+  }
+  
+  /**
+   * Returns the values in key order, skipping the first offset values.
+   *
+   * @param offset    number of values to skip
+   * @param count     maximum number of values to return
+   * @param ascending true for ascending key order, false for descending
+   * @return the values in the requested range
+   */
+  List<V> values(long offset, long count, boolean ascending) {
+    List<V> values = new ArrayList<>((int) Math.max(0, Math.min(count, size() - offset)));
+    collect(root, offset, count, ascending, values);
+    return values;
+  }
+  
+  /**
+   * Passes every entry to the action in ascending key order.
+   *
+   * @param action action to invoke for each entry
+   */
+  void forEach(BiConsumer<? super K, ? super V> action) {
+    forEach(root, action);
+  }
+  
+  private static <K, V> void forEach(Node<K, V> node, BiConsumer<? super K, ? super V> action) {
+    while(node != null) {
+      forEach(node.left, action);
+      action.accept(node.key, node.value);
+      node = node.right;
+    }
+  }
+  
+  /**
+   * Appends the values of the subtree to the list in order until the list holds limit values, skipping the first skip
+   * values of the subtree. Recurses in to one side of each node only, keeping the depth logarithmic.
+   */
+  private static <K, V> void collect(Node<K, V> node, long skip, long limit, boolean ascending, List<V> values) {
+    while(node != null && values.size() < limit) {
+      Node<K, V> first = ascending ? node.left : node.right;
+      int firstSize = size(first);
+      if(skip < firstSize) {
+        collect(first, skip, limit, ascending, values);
+        skip = 0;
+      } else {
+        skip -= firstSize;
+      }
+      if(values.size() >= limit) {
+        return;
+      }
+      if(skip == 0) {
+        values.add(node.value);
+      } else {
+        skip--;
+      }
+      node = ascending ? node.right : node.left;
+    }
+  }
+  
+  private static <K extends Comparable<? super K>, V> Node<K, V> put(Node<K, V> node, K key, V value) {
+    if(node == null) {
+      return new Node<>(key, value, null, null);
+    }
+    int result = key.compareTo(node.key);
+    if(result < 0) {
+      return balance(node.key, node.value, put(node.left, key, value), node.right);
+    } else if(result > 0) {
+      return balance(node.key, node.value, node.left, put(node.right, key, value));
+    }
+    return new Node<>(key, value, node.left, node.right);
+  }
+  
+  private static <K extends Comparable<? super K>, V> Node<K, V> remove(Node<K, V> node, K key) {
+    if(node == null) {
+      return null;
+    }
+    int result = key.compareTo(node.key);
+    if(result < 0) {
+      Node<K, V> left = remove(node.left, key);
+      return left == node.left ? node : balance(node.key, node.value, left, node.right);
+    } else if(result > 0) {
+      Node<K, V> right = remove(node.right, key);
+      return right == node.right ? node : balance(node.key, node.value, node.left, right);
+    }
+    if(node.left == null) {
+      return node.right;
+    } else if(node.right == null) {
+      return node.left;
+    }
+    Node<K, V> successor = node.right;
+    while(successor.left != null) {
+      successor = successor.left;
+    }
+    return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+  }
+  
+  private static <K, V> Node<K, V> removeFirst(Node<K, V> node) {
+    if(node.left == null) {
+      return node.right;
+    }
+    return balance(node.key, node.value, removeFirst(node.left), node.right);
+  }
+  
+  /**
+   * Creates a node from the provided parts, rotating them if the heights of the subtrees differ by more than one.
+   */
+  private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+    int leftHeight = height(left);
+    int rightHeight = height(right);
+    if(leftHeight > rightHeight + 1) {
+      if(height(left.left) >= height(left.right)) {
+        return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+      }
+      Node<K, V> pivot = left.right;
+      return new Node<>(pivot.key, pivot.value,
+          new Node<>(left.key, left.value, left.left, pivot.left),
+          new Node<>(key, value, pivot.right, right));
+    } else if(rightHeight > leftHeight + 1) {
+      if(height(right.right) >= height(right.left)) {
+        return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+      }
+      Node<K, V> pivot = right.left;
+      return new Node<>(pivot.key, pivot.value,
+          new Node<>(key, value, left, pivot.left),
+          new Node<>(right.key, right.value, pivot.right, right.right));
+    }
+    return new Node<>(key, value, left, right);
+  }
+  
+  private static int height(Node<?, ?> node) {
+    return node == null ? 0 : node.height;
+  }
+  
+  private static int size(Node<?, ?> node) {
+    return node == null ? 0 : node.size;
+  }
+  
+  private static final class Node<K, V> {
+    private final K key;
+    private final V value;
+    private final Node<K, V> left;
+    private final Node<K, V> right;
+    private final int height;
+    /**
+     * Number of entries in the subtree rooted at this node.
+     */
+    private final int size;
+    
+    private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = Math.max(height(left), height(right)) + 1;
+      this.size = size(left) + size(right) + 1;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package net.nextpulse.jadmin.dao;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import net.nextpulse.jadmin.FormPostEntry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DAO decorator that caches the entries retrieved by {@link #selectOne(Object...)}, keyed by the string values of their
+ * primary key(s). Updates and deletes made through this DAO remove the affected entry from the cache, while the time to
+ * live bounds how long changes made by other applications may go unnoticed. The cache evicts the least recently used
+ * entries once the total weight of the cached entries, their number of columns, exceeds the maximum weight. Every
+ * caller receives its own copy of a cached entry, so changes made by one caller are not seen by the others.
+ *
+ * @author yholkamp
+ */
+public class RowCachingDAO extends ForwardingDAO {
+  private static final Logger logger = LogManager.getLogger();
+  
+  private final Cache<List<String>, DatabaseEntry> cache;
+  /**
+   * Number of writes made through this DAO, used to discard entries that were being retrieved while a write took place.
+   */
+  private final AtomicLong writes = new AtomicLong();
+  
+  /**
+   * @param delegate      DAO to cache the entries of
+   * @param maximumWeight maximum total number of columns of the cached entries
+   * @param timeToLive    maximum age of a cached entry
+   */
+  public RowCachingDAO(AbstractDAO delegate, long maximumWeight, Duration timeToLive) {
+    super(delegate);
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maximumWeight)
+        .weigher((List<String> key, DatabaseEntry entry) -> Math.max(1, entry.getProperties().size()))
+        .expireAfterWrite(timeToLive.toNanos(), TimeUnit.NANOSECONDS)
+        .recordStats()
+        .build();
+  }
+  
+  /**
+   * Returns the cached entry, retrieving it using the underlying DAO if it is not cached. Keys that do not match an
+   * entry are not cached.
+   *
+   * @param keys primary key(s)
+   * @return either an empty optional object or the object represented by the provided keys.
+   * @throws DataAccessException if an error occurred while retrieving the object or the provided keys are invalid.
+   */
+  @Override
+  public Optional<DatabaseEntry> selectOne(Object... keys) throws DataAccessException {
+    List<String> cacheKey = toCacheKey(keys);
+    DatabaseEntry cached = cache.getIfPresent(cacheKey);
+    if(cached != null) {
+      return Optional.of(cached.copy());
+    }
+    long writesBefore = writes.get();
+    Optional<DatabaseEntry> entry = delegate.selectOne(keys);
+    if(entry.isPresent()) {
+      if(writes.get() == writesBefore) {
+        cache.put(cacheKey, entry.get().copy());
+        // a write may have invalidated the entry between the check and the put
+        if(writes.get() != writesBefore) {
+          cache.invalidate(cacheKey);
+        }
+      } else {
+        logger.trace("Not caching entry, a write took place while retrieving it");
+      }
+    }
+    return entry;
+  }
+  
+  @Override
+  public void insert(FormPostEntry postData) throws DataAccessException {
+    // entries retrieved while the write takes place are not cached
+    writes.incrementAndGet();
+    try {
+      delegate.insert(postData);
+    } finally {
+      invalidate(postData.getKeyValues().values().toArray());
+    }
+  }
+  
+  @Override
+  public void update(FormPostEntry postData) throws DataAccessException {
+    // entries retrieved while the write takes place are not cached
+    writes.incrementAndGet();
+    try {
+      delegate.update(postData);
+    } finally {
+      invalidate(postData.getKeyValues().values().toArray());
+    }
+  }
+  
+  @Override
+  public void delete(Object... keys) throws DataAccessException {
+    // entries retrieved while the write takes place are not cached
+    writes.incrementAndGet();
+    try {
+      delegate.delete(keys);
+    } finally {
+      invalidate(keys);
+    }
+  }
+  
+  /**
+   * Removes the entry identified by the provided key(s) from the cache, i.e. after it was changed outside of JAdmin.
+   *
+   * @param keys primary key(s)
+   */
+  public void invalidate(Object... keys) {
+    writes.incrementAndGet();
+    cache.invalidate(toCacheKey(keys));
+  }
+  
+  /**
+   * Removes all entries from the cache, i.e. after a bulk change made outside of JAdmin.
+   */
+  public void invalidateAll() {
+    writes.incrementAndGet();
+    cache.invalidateAll();
+  }
+  
+  /**
+   * @return number of selectOne calls answered from the cache
+   */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+  
+  /**
+   * @return number of selectOne calls forwarded to the underlying DAO
+   */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+  
+  /**
+   * @return ratio of selectOne calls answered from the cache, 0 if selectOne was never called
+   */
+  public double getHitRatio() {
+    CacheStats stats = cache.stats();
+    return stats.requestCount() == 0 ? 0 : stats.hitRate();
+  }
+  
+  /**
+   * @return number of entries evicted because of their age or the maximum weight
+   */
+  public long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+  
+  /**
+   * Converts the keys to strings, as keys taken from the URL are strings while other callers may pass typed values.
+   */
+  private static List<String> toCacheKey(Object[] keys) {
+    List<String> cacheKey = new ArrayList<>(keys.length);
+    for(Object key : keys) {
+      cacheKey.add(String.valueOf(key));
+    }
+    return cacheKey;
+  }
+}
@@ -0,0 +1,60 @@
+package net.nextpulse.jadmin.dao;
+
+/**
+ * Number of entries of a resource, which may be exact, an estimate or unknown.
+ *
+ * @author yholkamp
+ */
+public class RowCount {
+  private static final RowCount UNKNOWN = new RowCount(-1, false);
+  
+  private final int value;
+  private final boolean exact;
+  
+  private RowCount(int value, boolean exact) {
+    this.value = value;
+    this.exact = exact;
+  }
+  
+  /**
+   * @param value counted number of entries
+   * @return a new exact count
+   */
+  public static RowCount exact(int value) {
+    return new RowCount(value, true);
+  }
+  
+  /**
+   * @param value estimated number of entries
+   * @return a new estimated count
+   */
+  public static RowCount estimated(int value) {
+    return new RowCount(value, false);
+  }
+  
+  /**
+   * @return a count indicating the number of entries was not determined
+   */
+  public static RowCount unknown() {
+    return UNKNOWN;
+  }
+  
+  /**
+   * @return the number of entries or -1 if unknown
+   */
+  public int getValue() {
+    return value;
+  }
+  
+  public boolean isExact() {
+    return exact;
+  }
+  
+  public boolean isEstimated() {
+    return !exact && value >= 0;
+  }
+  
+  public boolean isUnknown() {
+    return value < 0;
+  }
+}
@@ -0,0 +1,130 @@
+package net.nextpulse.jadmin.dao;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * Describes the database product behind a DataSource, allowing GenericSQLDAO to use product specific SQL where the
+ * generic SQL is significantly slower.
+ *
+ * @author yholkamp
+ */
+public class SQLDialect {
+  
+  private final String productName;
+  private final int majorVersion;
+  private final int minorVersion;
+  private final String productVersion;
+  
+  public SQLDialect(String productName, int majorVersion, int minorVersion) {
+    this(productName, majorVersion, minorVersion, null);
+  }
+  
+  public SQLDialect(String productName, int majorVersion, int minorVersion, String productVersion) {
+    this.productName = productName == null ? "" : productName.toLowerCase();
+    this.majorVersion = majorVersion;
+    this.minorVersion = minorVersion;
+    this.productVersion = productVersion == null ? "" : productVersion;
+  }
+  
+  /**
+   * @param metaData metadata of an open connection
+   * @return the dialect of the connected database
+   * @throws SQLException if the metadata could not be read
+   */
+  public static SQLDialect of(DatabaseMetaData metaData) throws SQLException {
+    return new SQLDialect(metaData.getDatabaseProductName(), metaData.getDatabaseMajorVersion(),
+        metaData.getDatabaseMinorVersion(), metaData.getDatabaseProductVersion());
+  }
+  
+  public boolean isPostgreSQL() {
+    return productName.contains("postgresql");
+  }
+  
+  public boolean isMySQL() {
+    return productName.contains("mysql") || productName.contains("mariadb");
+  }
+  
+  public boolean isH2() {
+    return productName.equals("h2");
+  }
+  
+  public boolean isSQLite() {
+    return productName.contains("sqlite");
+  }
+  
+  /**
+   * Returns a query that reads the estimated number of rows of a table from the catalog statistics, which is far
+   * cheaper than a COUNT(*) on large tables. The query takes the table name as its only parameter. H2 compares the name
+   * case insensitively, as it stores unquoted identifiers in upper case.
+   *
+   * @return query returning a single estimate or null if the database offers no supported estimate
+   */
+  public String getEstimatedCountQuery() {
+    if(isPostgreSQL()) {
+      return "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)";
+    } else if(isMySQL()) {
+      return "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+    } else if(isH2()) {
+      return "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = SCHEMA() AND UPPER(TABLE_NAME) = UPPER(?)";
+    }
+    return null;
+  }
+  
+  /**
+   * Indicates whether the database supports window functions such as {@code COUNT(*) OVER()}, allowing a page and the
+   * total number of rows to be retrieved using a single query.
+   *
+   * @return true if window functions are supported
+   */
+  public boolean supportsWindowFunctions() {
+    if(isPostgreSQL()) {
+      return isAtLeast(8, 4);
+    } else if(productName.contains("mariadb")) {
+      return isAtLeast(10, 2);
+    } else if(isMySQL()) {
+      return isAtLeast(8, 0);
+    } else if(isSQLite()) {
+      return isAtLeast(3, 25);
+    } else if(isH2()) {
+      // window functions were added in 1.4.198, the build number is only available from the product version
+      return isAtLeast(1, 5) || (majorVersion == 1 && minorVersion == 4 && getBuildNumber() >= 198);
+    }
+    return false;
+  }
+  
+  private boolean isAtLeast(int major, int minor) {
+    return majorVersion > major || (majorVersion == major && minorVersion >= minor);
+  }
+  
+  /**
+   * @return the third component of the product version, i.e. 199 for '1.4.199 (2019-03-13)', or -1 if not available
+   */
+  private int getBuildNumber() {
+    String[] parts = productVersion.split("[^0-9]+");
+    if(parts.length < 3) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(parts[2]);
+    } catch(NumberFormatException e) {
+      return -1;
+    }
+  }
+  
+  public String getProductName() {
+    return productName;
+  }
+  
+  public int getMajorVersion() {
+    return majorVersion;
+  }
+  
+  public int getMinorVersion() {
+    return minorVersion;
+  }
+  
+  public String getProductVersion() {
+    return productVersion;
+  }
+}
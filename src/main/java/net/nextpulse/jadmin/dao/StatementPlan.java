@@ -0,0 +1,95 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.ColumnDefinition;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled SQL statement, holding the SQL text together with the columns of its parameters in binding order. Plans
+ * are immutable and are built once per resource and column set, after which they may be shared between threads.
+ *
+ * @author yholkamp
+ */
+public final class StatementPlan {
+  
+  private final String sql;
+  private final String[] parameterNames;
+  private final ColumnDefinition[] parameterColumns;
+  private final int[] valueIndexes;
+  
+  /**
+   * Creates a plan where the n-th parameter is bound to the n-th provided value.
+   *
+   * @param sql               SQL text with unbound parameters
+   * @param parameterNames    column name of each parameter, in binding order
+   * @param columnDefinitions column definitions of the resource, used to resolve the parameter types
+   */
+  public StatementPlan(String sql, List<String> parameterNames, Map<String, ColumnDefinition> columnDefinitions) {
+    this(sql, parameterNames, identity(parameterNames.size()), columnDefinitions);
+  }
+  
+  /**
+   * Creates a plan where the same value may be bound to multiple parameters.
+   *
+   * @param sql               SQL text with unbound parameters
+   * @param parameterNames    column name of each parameter, in binding order
+   * @param valueIndexes      for each parameter, the index of the provided value to bind
+   * @param columnDefinitions column definitions of the resource, used to resolve the parameter types
+   */
+  public StatementPlan(String sql, List<String> parameterNames, int[] valueIndexes, Map<String, ColumnDefinition> columnDefinitions) {
+    if(parameterNames.size() != valueIndexes.length) {
+      throw new IllegalArgumentException("Expected a value index for each of the " + parameterNames.size() + " parameters");
+    }
+    this.sql = sql;
+    this.parameterNames = parameterNames.toArray(new String[0]);
+    this.parameterColumns = new ColumnDefinition[this.parameterNames.length];
+    for(int i = 0; i < this.parameterNames.length; i++) {
+      parameterColumns[i] = columnDefinitions.get(this.parameterNames[i]);
+    }
+    this.valueIndexes = valueIndexes.clone();
+  }
+  
+  private static int[] identity(int size) {
+    int[] indexes = new int[size];
+    for(int i = 0; i < size; i++) {
+      indexes[i] = i;
+    }
+    return indexes;
+  }
+  
+  public String getSql() {
+    return sql;
+  }
+  
+  /**
+   * @return number of parameters in the SQL text
+   */
+  public int getParameterCount() {
+    return parameterNames.length;
+  }
+  
+  /**
+   * @param parameter zero based parameter index
+   * @return name of the column the parameter refers to
+   */
+  public String getParameterName(int parameter) {
+    return parameterNames[parameter];
+  }
+  
+  /**
+   * @param parameter zero based parameter index
+   * @return column definition of the parameter or null if the column is unknown
+   */
+  public ColumnDefinition getParameterColumn(int parameter) {
+    return parameterColumns[parameter];
+  }
+  
+  /**
+   * @param parameter zero based parameter index
+   * @return index of the value to bind to this parameter
+   */
+  public int getValueIndex(int parameter) {
+    return valueIndexes[parameter];
+  }
+}
@@ -0,0 +1,26 @@
+package net.nextpulse.jadmin.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Converts user submitted values to the type of a specific column and binds them to a statement. Implementations must be
+ * thread safe, as a single codec is shared by all statements binding values for a column.
+ *
+ * @author yholkamp
+ */
+@FunctionalInterface
+public interface ValueCodec {
+  
+  /**
+   * Binds the provided non-empty value to the statement.
+   *
+   * @param statement statement to fill
+   * @param index     index of the parameter to set
+   * @param value     user-provided value
+   * @throws SQLException             if the value could not be set
+   * @throws IllegalArgumentException if the value could not be converted to the type of the column
+   * @throws java.time.DateTimeException if a date or time value could not be parsed
+   */
+  void bind(PreparedStatement statement, int index, String value) throws SQLException;
+}
@@ -0,0 +1,140 @@
+package net.nextpulse.jadmin.dao;
+
+import com.google.common.collect.ImmutableMap;
+import net.nextpulse.jadmin.ColumnType;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Registry of the value codecs supported by JAdmin, keyed by the SQL type ({@link java.sql.Types}) of a column.
+ *
+ * @author yholkamp
+ */
+public final class ValueCodecs {
+  
+  /**
+   * The 'yyyy-MM-dd HH:mm:ss' format, optionally without seconds or with fractions of seconds. The ISO
+   * 'yyyy-MM-ddTHH:mm' format used by datetime-local inputs is parsed using {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME}
+   * instead, see {@link #parseDateTime(String)}.
+   */
+  private static final DateTimeFormatter DATE_TIME_FORMAT = new DateTimeFormatterBuilder()
+      .append(DateTimeFormatter.ISO_LOCAL_DATE)
+      .appendLiteral(' ')
+      .append(DateTimeFormatter.ISO_LOCAL_TIME)
+      .toFormatter();
+  
+  public static final ValueCodec STRING = (statement, index, value) -> statement.setString(index, value);
+  public static final ValueCodec INTEGER = (statement, index, value) -> statement.setInt(index, Integer.parseInt(value));
+  public static final ValueCodec LONG = (statement, index, value) -> statement.setLong(index, Long.parseLong(value));
+  public static final ValueCodec DOUBLE = (statement, index, value) -> statement.setDouble(index, Double.parseDouble(value));
+  public static final ValueCodec DECIMAL = (statement, index, value) -> statement.setBigDecimal(index, new BigDecimal(value));
+  public static final ValueCodec BOOLEAN = (statement, index, value) -> statement.setBoolean(index, Boolean.valueOf(value));
+  public static final ValueCodec UUID_CODEC = (statement, index, value) -> statement.setObject(index, UUID.fromString(value));
+  public static final ValueCodec DATE = (statement, index, value) ->
+      statement.setDate(index, Date.valueOf(LocalDate.parse(value, DateTimeFormatter.ISO_LOCAL_DATE)));
+  public static final ValueCodec TIME = (statement, index, value) ->
+      statement.setTime(index, Time.valueOf(LocalTime.parse(value, DateTimeFormatter.ISO_LOCAL_TIME)));
+  public static final ValueCodec TIMESTAMP = (statement, index, value) ->
+      statement.setTimestamp(index, Timestamp.valueOf(parseDateTime(value)));
+  /**
+   * Leaves the conversion to the JDBC driver.
+   */
+  public static final ValueCodec OBJECT = (statement, index, value) -> statement.setObject(index, value);
+  
+  private static final Map<Integer, ValueCodec> codecsBySqlType = ImmutableMap.<Integer, ValueCodec>builder()
+      .put(Types.CHAR, STRING)
+      .put(Types.VARCHAR, STRING)
+      .put(Types.LONGVARCHAR, STRING)
+      .put(Types.NCHAR, STRING)
+      .put(Types.NVARCHAR, STRING)
+      .put(Types.LONGNVARCHAR, STRING)
+      .put(Types.CLOB, STRING)
+      .put(Types.SMALLINT, INTEGER)
+      .put(Types.INTEGER, INTEGER)
+      .put(Types.BIGINT, LONG)
+      .put(Types.REAL, DOUBLE)
+      .put(Types.FLOAT, DOUBLE)
+      .put(Types.DOUBLE, DOUBLE)
+      .put(Types.DECIMAL, DECIMAL)
+      .put(Types.NUMERIC, DECIMAL)
+      .put(Types.BIT, BOOLEAN)
+      .put(Types.BOOLEAN, BOOLEAN)
+      .put(Types.DATE, DATE)
+      .put(Types.TIME, TIME)
+      .put(Types.TIME_WITH_TIMEZONE, TIME)
+      .put(Types.TIMESTAMP, TIMESTAMP)
+      .put(Types.TIMESTAMP_WITH_TIMEZONE, TIMESTAMP)
+      .build();
+  
+  private ValueCodecs() {
+  }
+  
+  /**
+   * Parses a date and time separated by either a 'T' as used by datetime-local inputs, or a single space.
+   *
+   * @param value value to parse
+   * @return the parsed date and time
+   * @throws java.time.format.DateTimeParseException if the value is not in either format
+   */
+  static LocalDateTime parseDateTime(String value) {
+    boolean iso = value.length() > 10 && value.charAt(10) == 'T';
+    return LocalDateTime.parse(value, iso ? DateTimeFormatter.ISO_LOCAL_DATE_TIME : DATE_TIME_FORMAT);
+  }
+  
+  /**
+   * Resolves the codec for a column based on the type information reported by the database.
+   *
+   * @param sqlType    SQL type of the column as defined by {@link java.sql.Types}
+   * @param typeName   database specific type name
+   * @param columnType JAdmin type of the column, used if the SQL type is not supported
+   * @return the codec to use for the column
+   */
+  public static ValueCodec forSqlType(int sqlType, String typeName, ColumnType columnType) {
+    // uuid columns are reported as OTHER or BINARY depending on the database
+    if("uuid".equalsIgnoreCase(typeName)) {
+      return UUID_CODEC;
+    }
+    // tinyint(1) is commonly used as boolean, follow the JAdmin type in that case
+    if(sqlType == Types.TINYINT) {
+      return columnType == ColumnType.bool ? BOOLEAN : INTEGER;
+    }
+    ValueCodec codec = codecsBySqlType.get(sqlType);
+    return codec != null ? codec : forColumnType(columnType);
+  }
+  
+  /**
+   * Returns the codec for columns without SQL type information, i.e. columns not described by a SQL database.
+   *
+   * @param columnType JAdmin type of the column
+   * @return the codec to use for the column
+   */
+  public static ValueCodec forColumnType(ColumnType columnType) {
+    if(columnType == null) {
+      return OBJECT;
+    }
+    switch(columnType) {
+      case integer:
+        return INTEGER;
+      case bool:
+        return BOOLEAN;
+      case datetime:
+        return TIMESTAMP;
+      case string:
+      case text:
+        return STRING;
+      default:
+        return OBJECT;
+    }
+  }
+}
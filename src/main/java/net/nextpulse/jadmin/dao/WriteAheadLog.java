@@ -0,0 +1,299 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.FormPostEntry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to an in-memory DAO. Records are framed by their length and a CRC32 checksum of
+ * their contents, allowing a torn record at the end of the log to be detected and ignored on recovery.
+ * <p>
+ * Records are appended to an in-memory buffer and written to the file by {@link #sync(long)}. Threads syncing at the
+ * same time share a single write and force of the file: the first thread writes all buffered records, after which the
+ * other threads find their records already durable. Once a write or force failed, every later sync fails as well, so
+ * records appended after the failure are never written.
+ *
+ * @author yholkamp
+ */
+final class WriteAheadLog implements Closeable {
+  
+  static final byte INSERT = 1;
+  static final byte UPDATE = 2;
+  static final byte DELETE = 3;
+  
+  private static final int HEADER_SIZE = 8;
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+  
+  private final FileChannel channel;
+  private final Object bufferLock = new Object();
+  private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  /**
+   * Sequence number of the last appended record.
+   */
+  private long appended;
+  private final Object flushLock = new Object();
+  /**
+   * Sequence number of the last record written and forced to disk.
+   */
+  private volatile long flushed;
+  /**
+   * Error that occurred while writing the file, guarded by the flush lock.
+   */
+  private IOException failure;
+  
+  WriteAheadLog(FileChannel channel) {
+    this.channel = channel;
+  }
+  
+  /**
+   * Opens the log file for appending, creating it if it does not exist yet.
+   *
+   * @param file log file
+   * @return the opened log
+   * @throws IOException if the file could not be opened
+   */
+  static WriteAheadLog open(Path file) throws IOException {
+    return new WriteAheadLog(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+  }
+  
+  /**
+   * Buffers a record, which becomes durable once {@link #sync(long)} is called with the returned sequence number.
+   *
+   * @param record encoded record, see {@link #encode(byte, FormPostEntry)} and {@link #encodeDelete(Object...)}
+   * @return sequence number of the record
+   */
+  long append(byte[] record) {
+    synchronized(bufferLock) {
+      pending = frame(pending, record);
+      return ++appended;
+    }
+  }
+  
+  /**
+   * Waits until the record with the provided sequence number is written and forced to disk.
+   *
+   * @param sequence sequence number returned by {@link #append(byte[])}
+   * @throws IOException if the buffered records could not be written
+   */
+  void sync(long sequence) throws IOException {
+    if(flushed >= sequence) {
+      return;
+    }
+    synchronized(flushLock) {
+      if(flushed >= sequence) {
+        return;
+      }
+      if(failure != null) {
+        throw new IOException("An earlier write to the log failed", failure);
+      }
+      long upTo;
+      synchronized(bufferLock) {
+        ByteBuffer swap = writing;
+        writing = pending;
+        pending = swap;
+        upTo = appended;
+      }
+      try {
+        writing.flip();
+        while(writing.hasRemaining()) {
+          channel.write(writing);
+        }
+        writing.clear();
+        channel.force(false);
+      } catch(IOException e) {
+        failure = e;
+        throw e;
+      }
+      flushed = upTo;
+    }
+  }
+  
+  /**
+   * Makes all appended records durable and closes the file.
+   *
+   * @throws IOException if the records could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    long last;
+    synchronized(bufferLock) {
+      last = appended;
+    }
+    try {
+      sync(last);
+    } finally {
+      channel.close();
+    }
+  }
+  
+  /**
+   * Appends the record with its length and checksum to the buffer, growing the buffer if needed.
+   *
+   * @param buffer buffer to write to
+   * @param record record to append
+   * @return the buffer containing the record
+   */
+  static ByteBuffer frame(ByteBuffer buffer, byte[] record) {
+    if(buffer.remaining() < HEADER_SIZE + record.length) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + HEADER_SIZE + record.length));
+      buffer.flip();
+      larger.put(buffer);
+      buffer = larger;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record);
+    buffer.putInt(record.length);
+    buffer.putInt((int) crc.getValue());
+    buffer.put(record);
+    return buffer;
+  }
+  
+  /**
+   * Reads the framed records from the buffer until its end or the first incomplete or corrupt record.
+   *
+   * @param buffer   buffer positioned at the first record
+   * @param consumer consumer receiving the records
+   * @return true if all records were read, false if the buffer ended in an incomplete or corrupt record
+   */
+  static boolean read(ByteBuffer buffer, RecordConsumer consumer) {
+    while(buffer.remaining() >= HEADER_SIZE) {
+      int length = buffer.getInt();
+      int checksum = buffer.getInt();
+      if(length < 0 || length > buffer.remaining()) {
+        return false;
+      }
+      byte[] record = new byte[length];
+      buffer.get(record);
+      CRC32 crc = new CRC32();
+      crc.update(record);
+      if((int) crc.getValue() != checksum) {
+        return false;
+      }
+      try {
+        consumer.accept(decode(ByteBuffer.wrap(record)));
+      } catch(BufferUnderflowException e) {
+        return false;
+      }
+    }
+    return !buffer.hasRemaining();
+  }
+  
+  /**
+   * Encodes an insert or update.
+   *
+   * @param type     either {@link #INSERT} or {@link #UPDATE}
+   * @param postData submitted data
+   * @return encoded record
+   */
+  static byte[] encode(byte type, FormPostEntry postData) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(type);
+      writeMap(out, postData.getKeyValues());
+      writeMap(out, postData.getValues());
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * Encodes a delete, storing the keys as strings.
+   *
+   * @param keys primary key(s)
+   * @return encoded record
+   */
+  static byte[] encodeDelete(Object... keys) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(DELETE);
+      out.writeInt(keys.length);
+      for(Object key : keys) {
+        writeString(out, key == null ? null : key.toString());
+      }
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+  
+  private static Record decode(ByteBuffer buffer) {
+    byte type = buffer.get();
+    if(type == DELETE) {
+      String[] keys = new String[buffer.getInt()];
+      for(int i = 0; i < keys.length; i++) {
+        keys[i] = readString(buffer);
+      }
+      return new Record(type, null, keys);
+    }
+    FormPostEntry postData = new FormPostEntry();
+    for(int i = 0, size = buffer.getInt(); i < size; i++) {
+      postData.addKeyValue(readString(buffer), readString(buffer));
+    }
+    for(int i = 0, size = buffer.getInt(); i < size; i++) {
+      postData.addValue(readString(buffer), readString(buffer));
+    }
+    return new Record(type, postData, null);
+  }
+  
+  private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+    out.writeInt(map.size());
+    for(Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+  
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if(value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+  
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if(length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+  
+  /**
+   * Decoded change, either an insert or update of the submitted data or a delete of the keys.
+   */
+  static final class Record {
+    final byte type;
+    final FormPostEntry postData;
+    final String[] keys;
+    
+    Record(byte type, FormPostEntry postData, String[] keys) {
+      this.type = type;
+      this.postData = postData;
+      this.keys = keys;
+    }
+  }
+  
+  @FunctionalInterface
+  interface RecordConsumer {
+    void accept(Record record);
+  }
+}
@@ -0,0 +1,22 @@
+package net.nextpulse.jadmin.dsl;
+
+import java.util.List;
+
+/**
+ * Batch variant of {@link ColumnValueTransformer}, transforming the values of a column for all rows of a page in a
+ * single call. Allows transformations that require a lookup, i.e. resolving user ids to names, to use a single query
+ * per page rather than one per row.
+ *
+ * @author yholkamp
+ */
+@FunctionalInterface
+public interface BatchColumnValueTransformer {
+  
+  /**
+   * Transforms the provided column values.
+   *
+   * @param values the column values of the rows on the page, in row order
+   * @return transformed column values, in the same order and of the same size as the provided values
+   */
+  List<String> apply(List<Object> values);
+}
@@ -1,5 +1,7 @@
 package net.nextpulse.jadmin.dsl;
 
+import net.nextpulse.jadmin.CountStrategy;
+import net.nextpulse.jadmin.PaginationMode;
 import net.nextpulse.jadmin.Resource;
 
 /**
@@ -39,6 +41,57 @@ public class IndexBuilder {
     return this;
   }
   
+  /**
+   * Adds a column identified by id to the index page, transforming the values of all rows on a page in a single call.
+   * Preferable over {@link #column(String, ColumnValueTransformer)} when the transformation requires a lookup.
+   *
+   * @param id                          internal column name to add
+   * @param batchColumnValueTransformer transformation method receiving the column values of all rows on the page
+   * @return this instance
+   */
+  public IndexBuilder batchColumn(String id, BatchColumnValueTransformer batchColumnValueTransformer) {
+    resource.addBatchColumn(id, batchColumnValueTransformer);
+    return this;
+  }
+  
+  /**
+   * Adds a foreign key column identified by id to the index page, showing the label column of the resource referenced
+   * according to the database schema instead of the raw key.
+   *
+   * @param id          internal column name to add
+   * @param labelColumn column of the referenced resource to show
+   * @return this instance
+   */
+  public IndexBuilder reference(String id, String labelColumn) {
+    resource.addReferenceColumn(id, null, labelColumn);
+    return this;
+  }
+  
+  /**
+   * Adds a column identified by id to the index page, showing the label column of the provided resource instead of the
+   * raw key. The referenced resource must be registered with JAdmin and have a single key column.
+   *
+   * @param id                 internal column name to add
+   * @param referencedResource name of the resource referenced by the column
+   * @param labelColumn        column of the referenced resource to show
+   * @return this instance
+   */
+  public IndexBuilder reference(String id, String referencedResource, String labelColumn) {
+    resource.addReferenceColumn(id, referencedResource, labelColumn);
+    return this;
+  }
+  
+  /**
+   * Set whether the batch transformers of different columns may run in parallel.
+   *
+   * @param parallel true to transform the batch columns in parallel
+   * @return this instance
+   */
+  public IndexBuilder parallelBatchColumns(boolean parallel) {
+    resource.setParallelBatchColumns(parallel);
+    return this;
+  }
+  
   /**
    * Set the number of entries to show per page.
    * 
@@ -49,6 +102,43 @@ public class IndexBuilder {
     resource.setPerPageCount(count);
     return this;
   }
+  
+  /**
+   * Set the way the list page retrieves its entries, keyset pagination keeps deep pages as cheap as the first page
+   * when the sort column is indexed.
+   *
+   * @param paginationMode pagination mode to use
+   * @return this instance
+   */
+  public IndexBuilder paginationMode(PaginationMode paginationMode) {
+    resource.setPaginationMode(paginationMode);
+    return this;
+  }
+  
+  /**
+   * Set the way the total number of entries is determined, estimating or skipping the count avoids a full table scan
+   * on every page load.
+   *
+   * @param countStrategy count strategy to use
+   * @return this instance
+   */
+  public IndexBuilder countStrategy(CountStrategy countStrategy) {
+    resource.setCountStrategy(countStrategy);
+    return this;
+  }
+  
+  /**
+   * Set the way the total number of entries is determined, using the provided threshold for the threshold strategy.
+   *
+   * @param countStrategy count strategy to use
+   * @param threshold     estimated number of entries from which the estimate is shown instead of the exact count
+   * @return this instance
+   */
+  public IndexBuilder countStrategy(CountStrategy countStrategy, int threshold) {
+    resource.setCountStrategy(countStrategy);
+    resource.setCountThreshold(threshold);
+    return this;
+  }
 
 //  /**
 //   * Adds edit/show/delete buttons to the index, defaults to the last column.
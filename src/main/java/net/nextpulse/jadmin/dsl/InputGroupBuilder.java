@@ -6,6 +6,7 @@ import net.nextpulse.jadmin.Resource;
 import net.nextpulse.jadmin.elements.FormInput;
 import net.nextpulse.jadmin.elements.FormInputGroup;
 import net.nextpulse.jadmin.elements.FormSelect;
+import net.nextpulse.jadmin.elements.FormTypeahead;
 import net.nextpulse.jadmin.exceptions.ConfigurationException;
 import net.nextpulse.jadmin.helpers.Tuple2;
 
@@ -118,4 +119,31 @@ public class InputGroupBuilder {
     // consider passing the primary keys of the current object to the producer function
     return this;
   }
+  
+  /**
+   * Adds a typeahead field to the form for the provided foreign key column, searching the label column of the resource
+   * referenced according to the database schema while typing.
+   *
+   * @param column      name of the column to add as typeahead
+   * @param labelColumn column of the referenced resource to search and show
+   * @return this instance
+   */
+  public InputGroupBuilder typeahead(String column, String labelColumn) {
+    return typeahead(column, null, labelColumn);
+  }
+  
+  /**
+   * Adds a typeahead field to the form for the provided column, searching the label column of the provided resource
+   * while typing. The referenced resource must be registered with JAdmin and have a single key column.
+   *
+   * @param column             name of the column to add as typeahead
+   * @param referencedResource name of the resource referenced by the column
+   * @param labelColumn        column of the referenced resource to search and show
+   * @return this instance
+   */
+  public InputGroupBuilder typeahead(String column, String referencedResource, String labelColumn) {
+    ColumnType columnType = getTypeForColumn(column);
+    inputGroup.addInput(new FormTypeahead(column, columnType, referencedResource, labelColumn));
+    return this;
+  }
 }
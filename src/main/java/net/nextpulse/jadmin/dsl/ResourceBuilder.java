@@ -1,7 +1,10 @@
 package net.nextpulse.jadmin.dsl;
 
 import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dao.CountCachingDAO;
+import net.nextpulse.jadmin.dao.RowCachingDAO;
 
+import java.time.Duration;
 import java.util.function.Consumer;
 
 /**
@@ -44,6 +47,32 @@ public class ResourceBuilder {
     return this;
   }
   
+  /**
+   * Caches the number of entries of this resource, avoiding a count query on every list page load. Inserts and deletes
+   * made through JAdmin update the cached count, changes made by other applications show up once the count expires.
+   *
+   * @param timeToLive maximum age of the cached count
+   * @return this instance
+   */
+  public ResourceBuilder countCache(Duration timeToLive) {
+    resource.setDao(new CountCachingDAO(resource.getDao(), timeToLive));
+    return this;
+  }
+  
+  /**
+   * Caches the entries of this resource opened on the edit page, avoiding a query each time the same entry is opened.
+   * Updates and deletes made through JAdmin remove the entry from the cache, changes made by other applications show
+   * up once the entry expires.
+   *
+   * @param maximumWeight maximum total number of columns of the cached entries
+   * @param timeToLive    maximum age of a cached entry
+   * @return this instance
+   */
+  public ResourceBuilder rowCache(long maximumWeight, Duration timeToLive) {
+    resource.setDao(new RowCachingDAO(resource.getDao(), maximumWeight, timeToLive));
+    return this;
+  }
+  
   /**
    * Sets a validation function to execute before the per-column validation.
    *
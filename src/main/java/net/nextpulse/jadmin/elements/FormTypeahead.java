@@ -0,0 +1,76 @@
+package net.nextpulse.jadmin.elements;
+
+import net.nextpulse.jadmin.ColumnType;
+import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dao.DataAccessException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+
+/**
+ * Element that will be rendered as a text field searching the entries of a referenced resource while typing, for
+ * foreign key columns referencing resources too large to embed as options of a {@link FormSelect}. The options are
+ * retrieved from the options endpoint of the referenced resource.
+ *
+ * @author yholkamp
+ */
+public class FormTypeahead extends FormInput {
+  private static final Logger logger = LogManager.getLogger();
+  
+  private final String referencedTable;
+  private final String labelColumn;
+  private Resource referencedResource;
+  
+  /**
+   * @param name            internal name of this column
+   * @param columnType      type of this column
+   * @param referencedTable name of the referenced resource, or null to use the foreign key found in the schema
+   * @param labelColumn     column of the referenced resource to search and show
+   */
+  public FormTypeahead(String name, ColumnType columnType, String referencedTable, String labelColumn) {
+    super(name, columnType);
+    this.referencedTable = referencedTable;
+    this.labelColumn = labelColumn;
+  }
+  
+  @Override
+  public String getTemplateName() {
+    return "typeahead.ftl";
+  }
+  
+  public String getReferencedTable() {
+    return referencedTable;
+  }
+  
+  public String getLabelColumn() {
+    return labelColumn;
+  }
+  
+  public Resource getReferencedResource() {
+    return referencedResource;
+  }
+  
+  public void setReferencedResource(Resource referencedResource) {
+    this.referencedResource = referencedResource;
+  }
+  
+  /**
+   * Returns the label of the currently selected entry.
+   *
+   * @param value key of the selected entry, may be null or empty
+   * @return the label of the entry, the key if the entry could not be found or an empty string if no entry is selected
+   */
+  @SuppressWarnings("unused")
+  public String getLabel(Object value) {
+    if(value == null || "".equals(value)) {
+      return "";
+    }
+    try {
+      return referencedResource.getReferenceLabels().resolve(labelColumn, Collections.singletonList(value)).get(0);
+    } catch(DataAccessException e) {
+      logger.error("Could not retrieve the label of {} {}", referencedResource.getTableName(), value, e);
+      return value.toString();
+    }
+  }
+}
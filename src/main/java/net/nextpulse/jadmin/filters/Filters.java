@@ -29,6 +29,7 @@ public class Filters {
 
   /**
    * Ensures that the 'table' variable in the URL exists and sets the corresponding resourceSchemaProvider in the 'resourceSchemaProvider' attribute. Throws a NotFoundException if the resourceSchemaProvider was not found.
+   * Materializes lazily registered resources, see {@link Resource#materialize()}.
    *
    * @param resources available resources
    * @return a filter object
@@ -41,7 +42,10 @@ public class Filters {
           logger.error("Did not find table " + table + " in the list of supported tables: " + Joiner.on(", ").join(resources.keySet()));
           throw new NotFoundException();
         } else {
-          request.attribute("resourceSchemaProvider", resources.get(table));
+          Resource resource = resources.get(table);
+          // lazily registered resources are loaded on their first request
+          resource.materialize();
+          request.attribute("resourceSchemaProvider", resource);
         }
       }
     };
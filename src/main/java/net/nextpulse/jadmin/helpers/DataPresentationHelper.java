@@ -1,6 +1,5 @@
 package net.nextpulse.jadmin.helpers;
 
-import net.nextpulse.jadmin.ColumnDefinition;
 import net.nextpulse.jadmin.Resource;
 import net.nextpulse.jadmin.dao.DatabaseEntry;
 import org.apache.logging.log4j.LogManager;
@@ -8,11 +7,15 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Helper class containing methods used to (re)format the data before presenting it to the end user.
@@ -36,25 +39,89 @@ public class DataPresentationHelper {
    * @return a list of maps that contain the fields available on the list page as well as a row identifier
    */
   public static List<Map<String, Object>> transformDatabaseResults(Resource resource, List<DatabaseEntry> rows) {
-    return rows.stream().map(x -> {
+    RenderPlan plan = resource.getRenderPlan();
+    List<List<String>> batchValues = applyBatchTransformers(plan, rows, ForkJoinPool.commonPool());
+    List<Map<String, Object>> results = new ArrayList<>(rows.size());
+    for(int r = 0; r < rows.size(); r++) {
+      Map<String, Object> properties = rows.get(r).getProperties();
       // copy only the columns available on the list page
-      HashMap<String, Object> filteredCopy = new HashMap<>();
-      resource.getIndexColumns().forEach(z -> {
-        Optional<ColumnDefinition> columnDefinition = resource.findColumnDefinitionByName(z);
-        columnDefinition.map(def -> {
-          if(def.getColumnValueTransformer() != null) {
-            return filteredCopy.put(z, def.getColumnValueTransformer().apply(x.getProperties().get(z)));
-          } else {
-            return filteredCopy.put(z, x.getProperties().get(z));
-          }
-        });
-      });
-
-          // add a row identifier
-        filteredCopy.put("DT_RowId", extractUrlEncodedPK(resource.getPrimaryKeys(), x.getProperties()));
-        return filteredCopy;
+      Map<String, Object> filteredCopy = new HashMap<>();
+      for(int i = 0; i < plan.getDisplayedColumnCount(); i++) {
+        String column = plan.getDisplayedColumn(i);
+        Object value = batchValues.get(i) != null ? batchValues.get(i).get(r) : plan.transform(i, properties.get(column));
+        filteredCopy.put(column, value);
       }
-    ).collect(Collectors.toList());
+      // add a row identifier
+      filteredCopy.put("DT_RowId", plan.encodeKey(properties));
+      results.add(filteredCopy);
+    }
+    return results;
+  }
+  
+  /**
+   * Applies the batch transformers of the rendered columns to the provided page of rows, passing each transformer the
+   * values of its column for all rows at once.
+   *
+   * @param plan     render plan of the resource the rows belong to
+   * @param rows     page of rows to transform
+   * @param executor executor used to transform the columns in parallel when enabled for the resource, may be null to
+   *                 always transform the columns sequentially
+   * @return the transformed values indexed by rendered column, with null elements for the columns without a batch
+   * transformer
+   * @throws IllegalStateException if a transformer did not return a value for each row
+   */
+  public static List<List<String>> applyBatchTransformers(RenderPlan plan, List<DatabaseEntry> rows, Executor executor) {
+    List<List<String>> results = new ArrayList<>(Collections.nCopies(plan.getDisplayedColumnCount(), null));
+    if(!plan.hasBatchTransformers() || rows.isEmpty()) {
+      for(int i = 0; i < results.size(); i++) {
+        if(plan.getBatchTransformer(i) != null) {
+          results.set(i, Collections.emptyList());
+        }
+      }
+      return results;
+    }
+    
+    if(executor == null || !plan.isParallelBatchColumns()) {
+      for(int i = 0; i < results.size(); i++) {
+        if(plan.getBatchTransformer(i) != null) {
+          results.set(i, applyBatchTransformer(plan, i, rows));
+        }
+      }
+      return results;
+    }
+    
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for(int i = 0; i < results.size(); i++) {
+      if(plan.getBatchTransformer(i) != null) {
+        int column = i;
+        futures.add(CompletableFuture.runAsync(() -> results.set(column, applyBatchTransformer(plan, column, rows)), executor));
+      }
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch(CompletionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if(e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+    return results;
+  }
+  
+  private static List<String> applyBatchTransformer(RenderPlan plan, int index, List<DatabaseEntry> rows) {
+    String column = plan.getDisplayedColumn(index);
+    List<Object> values = new ArrayList<>(rows.size());
+    for(DatabaseEntry row : rows) {
+      values.add(row.getProperties().get(column));
+    }
+    List<String> transformed = plan.getBatchTransformer(index).apply(values);
+    if(transformed == null || transformed.size() != rows.size()) {
+      throw new IllegalStateException("Batch transformer of column " + column + " returned "
+          + (transformed == null ? "no" : transformed.size()) + " values for " + rows.size() + " rows");
+    }
+    return transformed;
   }
   
   /**
@@ -70,14 +137,26 @@ public class DataPresentationHelper {
       if(i > 0) {
         sb.append("/");
       }
-      String columnName = primaryKeyColumns.get(i);
-      String objectValue = String.valueOf(properties.get(columnName));
-      try {
-        sb.append(URLEncoder.encode(objectValue, "UTF-8"));
-      } catch(UnsupportedEncodingException e) {
-        logger.error("Unsupported encoding exception", e);
-      }
+      sb.append(urlEncode(properties.get(primaryKeyColumns.get(i))));
     }
     return sb.toString();
   }
+  
+  /**
+   * URL encodes a single key value. Integer values are appended as is, as these never require encoding.
+   *
+   * @param value key value
+   * @return the URL encoded string representation of the value
+   */
+  static String urlEncode(Object value) {
+    if(value instanceof Integer || value instanceof Long || value instanceof Short) {
+      return value.toString();
+    }
+    try {
+      return URLEncoder.encode(String.valueOf(value), "UTF-8");
+    } catch(UnsupportedEncodingException e) {
+      logger.error("Unsupported encoding exception", e);
+      return "";
+    }
+  }
 }
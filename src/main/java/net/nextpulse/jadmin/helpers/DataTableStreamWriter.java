@@ -0,0 +1,155 @@
+package net.nextpulse.jadmin.helpers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dao.DatabaseEntry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Writes the DataTables JSON response of a list page while its rows are being retrieved, rather than building the full
+ * response in memory first. The response holds the same fields as {@link net.nextpulse.jadmin.views.DataTableResponse},
+ * with the rows restricted to the columns of the list page as done by
+ * {@link DataPresentationHelper#transformDatabaseResults}. Resources with batch column transformers require the
+ * complete page before rendering, these are written using {@link #writeRows(List, Executor)} instead. The number of
+ * records is written after the rows, so the rows can be sent while the entries are still being counted.
+ *
+ * @author yholkamp
+ */
+public class DataTableStreamWriter {
+  /**
+   * Used to serialize the column values, configured like the Gson instance used for the other JSON responses.
+   */
+  private static final Gson gson = new GsonBuilder().serializeNulls().create();
+  
+  private final JsonWriter writer;
+  private final RenderPlan plan;
+  private int rowCount = 0;
+  private DatabaseEntry lastEntry;
+  
+  /**
+   * @param resource resource the rows belong to
+   * @param out      writer to send the response to
+   */
+  public DataTableStreamWriter(Resource resource, Writer out) {
+    this.plan = resource.getRenderPlan();
+    this.writer = new JsonWriter(out);
+    writer.setSerializeNulls(true);
+  }
+  
+  /**
+   * Writes the start of the response, must be called before any row is written.
+   *
+   * @param draw security token sent in the request
+   * @throws IOException if the response could not be written
+   */
+  public void begin(int draw) throws IOException {
+    writer.beginObject();
+    writer.name("draw").value(draw);
+    writer.name("data").beginArray();
+  }
+  
+  /**
+   * Writes a single row, including only the list page columns and a row identifier.
+   *
+   * @param entry row to write
+   * @throws IOException if the response could not be written
+   */
+  public void writeRow(DatabaseEntry entry) throws IOException {
+    writeRow(entry, null, 0);
+  }
+  
+  /**
+   * Writes a complete page of rows, applying the batch transformers of the list page columns before writing them.
+   *
+   * @param entries  rows to write
+   * @param executor executor used to transform the columns in parallel when enabled for the resource, may be null
+   * @throws IOException if the response could not be written
+   */
+  public void writeRows(List<DatabaseEntry> entries, Executor executor) throws IOException {
+    List<List<String>> batchValues = DataPresentationHelper.applyBatchTransformers(plan, entries, executor);
+    for(int r = 0; r < entries.size(); r++) {
+      writeRow(entries.get(r), batchValues, r);
+    }
+  }
+  
+  private void writeRow(DatabaseEntry entry, List<List<String>> batchValues, int rowIndex) throws IOException {
+    Map<String, Object> properties = entry.getProperties();
+    writer.beginObject();
+    for(int i = 0; i < plan.getDisplayedColumnCount(); i++) {
+      String column = plan.getDisplayedColumn(i);
+      writer.name(column);
+      if(batchValues != null && batchValues.get(i) != null) {
+        writeValue(batchValues.get(i).get(rowIndex));
+      } else {
+        writeValue(plan.transform(i, properties.get(column)));
+      }
+    }
+    writer.name("DT_RowId").value(plan.encodeKey(properties));
+    writer.endObject();
+    rowCount++;
+    lastEntry = entry;
+  }
+  
+  /**
+   * Completes and flushes the response.
+   *
+   * @param recordsFiltered  total number of records to report
+   * @param recordsEstimated true if the total is an estimate
+   * @param recordsUnknown   true if the total was not determined
+   * @param cursor           optional keyset cursor pointing after the last row
+   * @throws IOException if the response could not be written
+   */
+  public void end(int recordsFiltered, boolean recordsEstimated, boolean recordsUnknown, String cursor) throws IOException {
+    writer.endArray();
+    writer.name("recordsFiltered").value(recordsFiltered);
+    writer.name("recordsEstimated").value(recordsEstimated);
+    writer.name("recordsUnknown").value(recordsUnknown);
+    writer.name("error").nullValue();
+    writer.name("cursor").value(cursor);
+    writer.endObject();
+    writer.flush();
+  }
+  
+  /**
+   * Completes and flushes the response after the entries could not be retrieved or counted, reporting the error after
+   * the rows that were already written.
+   *
+   * @param error message to show to the user
+   * @throws IOException if the response could not be written
+   */
+  public void fail(String error) throws IOException {
+    writer.endArray();
+    writer.name("error").value(error);
+    writer.endObject();
+    writer.flush();
+  }
+  
+  private void writeValue(Object value) throws IOException {
+    if(value == null) {
+      writer.nullValue();
+    } else {
+      gson.toJson(value, value.getClass(), writer);
+    }
+  }
+  
+  /**
+   * @return number of rows written so far
+   */
+  public int getRowCount() {
+    return rowCount;
+  }
+  
+  /**
+   * @return the last row written or null if no rows were written
+   */
+  public DatabaseEntry getLastEntry() {
+    return lastEntry;
+  }
+}
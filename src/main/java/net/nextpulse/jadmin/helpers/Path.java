@@ -19,5 +19,6 @@ public class Path {
     public static final String WILDCARD = "/*";
     public static final String LIST_ROWS = "/:table";
     public static final String LIST_ROWS_JSON = "/:table/json";
+    public static final String LIST_OPTIONS_JSON = "/:table/options";
   }
 }
@@ -0,0 +1,42 @@
+package net.nextpulse.jadmin.helpers;
+
+import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dao.DataAccessException;
+import net.nextpulse.jadmin.dsl.BatchColumnValueTransformer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Batch transformer showing a label of the referenced resource instead of the raw key of a foreign key column.
+ *
+ * @author yholkamp
+ */
+public class ReferenceLabelTransformer implements BatchColumnValueTransformer {
+  private static final Logger logger = LogManager.getLogger();
+  
+  private final Resource referencedResource;
+  private final String labelColumn;
+  
+  /**
+   * @param referencedResource resource referenced by the column
+   * @param labelColumn        column of the referenced resource to show
+   */
+  public ReferenceLabelTransformer(Resource referencedResource, String labelColumn) {
+    this.referencedResource = referencedResource;
+    this.labelColumn = labelColumn;
+  }
+  
+  @Override
+  public List<String> apply(List<Object> values) {
+    try {
+      return referencedResource.getReferenceLabels().resolve(labelColumn, values);
+    } catch(DataAccessException e) {
+      // fall back to the raw keys rather than failing the list page
+      logger.error("Could not retrieve the labels of {}", referencedResource.getTableName(), e);
+      return values.stream().map(value -> value == null ? null : value.toString()).collect(Collectors.toList());
+    }
+  }
+}
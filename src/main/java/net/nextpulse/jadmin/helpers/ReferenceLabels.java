@@ -0,0 +1,174 @@
+package net.nextpulse.jadmin.helpers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dao.DataAccessException;
+import net.nextpulse.jadmin.dao.DatabaseEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the keys of a resource to labels shown by the columns of other resources referencing it, and searches the
+ * labels to offer the entries of the resource as options on the forms of those resources. Labels are retrieved in a
+ * single query per page, both the labels and the recent search results are kept in small caches, which are cleared
+ * whenever the resource is changed through JAdmin.
+ *
+ * @author yholkamp
+ */
+public class ReferenceLabels {
+  private static final int MAXIMUM_SIZE = 1000;
+  private static final long EXPIRE_AFTER_MINUTES = 5;
+  private static final int MAXIMUM_SEARCHES = 200;
+  /**
+   * Maximum number of options returned by a search.
+   */
+  public static final int OPTION_LIMIT = 20;
+  
+  private final Resource resource;
+  /**
+   * Cached labels keyed by the label column, holding the labels keyed by the string representation of the key.
+   */
+  private final ConcurrentMap<String, Cache<String, String>> caches = new ConcurrentHashMap<>();
+  /**
+   * Label columns shown by reference columns and typeahead fields of other resources, the only columns that may be
+   * searched.
+   */
+  private final Set<String> labelColumns = ConcurrentHashMap.newKeySet();
+  /**
+   * Recent search results keyed by the label column and the prefix.
+   */
+  private final Cache<Tuple2<String, String>, List<Tuple2<String, String>>> searches = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_SEARCHES)
+      .expireAfterWrite(EXPIRE_AFTER_MINUTES, TimeUnit.MINUTES)
+      .build();
+  
+  /**
+   * @param resource resource referenced by the labeled columns
+   */
+  public ReferenceLabels(Resource resource) {
+    this.resource = resource;
+  }
+  
+  /**
+   * Resolves the provided keys to the values of the label column, retrieving the labels that are not cached yet with a
+   * single call to {@link net.nextpulse.jadmin.dao.AbstractDAO#selectByKeys}.
+   *
+   * @param labelColumn column of the resource holding the labels
+   * @param keys        key values, may contain duplicates and null values
+   * @return the label of each key, the key itself for keys that could not be found and null for null keys
+   * @throws DataAccessException if the labels could not be retrieved
+   */
+  public List<String> resolve(String labelColumn, List<Object> keys) throws DataAccessException {
+    String keyColumn = getKeyColumn();
+    Cache<String, String> cache = caches.computeIfAbsent(labelColumn, column -> CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .expireAfterWrite(EXPIRE_AFTER_MINUTES, TimeUnit.MINUTES)
+        .build());
+    
+    Set<String> requested = keysOf(keys);
+    Map<String, String> labels = new HashMap<>(cache.getAllPresent(requested));
+    Set<String> missing = Sets.difference(requested, labels.keySet()).immutableCopy();
+    if(!missing.isEmpty()) {
+      for(DatabaseEntry entry : resource.getDao().selectByKeys(missing)) {
+        Object key = entry.getProperties().get(keyColumn);
+        Object label = entry.getProperties().get(labelColumn);
+        if(key != null && label != null) {
+          cache.put(key.toString(), label.toString());
+          labels.put(key.toString(), label.toString());
+        }
+      }
+    }
+    
+    List<String> results = new ArrayList<>(keys.size());
+    for(Object key : keys) {
+      results.add(key == null ? null : labels.getOrDefault(key.toString(), key.toString()));
+    }
+    return results;
+  }
+  
+  /**
+   * Registers a column shown as label by a column or typeahead field of another resource, allowing it to be searched.
+   *
+   * @param labelColumn column of the resource holding the labels
+   */
+  public void addLabelColumn(String labelColumn) {
+    labelColumns.add(labelColumn);
+  }
+  
+  /**
+   * @param labelColumn column of the resource
+   * @return true if the column is shown as label by another resource, see {@link #addLabelColumn(String)}
+   */
+  public boolean isLabelColumn(String labelColumn) {
+    return labelColumns.contains(labelColumn);
+  }
+  
+  /**
+   * Searches the entries of which the label starts with the provided prefix, ordered by label.
+   *
+   * @param labelColumn column of the resource holding the labels
+   * @param prefix      prefix to search for, may be empty
+   * @return up to {@link #OPTION_LIMIT} tuples of (key, label)
+   * @throws DataAccessException if the entries could not be retrieved
+   */
+  public List<Tuple2<String, String>> search(String labelColumn, String prefix) throws DataAccessException {
+    Tuple2<String, String> cacheKey = new Tuple2<>(labelColumn, prefix);
+    List<Tuple2<String, String>> options = searches.getIfPresent(cacheKey);
+    if(options == null) {
+      String keyColumn = getKeyColumn();
+      options = new ArrayList<>();
+      for(DatabaseEntry entry : resource.getDao().selectByPrefix(labelColumn, prefix, OPTION_LIMIT)) {
+        Object key = entry.getProperties().get(keyColumn);
+        Object label = entry.getProperties().get(labelColumn);
+        options.add(new Tuple2<>(String.valueOf(key), String.valueOf(label)));
+      }
+      options = Collections.unmodifiableList(options);
+      searches.put(cacheKey, options);
+    }
+    return options;
+  }
+  
+  /**
+   * Removes all cached labels and search results, must be called after the resource was changed.
+   */
+  public void invalidate() {
+    caches.values().forEach(Cache::invalidateAll);
+    searches.invalidateAll();
+  }
+  
+  /**
+   * Materializes the resource if it was registered lazily and returns its key column.
+   *
+   * @return name of the single key column
+   * @throws DataAccessException if the resource does not have a single key column
+   */
+  private String getKeyColumn() throws DataAccessException {
+    resource.materialize();
+    List<String> keyColumns = resource.getPrimaryKeys();
+    if(keyColumns.size() != 1) {
+      throw new DataAccessException("Resource " + resource.getTableName() + " must have a single key column to be referenced");
+    }
+    return keyColumns.get(0);
+  }
+  
+  private static Set<String> keysOf(List<Object> keys) {
+    Set<String> result = new LinkedHashSet<>();
+    for(Object key : keys) {
+      if(key != null) {
+        result.add(key.toString());
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,160 @@
+package net.nextpulse.jadmin.helpers;
+
+import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dsl.BatchColumnValueTransformer;
+import net.nextpulse.jadmin.dsl.ColumnValueTransformer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the list page settings of a resource, with the column definitions, transformers and key
+ * columns resolved up front. Plans are compiled when JAdmin is initialized and may be shared between request threads
+ * without locking, see {@link Resource#getRenderPlan()}.
+ *
+ * @author yholkamp
+ */
+public final class RenderPlan {
+  
+  private final List<String> indexColumns;
+  private final String[] displayedColumns;
+  private final ColumnValueTransformer[] transformers;
+  private final BatchColumnValueTransformer[] batchTransformers;
+  private final boolean hasBatchTransformers;
+  private final boolean parallelBatchColumns;
+  private final String[] keyColumns;
+  private final List<String> keyColumnList;
+  private final Set<String> projection;
+  
+  /**
+   * Compiles the plan for the current configuration of the provided resource.
+   *
+   * @param resource resource to compile
+   */
+  public RenderPlan(Resource resource) {
+    this.indexColumns = Collections.unmodifiableList(new ArrayList<>(resource.getIndexColumns()));
+    
+    // only columns with a definition are rendered
+    List<String> displayed = new ArrayList<>();
+    List<ColumnValueTransformer> displayedTransformers = new ArrayList<>();
+    List<BatchColumnValueTransformer> displayedBatchTransformers = new ArrayList<>();
+    for(String column : indexColumns) {
+      Optional<ColumnDefinition> columnDefinition = resource.findColumnDefinitionByName(column);
+      if(columnDefinition.isPresent()) {
+        displayed.add(column);
+        displayedTransformers.add(columnDefinition.get().getColumnValueTransformer());
+        displayedBatchTransformers.add(columnDefinition.get().getBatchColumnValueTransformer());
+      }
+    }
+    this.displayedColumns = displayed.toArray(new String[0]);
+    this.transformers = displayedTransformers.toArray(new ColumnValueTransformer[0]);
+    this.batchTransformers = displayedBatchTransformers.toArray(new BatchColumnValueTransformer[0]);
+    this.hasBatchTransformers = displayedBatchTransformers.stream().anyMatch(Objects::nonNull);
+    this.parallelBatchColumns = resource.isParallelBatchColumns();
+    
+    this.keyColumnList = Collections.unmodifiableList(new ArrayList<>(resource.getPrimaryKeys()));
+    this.keyColumns = keyColumnList.toArray(new String[0]);
+    
+    Set<String> columns = new LinkedHashSet<>(indexColumns);
+    columns.addAll(keyColumnList);
+    this.projection = Collections.unmodifiableSet(columns);
+  }
+  
+  /**
+   * @return all columns configured for the list page, in the order of the table columns
+   */
+  public List<String> getIndexColumns() {
+    return indexColumns;
+  }
+  
+  /**
+   * @return number of columns rendered on the list page
+   */
+  public int getDisplayedColumnCount() {
+    return displayedColumns.length;
+  }
+  
+  /**
+   * @param index zero based index of a rendered column
+   * @return name of the rendered column
+   */
+  public String getDisplayedColumn(int index) {
+    return displayedColumns[index];
+  }
+  
+  /**
+   * Applies the column value transformer of a rendered column, if any.
+   *
+   * @param index zero based index of a rendered column
+   * @param value value retrieved from the data store
+   * @return the value to present
+   */
+  public Object transform(int index, Object value) {
+    ColumnValueTransformer transformer = transformers[index];
+    return transformer != null ? transformer.apply(value) : value;
+  }
+  
+  /**
+   * @param index zero based index of a rendered column
+   * @return the batch transformer of the rendered column or null if the column is transformed per value
+   */
+  public BatchColumnValueTransformer getBatchTransformer(int index) {
+    return batchTransformers[index];
+  }
+  
+  /**
+   * @return true if any of the rendered columns uses a batch transformer, requiring all rows of a page before rendering
+   */
+  public boolean hasBatchTransformers() {
+    return hasBatchTransformers;
+  }
+  
+  /**
+   * @return true if the batch transformers of different columns may run in parallel
+   */
+  public boolean isParallelBatchColumns() {
+    return parallelBatchColumns;
+  }
+  
+  /**
+   * @return the primary key columns of the resource
+   */
+  public List<String> getKeyColumns() {
+    return keyColumnList;
+  }
+  
+  /**
+   * @return the columns to retrieve for the list page: the index columns followed by the primary key columns
+   */
+  public Set<String> getProjection() {
+    return projection;
+  }
+  
+  /**
+   * Creates the URL encoded key identifying the row with the provided properties, see
+   * {@link DataPresentationHelper#extractUrlEncodedPK(List, Map)}.
+   *
+   * @param properties properties of the row
+   * @return a URL encoded sequence of primary keys, separated by a forward slash
+   */
+  public String encodeKey(Map<String, Object> properties) {
+    if(keyColumns.length == 1) {
+      return DataPresentationHelper.urlEncode(properties.get(keyColumns[0]));
+    }
+    StringBuilder sb = new StringBuilder(keyColumns.length * 16);
+    for(int i = 0; i < keyColumns.length; i++) {
+      if(i > 0) {
+        sb.append('/');
+      }
+      sb.append(DataPresentationHelper.urlEncode(properties.get(keyColumns[i])));
+    }
+    return sb.toString();
+  }
+}
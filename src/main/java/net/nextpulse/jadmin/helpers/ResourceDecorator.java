@@ -56,6 +56,20 @@ public class ResourceDecorator implements BiConsumer<Resource, ResourceSchemaPro
     resource.getFormPage().add(new FormButtons());
   }
 
+  /**
+   * Decorates the provided resource with information provided by the DBMS, failing if the columns could not be
+   * retrieved.
+   *
+   * @param resource       object to decorate
+   * @param schemaProvider class that provides schema info for this resource.
+   * @throws DataAccessException if the column definitions could not be retrieved
+   */
+  public void decorate(Resource resource, ResourceSchemaProvider schemaProvider) throws DataAccessException {
+    logger.trace("Decorating {}", resource.getTableName());
+    resource.setColumnDefinitions(schemaProvider.getColumnDefinitions());
+    createDefaultResourceFormPages(resource);
+  }
+
   /**
    * Decorates the provided resourceSchemaProvider with information provided by the DBMS.
    *
@@ -0,0 +1,146 @@
+package net.nextpulse.jadmin.helpers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of encoded list page responses, stored outside of the heap in direct buffers. The cached body starts after the
+ * draw token of the DataTables response, so a single entry serves every request for the same page regardless of its
+ * token. Entries are evicted least recently used first once their total size exceeds the byte budget.
+ * <p>
+ * Each resource has a generation that is incremented by {@link #invalidate(String)}. Entries are stored under the
+ * generation seen before the page was retrieved, so pages retrieved while the resource was changed are never served.
+ *
+ * @author yholkamp
+ */
+public class ResponseCache {
+  
+  /**
+   * Start of a response written with draw token 0, see {@link DataTableStreamWriter#begin(int)}.
+   */
+  private static final byte[] EMPTY_DRAW_PREFIX = "{\"draw\":0".getBytes(StandardCharsets.UTF_8);
+  
+  private final Cache<String, ByteBuffer> cache;
+  private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+  
+  /**
+   * @param maximumBytes maximum total size of the cached responses
+   * @param timeToLive   maximum age of a cached response, bounding how long changes made outside of JAdmin go unnoticed
+   */
+  public ResponseCache(long maximumBytes, Duration timeToLive) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maximumBytes)
+        .weigher((String key, ByteBuffer body) -> body.capacity())
+        .expireAfterWrite(timeToLive.toNanos(), TimeUnit.NANOSECONDS)
+        .recordStats()
+        .build();
+  }
+  
+  /**
+   * @param resource name of the resource
+   * @return the current generation of the resource, to be passed to {@link #get} and {@link #put}
+   */
+  public long getGeneration(String resource) {
+    return generations.computeIfAbsent(resource, r -> new AtomicLong()).get();
+  }
+  
+  /**
+   * @param resource   name of the resource
+   * @param generation generation of the resource obtained before retrieving the page
+   * @param page       description of the requested page
+   * @return the cached body or null if the page is not cached
+   */
+  public ByteBuffer get(String resource, long generation, String page) {
+    ByteBuffer body = cache.getIfPresent(key(resource, generation, page));
+    return body == null ? null : body.duplicate();
+  }
+  
+  /**
+   * Caches a response written with draw token 0.
+   *
+   * @param resource   name of the resource
+   * @param generation generation of the resource obtained before retrieving the page
+   * @param page       description of the requested page
+   * @param response   complete response, written with draw token 0
+   * @return the body to pass to {@link #write(ByteBuffer, int, OutputStream)}
+   */
+  public ByteBuffer put(String resource, long generation, String page, byte[] response) {
+    for(int i = 0; i < EMPTY_DRAW_PREFIX.length; i++) {
+      if(response.length <= i || response[i] != EMPTY_DRAW_PREFIX[i]) {
+        throw new IllegalArgumentException("Response was not written with draw token 0");
+      }
+    }
+    ByteBuffer body = ByteBuffer.allocateDirect(response.length - EMPTY_DRAW_PREFIX.length);
+    body.put(response, EMPTY_DRAW_PREFIX.length, body.capacity());
+    body.flip();
+    if(generation == getGeneration(resource)) {
+      cache.put(key(resource, generation, page), body);
+    }
+    return body.duplicate();
+  }
+  
+  /**
+   * Discards the cached pages of the resource.
+   *
+   * @param resource name of the resource
+   */
+  public void invalidate(String resource) {
+    generations.computeIfAbsent(resource, r -> new AtomicLong()).incrementAndGet();
+  }
+  
+  /**
+   * Writes the response consisting of the draw token and the cached body, copying the body to the stream in chunks
+   * without decoding it.
+   *
+   * @param body body returned by {@link #get} or {@link #put}
+   * @param draw security token sent in the request
+   * @param out  stream to write to
+   * @throws IOException if the response could not be written
+   */
+  public static void write(ByteBuffer body, int draw, OutputStream out) throws IOException {
+    out.write(("{\"draw\":" + draw).getBytes(StandardCharsets.UTF_8));
+    WritableByteChannel channel = Channels.newChannel(out);
+    while(body.hasRemaining()) {
+      channel.write(body);
+    }
+  }
+  
+  /**
+   * @return ratio of requests answered from the cache, 0 if the cache was never used
+   */
+  public double getHitRatio() {
+    CacheStats stats = cache.stats();
+    return stats.requestCount() == 0 ? 0 : stats.hitRate();
+  }
+  
+  /**
+   * @return number of requests answered from the cache
+   */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+  
+  /**
+   * @return number of requests for pages that were not cached
+   */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+  
+  private static String key(String resource, long generation, String page) {
+    return resource + '\u0000' + generation + '\u0000' + page;
+  }
+}
@@ -1,5 +1,7 @@
 package net.nextpulse.jadmin.helpers;
 
+import java.util.Objects;
+
 public class Tuple2<L, R> {
   private final L left;
   private final R right;
@@ -16,4 +18,21 @@ public class Tuple2<L, R> {
   public R getRight() {
     return right;
   }
-}
\ No newline at end of file
+
+  @Override
+  public boolean equals(Object o) {
+    if(this == o) {
+      return true;
+    }
+    if(o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    Tuple2<?, ?> tuple2 = (Tuple2<?, ?>) o;
+    return Objects.equals(left, tuple2.left) && Objects.equals(right, tuple2.right);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(left, right);
+  }
+}
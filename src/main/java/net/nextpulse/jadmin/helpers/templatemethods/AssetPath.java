@@ -0,0 +1,65 @@
+package net.nextpulse.jadmin.helpers.templatemethods;
+
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateMethodModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.utility.DeepUnwrap;
+import net.nextpulse.jadmin.StaticFileServer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Freemarker method that returns the fingerprinted path of a static file, i.e. asset("favicon.ico"), or of a bundle of
+ * static files in the same directory, i.e. asset("css", ["bootstrap.min.css", "style.css"]).
+ *
+ * @author yholkamp
+ */
+public class AssetPath implements TemplateMethodModelEx {
+  private final StaticFileServer fileServer;
+  
+  /**
+   * @param fileServer file server serving the fingerprinted files
+   */
+  public AssetPath(StaticFileServer fileServer) {
+    this.fileServer = fileServer;
+  }
+  
+  /**
+   * @param arguments either the path of a file relative to the public directory, or a directory and a list of files in
+   *                  that directory
+   * @return the request path of the fingerprinted file or bundle
+   * @throws TemplateModelException if the arguments are invalid or refer to a file that does not exist
+   */
+  @Override
+  public Object exec(List arguments) throws TemplateModelException {
+    try {
+      if(arguments.size() == 1) {
+        return new SimpleScalar(fileServer.assetPath(unwrapString(arguments.get(0))));
+      }
+      if(arguments.size() == 2) {
+        Object files = DeepUnwrap.unwrap((TemplateModel) arguments.get(1));
+        if(!(files instanceof List)) {
+          throw new TemplateModelException("The files to bundle should be a sequence.");
+        }
+        List<String> fileNames = new ArrayList<>();
+        for(Object file : (List<?>) files) {
+          fileNames.add(String.valueOf(file));
+        }
+        return new SimpleScalar(fileServer.bundlePath(unwrapString(arguments.get(0)), fileNames));
+      }
+    } catch(IllegalArgumentException e) {
+      throw new TemplateModelException(e.getMessage(), e);
+    }
+    throw new TemplateModelException("Either a file or a directory and a sequence of files should be provided.");
+  }
+  
+  private String unwrapString(Object argument) throws TemplateModelException {
+    Object value = DeepUnwrap.unwrap((TemplateModel) argument);
+    if(!(value instanceof String)) {
+      throw new TemplateModelException("The path should be a string.");
+    }
+    return (String) value;
+  }
+}
@@ -3,6 +3,7 @@ package net.nextpulse.jadmin.schema;
 import net.nextpulse.jadmin.ColumnDefinition;
 import net.nextpulse.jadmin.ColumnType;
 import net.nextpulse.jadmin.dao.DataAccessException;
+import net.nextpulse.jadmin.dao.ValueCodecs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -11,8 +12,11 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -26,15 +30,32 @@ public class GenericSQLSchemaProvider implements ResourceSchemaProvider {
   private static final Logger logger = LogManager.getLogger();
   private static final String COLUMN_NAME = "COLUMN_NAME";
   private static final String TYPE_NAME = "TYPE_NAME";
+  private static final String DATA_TYPE = "DATA_TYPE";
+  private static final String FKCOLUMN_NAME = "FKCOLUMN_NAME";
+  private static final String PKTABLE_NAME = "PKTABLE_NAME";
 
   private final DataSource dataSource;
   private final String tableName;
+  /**
+   * Schema shared by the resources of the data source, null to retrieve the schema of this table separately.
+   */
+  private final SchemaCatalog schemaCatalog;
   private List<ColumnDefinition> keyColumns = null;
   private List<ColumnDefinition> columnDefinitions = null;
 
   public GenericSQLSchemaProvider(DataSource dataSource, String tableName) {
+    this(dataSource, tableName, null);
+  }
+
+  /**
+   * @param dataSource    data source holding the table
+   * @param tableName     name of the table
+   * @param schemaCatalog schema shared by the resources of the data source, may be null
+   */
+  public GenericSQLSchemaProvider(DataSource dataSource, String tableName, SchemaCatalog schemaCatalog) {
     this.dataSource = dataSource;
     this.tableName = tableName;
+    this.schemaCatalog = schemaCatalog;
   }
 
   @Override
@@ -50,6 +71,18 @@ public class GenericSQLSchemaProvider implements ResourceSchemaProvider {
   public List<ColumnDefinition> getColumnDefinitions() throws DataAccessException {
     logger.trace("Retrieving column definitions for {}", tableName);
 
+    // use the shared schema if the table is part of it
+    if(columnDefinitions == null && schemaCatalog != null) {
+      Optional<List<SchemaCatalog.ColumnSchema>> columns = schemaCatalog.getColumns(tableName);
+      if(columns.isPresent()) {
+        columnDefinitions = columns.get().stream()
+            .map(column -> createColumnDefinition(column.getName(), column.getTypeName(), column.getDataType(), column.isKeyColumn(), column.getReferencedTable()))
+            .collect(Collectors.toList());
+      } else {
+        logger.warn("Table {} was not found in the schema catalog, retrieving its columns separately", tableName);
+      }
+    }
+
     // only retrieve the definitions if we haven't already done so
     if(columnDefinitions == null) {
       columnDefinitions = new ArrayList<>();
@@ -63,19 +96,19 @@ public class GenericSQLSchemaProvider implements ResourceSchemaProvider {
           primaryKeys.add(columnName);
         }
 
+        // find the tables referenced by foreign keys
+        Map<String, String> referencedTables = new HashMap<>();
+        ResultSet importedKeysResultSet = conn.getMetaData().getImportedKeys(conn.getCatalog(), conn.getSchema(), tableName.toLowerCase());
+        while(importedKeysResultSet.next()) {
+          referencedTables.put(importedKeysResultSet.getString(FKCOLUMN_NAME), importedKeysResultSet.getString(PKTABLE_NAME));
+        }
+
         // iterate over all columns and mark the primary key columns as such
         ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), conn.getSchema(), tableName.toLowerCase(), "%");
         while(rs.next()) {
-          ColumnDefinition columnDefinition = new ColumnDefinition();
           String columnName = rs.getString(COLUMN_NAME);
-          String typeName = rs.getString(TYPE_NAME).toLowerCase();
-          columnDefinition.setName(columnName);
-          ColumnType columnType = sqlTypeToColumnType(typeName);
-          columnDefinition.setType(columnType);
-          columnDefinition.setKeyColumn(primaryKeys.contains(columnName));
-          
-          // TODO: check the IS_NULLABLE field & set constraints accordingly
-          columnDefinitions.add(columnDefinition);
+          columnDefinitions.add(createColumnDefinition(columnName, rs.getString(TYPE_NAME), rs.getInt(DATA_TYPE),
+              primaryKeys.contains(columnName), referencedTables.get(columnName)));
         }
       } catch(SQLException e) {
         throw new DataAccessException(e);
@@ -85,6 +118,29 @@ public class GenericSQLSchemaProvider implements ResourceSchemaProvider {
     return columnDefinitions;
   }
 
+  /**
+   * Creates the definition of a single column.
+   *
+   * @param columnName      name of the column
+   * @param sqlTypeName     type name returned by the DBMS
+   * @param sqlType         SQL type from {@link java.sql.Types}
+   * @param keyColumn       true if the column is part of the primary key
+   * @param referencedTable table referenced through a foreign key, may be null
+   * @return the new column definition
+   */
+  private ColumnDefinition createColumnDefinition(String columnName, String sqlTypeName, int sqlType, boolean keyColumn, String referencedTable) {
+    String typeName = sqlTypeName.toLowerCase();
+    ColumnType columnType = sqlTypeToColumnType(typeName);
+    ColumnDefinition columnDefinition = new ColumnDefinition();
+    columnDefinition.setName(columnName);
+    columnDefinition.setType(columnType);
+    columnDefinition.setValueCodec(ValueCodecs.forSqlType(sqlType, typeName, columnType));
+    columnDefinition.setKeyColumn(keyColumn);
+    columnDefinition.setReferencedTable(referencedTable);
+    // TODO: check the IS_NULLABLE field & set constraints accordingly
+    return columnDefinition;
+  }
+
   /**
    * Converts a SQL type to one of the input types supported by JAdmin.
    *
@@ -0,0 +1,460 @@
+package net.nextpulse.jadmin.schema;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import net.nextpulse.jadmin.dao.DataAccessException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Schema information of all tables of a DataSource, shared by the {@link GenericSQLSchemaProvider} instances of the
+ * resources using that DataSource. Rather than querying the metadata of each table separately, the columns of all
+ * tables are retrieved with a single metadata query per schema, running in parallel when multiple schemas are used.
+ * Primary and foreign keys are retrieved in bulk as well when the JDBC driver supports this, falling back to per-table
+ * queries otherwise.
+ * <p>
+ * Optionally the schema is stored in a snapshot file, which is used instead of the key queries on the next start when
+ * the schema fingerprint is unchanged. By default the fingerprint is computed from the columns of all tables, a custom
+ * fingerprint such as the version of the latest schema migration allows skipping the metadata queries entirely.
+ *
+ * @author yholkamp
+ */
+public class SchemaCatalog {
+  private static final Logger logger = LogManager.getLogger();
+  private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+  private static final int MAX_THREADS = 4;
+
+  private final DataSource dataSource;
+  private List<String> schemas;
+  private Path snapshotFile;
+  private Fingerprint fingerprint;
+  /**
+   * Tables keyed by lower case name, null until the catalog is loaded.
+   */
+  private Map<String, TableSchema> tables;
+  private String currentFingerprint;
+  /**
+   * True if the tables changed since the snapshot was last read or written.
+   */
+  private boolean modified = false;
+
+  /**
+   * @param dataSource data source to retrieve the schema from
+   */
+  public SchemaCatalog(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  /**
+   * Sets the schemas to retrieve the tables from, defaulting to the current schema of the connection. Must be invoked
+   * before the catalog is used.
+   *
+   * @param schemas names of the schemas, the tables of earlier schemas take precedence over equally named tables
+   */
+  public synchronized void setSchemas(String... schemas) {
+    checkNotLoaded();
+    this.schemas = Arrays.asList(schemas);
+  }
+
+  /**
+   * Enables the schema snapshot, which is read when the catalog is first used and written by {@link #saveSnapshot()}.
+   * Must be invoked before the catalog is used.
+   *
+   * @param snapshotFile file to store the snapshot in
+   */
+  public synchronized void setSnapshotFile(Path snapshotFile) {
+    checkNotLoaded();
+    this.snapshotFile = snapshotFile;
+  }
+
+  /**
+   * Sets a custom fingerprint identifying the version of the schema, i.e. the version of the latest schema migration.
+   * Must be invoked before the catalog is used.
+   *
+   * @param fingerprint function computing the fingerprint of the current schema
+   */
+  public synchronized void setFingerprint(Fingerprint fingerprint) {
+    checkNotLoaded();
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * Returns the columns of the provided table, retrieving the schema of all tables on the first call.
+   *
+   * @param tableName name of the table, case insensitive
+   * @return the columns of the table in ordinal order or an empty optional if the table was not found
+   * @throws DataAccessException if the schema could not be retrieved
+   */
+  public synchronized Optional<List<ColumnSchema>> getColumns(String tableName) throws DataAccessException {
+    if(tables == null) {
+      load();
+    }
+    TableSchema table = tables.get(tableName.toLowerCase(Locale.ROOT));
+    if(table == null) {
+      return Optional.empty();
+    }
+    if(!table.keysLoaded) {
+      loadKeys(table);
+    }
+    return Optional.of(Collections.unmodifiableList(table.columns));
+  }
+
+  /**
+   * Writes the snapshot file if a snapshot file was set and the schema was retrieved from the database.
+   *
+   * @throws IOException if the snapshot could not be written
+   */
+  public synchronized void saveSnapshot() throws IOException {
+    if(snapshotFile == null || tables == null || !modified) {
+      return;
+    }
+    logger.debug("Writing schema snapshot to {}", snapshotFile);
+    Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+    try(Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+      gson.toJson(new Snapshot(currentFingerprint, tables), writer);
+    }
+    Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    modified = false;
+  }
+
+  /**
+   * Retrieves the tables from the snapshot when its fingerprint matches, or from the database otherwise.
+   *
+   * @throws DataAccessException if the schema could not be retrieved
+   */
+  private void load() throws DataAccessException {
+    try(Connection conn = dataSource.getConnection()) {
+      Snapshot snapshot = snapshotFile != null ? readSnapshot() : null;
+      if(snapshot != null && fingerprint != null) {
+        currentFingerprint = fingerprint.compute(conn);
+        if(currentFingerprint.equals(snapshot.fingerprint)) {
+          logger.debug("Using schema snapshot {}", snapshotFile);
+          tables = snapshot.tables;
+          return;
+        }
+      }
+
+      List<String> sweptSchemas = schemas != null ? schemas : Collections.singletonList(conn.getSchema());
+      List<Map<String, TableSchema>> schemaTables = forEachSchema(conn, sweptSchemas, this::sweepColumns);
+      Map<String, TableSchema> sweptTables = new LinkedHashMap<>();
+      schemaTables.forEach(x -> x.forEach(sweptTables::putIfAbsent));
+      if(snapshotFile != null && fingerprint == null) {
+        currentFingerprint = fingerprintOf(sweptTables);
+        if(snapshot != null && currentFingerprint.equals(snapshot.fingerprint)) {
+          logger.debug("Using the keys of schema snapshot {}", snapshotFile);
+          tables = snapshot.tables;
+          return;
+        }
+      } else if(snapshotFile != null && currentFingerprint == null) {
+        currentFingerprint = fingerprint.compute(conn);
+      }
+      forEachSchema(conn, sweptSchemas, (schemaConn, schema) -> {
+        sweepKeys(schemaConn, schema, schemaTables.get(sweptSchemas.indexOf(schema)));
+        return null;
+      });
+      tables = sweptTables;
+      modified = true;
+    } catch(SQLException e) {
+      throw new DataAccessException(e);
+    }
+  }
+
+  /**
+   * Runs the provided task for each schema, in parallel using a separate connection per schema when multiple schemas
+   * are used.
+   *
+   * @param conn    open connection, used when only a single schema is used
+   * @param schemas schemas to run the task for
+   * @param task    task to run
+   * @param <T>     type of the task results
+   * @return the results of the task in the order of the schemas
+   * @throws SQLException if the task failed for any of the schemas
+   */
+  private <T> List<T> forEachSchema(Connection conn, List<String> schemas, SchemaTask<T> task) throws SQLException {
+    if(schemas.size() == 1) {
+      return Collections.singletonList(task.run(conn, schemas.get(0)));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(schemas.size(), MAX_THREADS));
+    try {
+      List<Future<T>> futures = new ArrayList<>();
+      for(String schema : schemas) {
+        futures.add(executor.submit(() -> {
+          try(Connection schemaConn = dataSource.getConnection()) {
+            return task.run(schemaConn, schema);
+          }
+        }));
+      }
+      List<T> results = new ArrayList<>();
+      for(Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while retrieving the schema", e);
+    } catch(ExecutionException e) {
+      if(e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      }
+      throw new SQLException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Retrieves the columns of all tables of a schema.
+   *
+   * @param conn   open connection
+   * @param schema schema to retrieve the tables of
+   * @return tables keyed by lower case name
+   * @throws SQLException if the metadata could not be retrieved
+   */
+  private Map<String, TableSchema> sweepColumns(Connection conn, String schema) throws SQLException {
+    logger.debug("Retrieving the columns of schema {}", schema);
+    Map<String, TableSchema> result = new LinkedHashMap<>();
+    try(ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), schema, "%", "%")) {
+      while(rs.next()) {
+        String tableName = rs.getString("TABLE_NAME");
+        TableSchema table = result.computeIfAbsent(tableName.toLowerCase(Locale.ROOT), x -> new TableSchema(schema, tableName));
+        table.columns.add(new ColumnSchema(rs.getString("COLUMN_NAME"), rs.getString("TYPE_NAME"), rs.getInt("DATA_TYPE")));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Retrieves the primary and foreign keys of all tables of a schema when the driver supports this, leaving the keys to
+   * be retrieved per table otherwise.
+   *
+   * @param conn   open connection
+   * @param schema schema to retrieve the keys of
+   * @param tables tables of the schema keyed by lower case name
+   */
+  private void sweepKeys(Connection conn, String schema, Map<String, TableSchema> tables) {
+    // drivers either reject a null table name or return the keys of all tables, some silently return nothing
+    try {
+      DatabaseMetaData metaData = conn.getMetaData();
+      try(ResultSet primaryKeys = metaData.getPrimaryKeys(conn.getCatalog(), schema, null);
+          ResultSet importedKeys = metaData.getImportedKeys(conn.getCatalog(), schema, null)) {
+        boolean found = false;
+        while(primaryKeys.next()) {
+          found = true;
+          findColumn(tables, primaryKeys.getString("TABLE_NAME"), primaryKeys.getString("COLUMN_NAME"))
+              .ifPresent(column -> column.keyColumn = true);
+        }
+        while(importedKeys.next()) {
+          String referencedTable = importedKeys.getString("PKTABLE_NAME");
+          findColumn(tables, importedKeys.getString("FKTABLE_NAME"), importedKeys.getString("FKCOLUMN_NAME"))
+              .ifPresent(column -> column.referencedTable = referencedTable);
+        }
+        if(found) {
+          tables.values().forEach(table -> table.keysLoaded = true);
+        }
+      }
+    } catch(SQLException | RuntimeException e) {
+      logger.debug("Driver does not support retrieving the keys of all tables at once, retrieving keys per table", e);
+    }
+  }
+
+  /**
+   * Retrieves the primary and foreign keys of a single table.
+   *
+   * @param table table to complete
+   * @throws DataAccessException if the metadata could not be retrieved
+   */
+  private void loadKeys(TableSchema table) throws DataAccessException {
+    logger.trace("Retrieving the keys of {}", table.name);
+    try(Connection conn = dataSource.getConnection()) {
+      DatabaseMetaData metaData = conn.getMetaData();
+      Map<String, TableSchema> single = Collections.singletonMap(table.name.toLowerCase(Locale.ROOT), table);
+      try(ResultSet rs = metaData.getPrimaryKeys(conn.getCatalog(), table.schema, table.name)) {
+        while(rs.next()) {
+          findColumn(single, table.name, rs.getString("COLUMN_NAME")).ifPresent(column -> column.keyColumn = true);
+        }
+      }
+      try(ResultSet rs = metaData.getImportedKeys(conn.getCatalog(), table.schema, table.name)) {
+        while(rs.next()) {
+          String referencedTable = rs.getString("PKTABLE_NAME");
+          findColumn(single, table.name, rs.getString("FKCOLUMN_NAME")).ifPresent(column -> column.referencedTable = referencedTable);
+        }
+      }
+    } catch(SQLException e) {
+      throw new DataAccessException(e);
+    }
+    table.keysLoaded = true;
+    modified = true;
+  }
+
+  private static Optional<ColumnSchema> findColumn(Map<String, TableSchema> tables, String tableName, String columnName) {
+    TableSchema table = tables.get(tableName.toLowerCase(Locale.ROOT));
+    if(table == null) {
+      return Optional.empty();
+    }
+    return table.columns.stream().filter(column -> column.name.equals(columnName)).findFirst();
+  }
+
+  /**
+   * Computes a fingerprint of the tables and their columns.
+   *
+   * @param tables tables to compute the fingerprint of
+   * @return hexadecimal fingerprint
+   */
+  static String fingerprintOf(Map<String, TableSchema> tables) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for(TableSchema table : tables.values()) {
+      hasher.putUnencodedChars(String.valueOf(table.schema)).putChar('.').putUnencodedChars(table.name).putChar('(');
+      for(ColumnSchema column : table.columns) {
+        hasher.putUnencodedChars(column.name).putChar(' ').putUnencodedChars(column.typeName).putInt(column.dataType).putChar(',');
+      }
+      hasher.putChar(')');
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * @return the snapshot or null if it does not exist or could not be read
+   */
+  private Snapshot readSnapshot() {
+    if(!Files.isRegularFile(snapshotFile)) {
+      return null;
+    }
+    try(Reader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+      Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+      return snapshot != null && snapshot.fingerprint != null && snapshot.tables != null ? snapshot : null;
+    } catch(IOException | JsonParseException e) {
+      logger.warn("Could not read schema snapshot {}, ignoring it", snapshotFile, e);
+      return null;
+    }
+  }
+
+  private void checkNotLoaded() {
+    if(tables != null) {
+      throw new IllegalStateException("The schema catalog was already loaded.");
+    }
+  }
+
+  /**
+   * Metadata task run for a single schema, see {@link #forEachSchema(Connection, List, SchemaTask)}.
+   */
+  @FunctionalInterface
+  private interface SchemaTask<T> {
+    T run(Connection conn, String schema) throws SQLException;
+  }
+
+  /**
+   * Function computing a fingerprint of the current schema.
+   */
+  @FunctionalInterface
+  public interface Fingerprint {
+    /**
+     * @param connection open connection to the database
+     * @return fingerprint identifying the current version of the schema
+     * @throws SQLException if the fingerprint could not be computed
+     */
+    String compute(Connection connection) throws SQLException;
+  }
+
+  /**
+   * Schema information of a single column.
+   */
+  public static class ColumnSchema {
+    private final String name;
+    private final String typeName;
+    private final int dataType;
+    private boolean keyColumn;
+    private String referencedTable;
+
+    ColumnSchema(String name, String typeName, int dataType) {
+      this.name = name;
+      this.typeName = typeName;
+      this.dataType = dataType;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return type name as reported by the database
+     */
+    public String getTypeName() {
+      return typeName;
+    }
+
+    /**
+     * @return SQL type from {@link java.sql.Types}
+     */
+    public int getDataType() {
+      return dataType;
+    }
+
+    public boolean isKeyColumn() {
+      return keyColumn;
+    }
+
+    /**
+     * @return name of the table referenced through a foreign key or null
+     */
+    public String getReferencedTable() {
+      return referencedTable;
+    }
+  }
+
+  /**
+   * Schema information of a single table.
+   */
+  static class TableSchema {
+    private final String schema;
+    private final String name;
+    private final List<ColumnSchema> columns = new ArrayList<>();
+    private boolean keysLoaded;
+
+    TableSchema(String schema, String name) {
+      this.schema = schema;
+      this.name = name;
+    }
+  }
+
+  /**
+   * Contents of the snapshot file.
+   */
+  private static class Snapshot {
+    private final String fingerprint;
+    private final Map<String, TableSchema> tables;
+
+    Snapshot(String fingerprint, Map<String, TableSchema> tables) {
+      this.fingerprint = fingerprint;
+      this.tables = tables;
+    }
+  }
+}
@@ -16,6 +16,14 @@ public class DataTableResponse {
    * Total records, after filtering (i.e. the total number of records after filtering has been applied - not just the number of records being returned for this page of data).
    */
   public int recordsFiltered;
+  /**
+   * True if recordsFiltered is an estimate rather than an exact count.
+   */
+  public boolean recordsEstimated;
+  /**
+   * True if the total number of records was not determined, recordsFiltered then only allows navigating to the next page.
+   */
+  public boolean recordsUnknown;
   /**
    * The data to be displayed in the table. This is an array of data source objects, one for each row, which will be used by DataTables. Note that this parameter's name can be changed using the ajax option's dataSrc property.
    */
@@ -24,6 +32,11 @@ public class DataTableResponse {
    * Optional: If an error occurs during the running of the server-side processing script, you can inform the user of this error by passing back the error message to be displayed using this parameter. Do not include if there is no error.
    */
   public String error;
+  /**
+   * Optional: encoded keyset cursor pointing after the last row of this page, which the client sends back when requesting
+   * the next page of a resource using keyset pagination.
+   */
+  public String cursor;
   
   /**
    * Success response constructor.
@@ -1,14 +1,46 @@
 $(function () {
+    // keeps track of the last page retrieved, allowing the server to continue after its last row (keyset pagination)
+    var pending = null;
+    var previous = null;
+    
     // set up the data table
     var dataTable = $('#listResource').DataTable({
         "processing": true,
         "serverSide": true,
-        "ajax": jsonUrl,
+        "ajax": {
+            "url": jsonUrl,
+            "data": function (data) {
+                var order = JSON.stringify(data.order);
+                if (previous && previous.cursor && previous.order === order && previous.length === data.length
+                    && previous.start + previous.length === data.start) {
+                    data.cursor = previous.cursor;
+                }
+                pending = {"start": data.start, "length": data.length, "order": order};
+            },
+            "dataSrc": function (json) {
+                if (pending) {
+                    pending.cursor = json.cursor;
+                    previous = pending;
+                    pending = null;
+                }
+                return json.data;
+            }
+        },
         "columns": columns,
         "dom": //"<'row'<'col-sm-6'l><'col-sm-6'f>>" +
         "<'row'<'col-sm-12'tr>>" +
         "<'row'<'col-sm-5'i><'col-sm-7'p>>",
         "language": dataTableLanguage,
+        "infoCallback": function (settings, start, end, max, total, pre) {
+            // the server may report an estimated or unknown total for large resources
+            var json = this.api().ajax.json();
+            if (!json || !(json.recordsEstimated || json.recordsUnknown)) {
+                return pre;
+            }
+            var info = this.api().page.info();
+            var template = json.recordsUnknown ? dataTableLanguage.infoUnknown : dataTableLanguage.infoEstimated;
+            return template.replace("_PAGE_", info.page + 1).replace("_PAGES_", info.pages).replace("_TOTAL_", total);
+        },
         "pageLength": count
     });
     
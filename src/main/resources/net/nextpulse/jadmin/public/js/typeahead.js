@@ -0,0 +1,68 @@
+$(function () {
+    // number of recent search results kept per field, avoiding repeated requests while typing and deleting
+    var cacheSize = 50;
+    // delay after the last key stroke before searching
+    var debounceMillis = 250;
+
+    $(".typeahead").each(function () {
+        var $container = $(this);
+        var $value = $container.find("input[type='hidden']");
+        var $input = $container.find("input[type='text']");
+        var $menu = $container.find(".dropdown-menu");
+        var url = $container.data("url");
+        var cache = {};
+        var cacheKeys = [];
+        var timer = null;
+        var latest = null;
+
+        function show(options) {
+            $menu.empty();
+            options.forEach(function (option) {
+                var $link = $("<a href='#'></a>").text(option.right).data("value", option.left);
+                $menu.append($("<li></li>").append($link));
+            });
+            $menu.toggle(options.length > 0);
+        }
+
+        function search(prefix) {
+            latest = prefix;
+            if (cache.hasOwnProperty(prefix)) {
+                show(cache[prefix]);
+                return;
+            }
+            $.getJSON(url, {"q": prefix}, function (options) {
+                cache[prefix] = options;
+                cacheKeys.push(prefix);
+                if (cacheKeys.length > cacheSize) {
+                    delete cache[cacheKeys.shift()];
+                }
+                // ignore responses to searches that were superseded while the request was pending
+                if (prefix === latest) {
+                    show(options);
+                }
+            });
+        }
+
+        $input.on("input", function () {
+            $value.val("");
+            clearTimeout(timer);
+            var prefix = $input.val();
+            timer = setTimeout(function () {
+                search(prefix);
+            }, debounceMillis);
+        });
+        $input.on("blur", function () {
+            // allow a click on an option to complete before hiding the menu
+            setTimeout(function () {
+                $menu.hide();
+            }, 200);
+        });
+        $menu.on("mousedown", "a", function (event) {
+            event.preventDefault();
+            var $link = $(this);
+            $value.val($link.data("value"));
+            $input.val($link.text());
+            $menu.hide();
+        });
+    });
+});
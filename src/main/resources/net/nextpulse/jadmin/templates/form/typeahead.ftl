@@ -0,0 +1,9 @@
+<#assign typeaheadValue = (object.properties[input.name])!"">
+<div class="form-group">
+    <label for="input-${input.name}" class="control-label col-sm-2">${ii("resources.${resource.tableName}.${input.name}")}</label>
+    <div class="col-sm-10 typeahead" data-url="${prefix}/${input.referencedResource.tableName}/options?label=${input.labelColumn?url}">
+        <input type="hidden" name="${input.name}" value="${typeaheadValue?is_number?then(typeaheadValue?c, typeaheadValue)}">
+        <input type="text" class="form-control" id="input-${input.name}" autocomplete="off" value="${input.getLabel(typeaheadValue)?html}">
+        <ul class="dropdown-menu"></ul>
+    </div>
+</div>
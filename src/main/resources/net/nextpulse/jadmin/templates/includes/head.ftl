@@ -7,11 +7,6 @@
 <meta name="description" content="">
 <meta name="author" content="JAdmin">
 
-<link rel="icon" type="image/x-icon" href="${prefix}/favicon.ico">
+<link rel="icon" type="image/x-icon" href="${asset("favicon.ico")}">
 
-<link rel="stylesheet" href="${prefix}/css/bootstrap.css">
-<link rel="stylesheet" href="${prefix}/css/bootstrap-theme.css">
-<link rel="stylesheet" href="${prefix}/css/style.css">
-<#list cssIncludes as include>
-<link rel="stylesheet" href="${prefix}/css/${include}">
-</#list>
\ No newline at end of file
+<link rel="stylesheet" href="${asset("css", ["bootstrap.min.css", "bootstrap-theme.min.css", "style.css"] + cssIncludes)}">
\ No newline at end of file
@@ -1,5 +1 @@
-<script src="${prefix}/js/lib/jquery-3.1.0.min.js"></script>
-<script src="${prefix}/js/lib/bootstrap.js"></script>
-<#list jsIncludes as include>
-<script src="${prefix}/js/${include}"></script>
-</#list>
\ No newline at end of file
+<script src="${asset("js", ["lib/jquery-3.1.0.min.js", "lib/bootstrap.min.js"] + jsIncludes)}"></script>
\ No newline at end of file
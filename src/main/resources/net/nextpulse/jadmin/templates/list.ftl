@@ -1,4 +1,4 @@
-<@root.template jsIncludes=["lib/jquery-3.1.0.min.js", "lib/datatables.min.js", "list.js"] cssIncludes=["datatables.min.css"]>
+<@root.template jsIncludes=["lib/datatables.min.js", "list.js"] cssIncludes=["datatables.min.css"]>
 <div class="row">
     <h1>${ii("resources.${resource.tableName}")}</h1>
     <a href="${templateObject.prefix}/${resource.tableName}/new" class="btn btn-success">${i("view.button.add")}</a>
@@ -21,6 +21,8 @@
     var dataTableLanguage = {
         "infoFiltered": "",
         "info": "${i("view.table.info")?json_string}",
+        "infoEstimated": "${i("view.table.info_estimated")?json_string}",
+        "infoUnknown": "${i("view.table.info_unknown")?json_string}",
         "infoEmpty": "${i("view.table.info_empty")?json_string}",
         "processing": "${i("view.table.processing")?json_string}",
         "zeroRecords": "${i("view.table.zeroRecords")?json_string}",
@@ -0,0 +1,60 @@
+package integrationtests;
+
+import net.nextpulse.jadmin.schema.SchemaCatalog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import testhelpers.DatabaseTest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author yholkamp
+ */
+public class SchemaCatalogTest extends DatabaseTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void getColumns() throws Exception {
+    SchemaCatalog catalog = new SchemaCatalog(dataSource);
+
+    List<SchemaCatalog.ColumnSchema> locations = catalog.getColumns("locations").orElseThrow(AssertionError::new);
+    assertEquals(4, locations.size());
+    assertTrue(findColumn(locations, "id").isKeyColumn());
+    assertFalse(findColumn(locations, "name").isKeyColumn());
+
+    List<SchemaCatalog.ColumnSchema> compound = catalog.getColumns("compound_table").orElseThrow(AssertionError::new);
+    assertTrue(findColumn(compound, "second_id").isKeyColumn());
+    assertTrue("locations".equalsIgnoreCase(findColumn(compound, "location_id").getReferencedTable()));
+
+    assertEquals(Optional.empty(), catalog.getColumns("unknown_table"));
+  }
+
+  @Test
+  public void snapshot() throws Exception {
+    Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("schema.json");
+    SchemaCatalog catalog = new SchemaCatalog(dataSource);
+    catalog.setSnapshotFile(snapshotFile);
+    catalog.setFingerprint(connection -> "v1");
+    catalog.getColumns("locations");
+    catalog.saveSnapshot();
+    assertTrue(Files.exists(snapshotFile));
+
+    SchemaCatalog restored = new SchemaCatalog(dataSource);
+    restored.setSnapshotFile(snapshotFile);
+    restored.setFingerprint(connection -> "v1");
+    List<SchemaCatalog.ColumnSchema> locations = restored.getColumns("locations").orElseThrow(AssertionError::new);
+    assertTrue(findColumn(locations, "id").isKeyColumn());
+  }
+
+  private static SchemaCatalog.ColumnSchema findColumn(List<SchemaCatalog.ColumnSchema> columns, String name) {
+    return columns.stream().filter(x -> x.getName().equalsIgnoreCase(name)).findFirst().orElseThrow(AssertionError::new);
+  }
+}
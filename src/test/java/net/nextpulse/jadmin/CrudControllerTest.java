@@ -1,12 +1,42 @@
 package net.nextpulse.jadmin;
 
 import com.google.common.collect.ImmutableMap;
+import net.nextpulse.jadmin.dao.AbstractDAO;
+import net.nextpulse.jadmin.dao.DataAccessException;
+import net.nextpulse.jadmin.dao.DatabaseEntry;
+import net.nextpulse.jadmin.dao.EntryCallback;
+import net.nextpulse.jadmin.dao.PageQuery;
+import net.nextpulse.jadmin.dao.RowCount;
+import net.nextpulse.jadmin.exceptions.NotFoundException;
+import net.nextpulse.jadmin.helpers.ReferenceLabels;
+import net.nextpulse.jadmin.helpers.ResponseCache;
+import net.nextpulse.jadmin.helpers.Tuple2;
 import testhelpers.TestQueryParamsMap;
 import org.junit.Test;
 import spark.Request;
+import spark.Response;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -34,6 +64,181 @@ public class CrudControllerTest {
     assertEquals("newName", postEntry.getValues().get("string"));
   }
   
+  @Test
+  public void streamPage_concurrent() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Resource testResource = new Resource("tests");
+      AbstractDAO dao = mock(AbstractDAO.class);
+      testResource.setDao(dao);
+      PageQuery query = new PageQuery(0, 20, "string", true);
+      DatabaseEntry entry = DatabaseEntry.buildEmpty();
+      doAnswer(invocation -> {
+        invocation.<EntryCallback<RuntimeException>>getArgument(1).accept(entry);
+        return null;
+      }).when(dao).streamMultiple(eq(query), any());
+      when(dao.count(CountStrategy.EXACT, testResource.getCountThreshold())).thenReturn(RowCount.exact(42));
+      
+      List<DatabaseEntry> rows = new ArrayList<>();
+      RowCount rowCount = new CrudController("/admin", new HashMap<>(), executor).streamPage(testResource, query, rows::add);
+      assertEquals(Collections.singletonList(entry), rows);
+      assertEquals(42, rowCount.getValue());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  @Test(expected = DataAccessException.class)
+  public void streamPage_concurrentFailure() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Resource testResource = new Resource("tests");
+      AbstractDAO dao = mock(AbstractDAO.class);
+      testResource.setDao(dao);
+      PageQuery query = new PageQuery(0, 20, "string", true);
+      when(dao.count(CountStrategy.EXACT, testResource.getCountThreshold())).thenThrow(new DataAccessException("failed"));
+      
+      new CrudController("/admin", new HashMap<>(), executor).streamPage(testResource, query, entry -> {
+      });
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  @Test
+  public void streamPage_rowsBeforeCount() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Resource testResource = new Resource("tests");
+      AbstractDAO dao = mock(AbstractDAO.class);
+      testResource.setDao(dao);
+      PageQuery query = new PageQuery(0, 20, "string", true);
+      CountDownLatch rowPassed = new CountDownLatch(1);
+      // the count only completes once a row reached the callback
+      when(dao.count(CountStrategy.EXACT, testResource.getCountThreshold())).thenAnswer(invocation -> {
+        rowPassed.await(5, TimeUnit.SECONDS);
+        throw new DataAccessException("failed");
+      });
+      doAnswer(invocation -> {
+        invocation.<EntryCallback<RuntimeException>>getArgument(1).accept(DatabaseEntry.buildEmpty());
+        invocation.<EntryCallback<RuntimeException>>getArgument(1).accept(DatabaseEntry.buildEmpty());
+        return null;
+      }).when(dao).streamMultiple(eq(query), any());
+      
+      List<DatabaseEntry> rows = new ArrayList<>();
+      try {
+        new CrudController("/admin", new HashMap<>(), executor).streamPage(testResource, query, entry -> {
+          rows.add(entry);
+          rowPassed.countDown();
+        });
+        fail("Expected the failing count to be reported");
+      } catch(DataAccessException e) {
+        assertEquals("failed", e.getMessage());
+        assertEquals("Rows should be passed on without waiting for the count", 2, rows.size());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  @Test
+  public void streamPage_cancelsCountQuery() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Resource testResource = new Resource("tests");
+      AbstractDAO dao = mock(AbstractDAO.class);
+      testResource.setDao(dao);
+      PageQuery query = new PageQuery(0, 20, "string", true);
+      CountDownLatch countStarted = new CountDownLatch(1);
+      CountDownLatch countCancelled = new CountDownLatch(1);
+      when(dao.count(CountStrategy.EXACT, testResource.getCountThreshold())).thenAnswer(invocation -> {
+        countStarted.countDown();
+        // a query that only returns once cancelled, ignoring interrupts like a JDBC driver
+        boolean cancelled = false;
+        while(!cancelled) {
+          try {
+            cancelled = countCancelled.await(1, TimeUnit.SECONDS);
+          } catch(InterruptedException e) {
+            // keep waiting
+          }
+        }
+        throw new DataAccessException("cancelled");
+      });
+      doAnswer(invocation -> {
+        countCancelled.countDown();
+        return null;
+      }).when(dao).cancelCount(any());
+      doAnswer(invocation -> {
+        countStarted.await();
+        throw new DataAccessException("failed");
+      }).when(dao).streamMultiple(eq(query), any());
+      
+      try {
+        new CrudController("/admin", new HashMap<>(), executor).streamPage(testResource, query, entry -> {
+        });
+        fail("Expected the failing retrieval to be reported");
+      } catch(DataAccessException e) {
+        assertEquals("failed", e.getMessage());
+      }
+      verify(dao).cancelCount(any());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  @Test
+  public void listOptionsRoute_onlyLabelColumns() throws Exception {
+    Resource testResource = new Resource("users");
+    testResource.getColumnDefinitions().add(new ColumnDefinition("id", ColumnType.integer, true, false));
+    testResource.getColumnDefinitions().add(new ColumnDefinition("name", ColumnType.string));
+    testResource.getColumnDefinitions().add(new ColumnDefinition("password_hash", ColumnType.string));
+    AbstractDAO dao = mock(AbstractDAO.class);
+    when(dao.selectByPrefix("name", "a", ReferenceLabels.OPTION_LIMIT)).thenReturn(Collections.singletonList(
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "alice"))));
+    testResource.setDao(dao);
+    testResource.getReferenceLabels().addLabelColumn("name");
+    CrudController controller = new CrudController("/admin", new HashMap<>(), null);
+    
+    Request nameRequest = createMockRequest(testResource);
+    when(nameRequest.queryParams("label")).thenReturn("name");
+    when(nameRequest.queryParams("q")).thenReturn("a");
+    assertEquals(Collections.singletonList(new Tuple2<>("1", "alice")), controller.listOptionsRoute.handle(nameRequest, mock(Response.class)));
+    
+    Request hashRequest = createMockRequest(testResource);
+    when(hashRequest.queryParams("label")).thenReturn("password_hash");
+    try {
+      controller.listOptionsRoute.handle(hashRequest, mock(Response.class));
+      fail("Expected columns that are not shown as label to be rejected");
+    } catch(NotFoundException e) {
+      verify(dao, never()).selectByPrefix(eq("password_hash"), any(), anyInt());
+    }
+  }
+  
+  @Test
+  public void deleteRoute_invalidatesReferencingResources() throws Exception {
+    Resource users = new Resource("users");
+    users.getColumnDefinitions().add(new ColumnDefinition("id", ColumnType.integer, true, false));
+    users.setDao(mock(AbstractDAO.class));
+    Resource posts = new Resource("posts");
+    // foreign keys found in the schema metadata may use a different case
+    posts.getColumnDefinitions().add(new ColumnDefinition("author_id", ColumnType.integer).setReferencedTable("USERS"));
+    Resource tags = new Resource("tags");
+    Map<String, Resource> resources = new HashMap<>();
+    resources.put("users", users);
+    resources.put("posts", posts);
+    resources.put("tags", tags);
+    ResponseCache responseCache = new ResponseCache(1024, Duration.ofMinutes(1));
+    long postsGeneration = responseCache.getGeneration("posts");
+    long tagsGeneration = responseCache.getGeneration("tags");
+    
+    Request request = createMockRequest(users);
+    when(request.params(":ids")).thenReturn("1");
+    new CrudController("/admin", resources, null, responseCache).deleteRoute.handle(request, mock(Response.class));
+    
+    assertNotEquals(postsGeneration, responseCache.getGeneration("posts"));
+    assertEquals(tagsGeneration, responseCache.getGeneration("tags"));
+  }
+  
   private Request createMockRequest(Resource resource) {
     Request mockRequest = mock(Request.class);
     when(mockRequest.attribute("resourceSchemaProvider")).thenReturn(resource);
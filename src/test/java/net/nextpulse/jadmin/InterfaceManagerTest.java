@@ -0,0 +1,176 @@
+package net.nextpulse.jadmin;
+
+import freemarker.cache.TemplateLoader;
+import freemarker.template.Configuration;
+import net.nextpulse.jadmin.dao.AbstractDAO;
+import net.nextpulse.jadmin.dao.DataAccessException;
+import net.nextpulse.jadmin.helpers.Path;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author yholkamp
+ */
+public class InterfaceManagerTest {
+  
+  private InterfaceManager interfaceManager;
+  private int port;
+  
+  @After
+  public void tearDown() {
+    if(interfaceManager != null && interfaceManager.getSpark() != null) {
+      interfaceManager.stop();
+    }
+  }
+  
+  @Test
+  public void warmUp_parsesTemplates() throws Exception {
+    interfaceManager = new InterfaceManager(new HashMap<>());
+    Configuration configuration = interfaceManager.getFreemarkerConfiguration();
+    List<String> loaded = new ArrayList<>();
+    configuration.setTemplateLoader(new RecordingTemplateLoader(configuration.getTemplateLoader(), loaded));
+    interfaceManager.initialize("/admin", freePort());
+    interfaceManager.warmUp();
+    
+    int loadedDuringWarmUp = loaded.size();
+    assertTrue(loadedDuringWarmUp > 0);
+    configuration.getTemplate(Path.Template.LIST);
+    configuration.getTemplate(Path.Template.EDIT);
+    configuration.getTemplate("form/input.ftl");
+    assertEquals("Templates should have been parsed during the warm-up", loadedDuringWarmUp, loaded.size());
+  }
+  
+  @Test
+  public void warmUp_createsBundles() throws Exception {
+    interfaceManager = new InterfaceManager(new HashMap<>());
+    port = freePort();
+    interfaceManager.initialize("/admin", port);
+    interfaceManager.warmUp();
+    
+    // bundle paths as found in a page served by another instance
+    StaticFileServer otherInstance = new StaticFileServer("/admin");
+    String stylesheets = otherInstance.bundlePath("css", Arrays.asList("bootstrap.min.css", "bootstrap-theme.min.css", "style.css", "datatables.min.css"));
+    String scripts = otherInstance.bundlePath("js", Arrays.asList("lib/jquery-3.1.0.min.js", "lib/bootstrap.min.js", "lib/moment.min.js", "lib/pikaday.js", "typeahead.js", "edit.js"));
+    assertEquals(200, status(stylesheets));
+    assertEquals(200, status(scripts));
+  }
+  
+  @Test
+  public void readiness_checksDataStoresUntilReady() throws Exception {
+    AbstractDAO dao = mock(AbstractDAO.class);
+    when(dao.isAvailable()).thenReturn(false, true);
+    Resource resource = new Resource("users");
+    resource.setDao(dao);
+    start(resource);
+    
+    assertEquals(503, readinessStatus());
+    assertEquals(200, readinessStatus());
+    assertEquals(200, readinessStatus());
+    verify(dao, times(2)).isAvailable();
+  }
+  
+  @Test
+  public void readiness_materializesLazyResources() throws Exception {
+    AbstractDAO dao = mock(AbstractDAO.class);
+    when(dao.isAvailable()).thenReturn(true);
+    Resource resource = new Resource("users");
+    resource.setDao(dao);
+    AtomicInteger attempts = new AtomicInteger();
+    resource.setMaterializer(() -> {
+      // fails during the warm-up and the first readiness check
+      if(attempts.incrementAndGet() <= 2) {
+        throw new DataAccessException("unreachable");
+      }
+    });
+    start(resource);
+    
+    assertEquals("The warm-up should have attempted to materialize the resource", 1, attempts.get());
+    assertFalse(resource.isMaterialized());
+    assertEquals(503, readinessStatus());
+    assertEquals(200, readinessStatus());
+    assertTrue(resource.isMaterialized());
+  }
+  
+  private void start(Resource resource) throws IOException {
+    Map<String, Resource> resources = new HashMap<>();
+    resources.put(resource.getTableName(), resource);
+    interfaceManager = new InterfaceManager(resources);
+    interfaceManager.setReadinessPath("/ready");
+    port = freePort();
+    interfaceManager.initialize("/admin", port);
+    interfaceManager.warmUp();
+  }
+  
+  private int readinessStatus() throws IOException {
+    return status("/ready");
+  }
+  
+  private int status(String path) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+    try {
+      return connection.getResponseCode();
+    } finally {
+      connection.disconnect();
+    }
+  }
+  
+  private static int freePort() throws IOException {
+    try(ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+  
+  /**
+   * Records the names of the templates looked up through the wrapped loader.
+   */
+  private static class RecordingTemplateLoader implements TemplateLoader {
+    private final TemplateLoader delegate;
+    private final List<String> loaded;
+    
+    RecordingTemplateLoader(TemplateLoader delegate, List<String> loaded) {
+      this.delegate = delegate;
+      this.loaded = loaded;
+    }
+    
+    @Override
+    public Object findTemplateSource(String name) throws IOException {
+      loaded.add(name);
+      return delegate.findTemplateSource(name);
+    }
+    
+    @Override
+    public long getLastModified(Object templateSource) {
+      return delegate.getLastModified(templateSource);
+    }
+    
+    @Override
+    public Reader getReader(Object templateSource, String encoding) throws IOException {
+      return delegate.getReader(templateSource, encoding);
+    }
+    
+    @Override
+    public void closeTemplateSource(Object templateSource) throws IOException {
+      delegate.closeTemplateSource(templateSource);
+    }
+  }
+}
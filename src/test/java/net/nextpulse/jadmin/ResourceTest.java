@@ -0,0 +1,205 @@
+package net.nextpulse.jadmin;
+
+import com.google.common.collect.ImmutableList;
+import net.nextpulse.jadmin.dao.CountCachingDAO;
+import net.nextpulse.jadmin.dao.DataAccessException;
+import net.nextpulse.jadmin.dao.InMemoryDAO;
+import net.nextpulse.jadmin.elements.FormInputGroup;
+import net.nextpulse.jadmin.filters.Filters;
+import net.nextpulse.jadmin.schema.ResourceSchemaProvider;
+import org.junit.Test;
+import spark.Request;
+import spark.Response;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author yholkamp
+ */
+public class ResourceTest {
+  
+  @Test
+  public void materialize_once() throws Exception {
+    Resource resource = new Resource("tests");
+    AtomicInteger invocations = new AtomicInteger();
+    resource.setMaterializer(invocations::incrementAndGet);
+    assertFalse(resource.isMaterialized());
+    
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for(int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          resource.materialize();
+          return null;
+        }));
+      }
+      start.countDown();
+      for(Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    
+    assertEquals(1, invocations.get());
+    assertTrue(resource.isMaterialized());
+  }
+  
+  @Test
+  public void lazyResource_retryAfterSchemaFailure() throws Exception {
+    ResourceSchemaProvider schemaProvider = mock(ResourceSchemaProvider.class);
+    when(schemaProvider.getColumnDefinitions())
+        .thenThrow(new DataAccessException("database unavailable"))
+        .thenReturn(ImmutableList.of(
+            new ColumnDefinition("id", ColumnType.integer, true, false),
+            new ColumnDefinition("name", ColumnType.string)));
+    InMemoryDAO dao = new InMemoryDAO();
+    JAdmin jAdmin = new JAdmin();
+    jAdmin.lazyResource("tests", dao, schemaProvider, builder -> builder.countCache(Duration.ofMinutes(1)));
+    Resource resource = jAdmin.getResources().get("tests");
+    
+    try {
+      resource.materialize();
+      fail("Expected the materialization to fail");
+    } catch(DataAccessException e) {
+      assertFalse(resource.isMaterialized());
+      assertTrue(resource.getColumnDefinitions().isEmpty());
+      assertTrue(resource.getFormPage().isEmpty());
+      assertSame(dao, resource.getDao());
+    }
+    
+    resource.materialize();
+    assertTrue(resource.isMaterialized());
+    assertEquals(ImmutableList.of("id", "name"), resource.getIndexColumns());
+    assertEquals(2, resource.getFormPage().size());
+    assertEquals(1, ((FormInputGroup) resource.getFormPage().get(0)).getInputs().size());
+    assertTrue(resource.getDao() instanceof CountCachingDAO);
+    assertSame(dao, ((CountCachingDAO) resource.getDao()).getDelegate());
+  }
+  
+  @Test
+  public void lazyResource_retryAfterConfigurationFailure() throws Exception {
+    ResourceSchemaProvider schemaProvider = mock(ResourceSchemaProvider.class);
+    when(schemaProvider.getColumnDefinitions()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("id", ColumnType.integer, true, false),
+        new ColumnDefinition("name", ColumnType.string)));
+    InMemoryDAO dao = new InMemoryDAO();
+    AtomicInteger attempts = new AtomicInteger();
+    JAdmin jAdmin = new JAdmin();
+    jAdmin.lazyResource("tests", dao, schemaProvider, builder -> {
+      builder.countCache(Duration.ofMinutes(1));
+      if(attempts.incrementAndGet() == 1) {
+        throw new IllegalStateException("configuration failed");
+      }
+    });
+    Resource resource = jAdmin.getResources().get("tests");
+    
+    try {
+      resource.materialize();
+      fail("Expected the materialization to fail");
+    } catch(IllegalStateException e) {
+      assertFalse(resource.isMaterialized());
+    }
+    
+    resource.materialize();
+    assertEquals(ImmutableList.of("id", "name"), resource.getIndexColumns());
+    assertEquals(2, resource.getFormPage().size());
+    assertSame(dao, ((CountCachingDAO) resource.getDao()).getDelegate());
+  }
+  
+  @Test
+  public void lazyResource_materializedOnFirstRequest() throws Exception {
+    ResourceSchemaProvider schemaProvider = mock(ResourceSchemaProvider.class);
+    when(schemaProvider.getColumnDefinitions()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("id", ColumnType.integer, true, false),
+        new ColumnDefinition("name", ColumnType.string)));
+    JAdmin jAdmin = new JAdmin();
+    jAdmin.lazyResource("tests", new InMemoryDAO(), schemaProvider, builder -> builder.indexConfig(index -> index.column("name")));
+    
+    Resource resource = jAdmin.getResources().get("tests");
+    assertFalse(resource.isMaterialized());
+    verifyZeroInteractions(schemaProvider);
+    
+    Request request = mock(Request.class);
+    when(request.params(":table")).thenReturn("tests");
+    Filters.validateTable(jAdmin.getResources()).handle(request, mock(Response.class));
+    
+    assertTrue(resource.isMaterialized());
+    assertEquals(ImmutableList.of("name"), resource.getRenderPlan().getIndexColumns());
+    verify(request).attribute("resourceSchemaProvider", resource);
+  }
+  
+  @Test(timeout = 10000)
+  public void lazyResource_concurrentMutualReferences() throws Exception {
+    ResourceSchemaProvider usersSchema = mock(ResourceSchemaProvider.class);
+    ColumnDefinition favoritePost = new ColumnDefinition("favorite_post_id", ColumnType.integer);
+    favoritePost.setReferencedTable("posts");
+    when(usersSchema.getColumnDefinitions()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("id", ColumnType.integer, true, false),
+        new ColumnDefinition("name", ColumnType.string),
+        favoritePost));
+    ResourceSchemaProvider postsSchema = mock(ResourceSchemaProvider.class);
+    ColumnDefinition author = new ColumnDefinition("author_id", ColumnType.integer);
+    author.setReferencedTable("users");
+    when(postsSchema.getColumnDefinitions()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("id", ColumnType.integer, true, false),
+        new ColumnDefinition("title", ColumnType.string),
+        author));
+    
+    // both materializers hold the monitor of their own resource before resolving the reference to the other
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    JAdmin jAdmin = new JAdmin();
+    jAdmin.lazyResource("users", new InMemoryDAO(), usersSchema, builder -> {
+      await(barrier);
+      builder.indexConfig(index -> index.reference("favorite_post_id", "title"));
+    });
+    jAdmin.lazyResource("posts", new InMemoryDAO(), postsSchema, builder -> {
+      await(barrier);
+      builder.indexConfig(index -> index.reference("author_id", "name"));
+    });
+    Resource users = jAdmin.getResources().get("users");
+    Resource posts = jAdmin.getResources().get("posts");
+    
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> materializeUsers = executor.submit(() -> {
+        users.materialize();
+        return null;
+      });
+      Future<?> materializePosts = executor.submit(() -> {
+        posts.materialize();
+        return null;
+      });
+      materializeUsers.get(5, TimeUnit.SECONDS);
+      materializePosts.get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+    
+    assertTrue(users.getReferenceLabels().isLabelColumn("name"));
+    assertTrue(posts.getReferenceLabels().isLabelColumn("title"));
+  }
+  
+  private static void await(CyclicBarrier barrier) {
+    try {
+      barrier.await(5, TimeUnit.SECONDS);
+    } catch(Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -3,14 +3,26 @@ package net.nextpulse.jadmin;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * @author yholkamp
@@ -36,4 +48,133 @@ public class StaticFileServerTest {
     assertFalse(fileServer.matchesStaticPath("/barbar/../../css/style.css"));
   }
   
+  @Test
+  public void servesGzippedFileWithEtag() throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    when(request.getPathInfo()).thenReturn("/barbar/css/bootstrap.css");
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+    when(response.getOutputStream()).thenReturn(new CapturingOutputStream(body));
+    
+    assertTrue(fileServer.consume(request, response));
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).setHeader(eq("ETag"), anyString());
+    verify(response).setHeader(eq("Cache-Control"), anyString());
+    verify(response).flushBuffer();
+    
+    byte[] expected = readFully(getClass().getResourceAsStream("/net/nextpulse/jadmin/public/css/bootstrap.css"));
+    assertArrayEquals(expected, readFully(new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))));
+  }
+  
+  @Test
+  public void answersMatchingEtagWithNotModified() throws Exception {
+    when(request.getPathInfo()).thenReturn("/barbar/css/style.css");
+    when(response.getOutputStream()).thenReturn(new CapturingOutputStream(new ByteArrayOutputStream()));
+    fileServer.consume(request, response);
+    ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq("ETag"), etag.capture());
+    
+    HttpServletResponse revalidation = mock(HttpServletResponse.class);
+    when(request.getHeader("If-None-Match")).thenReturn("\"other\", W/" + etag.getValue());
+    assertTrue(fileServer.consume(request, revalidation));
+    verify(revalidation).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(revalidation, never()).getOutputStream();
+  }
+  
+  @Test
+  public void ignoresOtherPaths() throws Exception {
+    when(request.getPathInfo()).thenReturn("/barbar/users");
+    assertFalse(fileServer.consume(request, response));
+    
+    when(request.getPathInfo()).thenReturn("/barbar/css/missing.css");
+    assertFalse(fileServer.consume(request, response));
+    verifyZeroInteractions(response);
+  }
+  
+  @Test
+  public void servesFingerprintedFileAsImmutable() throws Exception {
+    String path = fileServer.assetPath("css/style.css");
+    assertTrue(path.matches("/barbar/css/style\\.[0-9a-f]{16}\\.css"));
+    
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    when(request.getPathInfo()).thenReturn(path);
+    when(response.getOutputStream()).thenReturn(new CapturingOutputStream(body));
+    assertTrue(fileServer.consume(request, response));
+    verify(response).setHeader("Cache-Control", "public, max-age=31536000, immutable");
+    assertArrayEquals(readFully(getClass().getResourceAsStream("/net/nextpulse/jadmin/public/css/style.css")), body.toByteArray());
+  }
+  
+  @Test
+  public void bundlesFilesInOrder() throws Exception {
+    String path = fileServer.bundlePath("js", Arrays.asList("edit.js", "typeahead.js", "edit.js"));
+    assertTrue(path.startsWith("/barbar/js/bundle."));
+    assertEquals(path, fileServer.bundlePath("js", Arrays.asList("edit.js", "typeahead.js")));
+    assertEquals(fileServer.assetPath("js/edit.js"), fileServer.bundlePath("js", Collections.singletonList("edit.js")));
+    
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    when(request.getPathInfo()).thenReturn(path);
+    when(response.getOutputStream()).thenReturn(new CapturingOutputStream(body));
+    assertTrue(fileServer.consume(request, response));
+    String edit = new String(readFully(getClass().getResourceAsStream("/net/nextpulse/jadmin/public/js/edit.js")), StandardCharsets.UTF_8);
+    String typeahead = new String(readFully(getClass().getResourceAsStream("/net/nextpulse/jadmin/public/js/typeahead.js")), StandardCharsets.UTF_8);
+    assertEquals(edit + "\n;\n" + typeahead, body.toString("UTF-8"));
+  }
+  
+  @Test
+  public void bundleOmitsSourceMapsAndCharsetRules() throws Exception {
+    String path = fileServer.bundlePath("css", Arrays.asList("bootstrap.min.css", "pikaday.css"));
+    
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    when(request.getPathInfo()).thenReturn(path);
+    when(response.getOutputStream()).thenReturn(new CapturingOutputStream(body));
+    assertTrue(fileServer.consume(request, response));
+    String bundle = body.toString("UTF-8");
+    assertFalse("Source maps no longer match the bundle", bundle.contains("sourceMappingURL"));
+    assertFalse("@charset is only valid at the start of the bundle", bundle.contains("@charset"));
+    assertTrue(bundle.contains(".pika-single"));
+  }
+  
+  @Test
+  public void stripForBundle() {
+    byte[] script = "var a = 1;\n//# sourceMappingURL=a.js.map\n".getBytes(StandardCharsets.UTF_8);
+    assertEquals("var a = 1;\n", new String(StaticFileServer.stripForBundle(script, true), StandardCharsets.UTF_8));
+    byte[] stylesheet = "\uFEFF@charset \"UTF-8\";\n.a{}\n".getBytes(StandardCharsets.UTF_8);
+    assertEquals(".a{}\n", new String(StaticFileServer.stripForBundle(stylesheet, false), StandardCharsets.UTF_8));
+    assertSame("The first file keeps its @charset rule", stylesheet, StaticFileServer.stripForBundle(stylesheet, true));
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsBundleOfMixedTypes() {
+    fileServer.bundlePath("css", Arrays.asList("style.css", "../js/edit.js"));
+  }
+  
+  private static byte[] readFully(InputStream in) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for(int read; (read = in.read(buffer)) != -1; ) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+  
+  private static class CapturingOutputStream extends ServletOutputStream {
+    private final ByteArrayOutputStream target;
+    
+    private CapturingOutputStream(ByteArrayOutputStream target) {
+      this.target = target;
+    }
+    
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+    
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+    }
+    
+    @Override
+    public void write(int b) {
+      target.write(b);
+    }
+  }
 }
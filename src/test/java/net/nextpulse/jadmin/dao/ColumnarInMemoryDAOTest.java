@@ -0,0 +1,114 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.ColumnType;
+import net.nextpulse.jadmin.FormPostEntry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yholkamp
+ */
+public class ColumnarInMemoryDAOTest {
+  private ColumnarInMemoryDAO dao;
+  
+  @Before
+  public void setUp() throws Exception {
+    dao = new ColumnarInMemoryDAO(Arrays.asList(
+        new ColumnDefinition("id", ColumnType.integer, true, false),
+        new ColumnDefinition("name", ColumnType.string),
+        new ColumnDefinition("active", ColumnType.bool),
+        new ColumnDefinition("created", ColumnType.datetime)));
+    insert("1", "charlie", "true", "2019-01-01 10:00:00");
+    insert("2", "alpha", "false", "");
+    insert("3", "bravo", "", "2018-06-01T08:30");
+  }
+  
+  private void insert(String id, String name, String active, String created) throws DataAccessException {
+    FormPostEntry entry = new FormPostEntry();
+    entry.addKeyValue("id", id);
+    entry.addValue("name", name);
+    entry.addValue("active", active);
+    entry.addValue("created", created);
+    dao.insert(entry);
+  }
+  
+  private List<Object> column(List<DatabaseEntry> entries, String column) {
+    return entries.stream().map(e -> e.getProperties().get(column)).collect(Collectors.toList());
+  }
+  
+  @Test
+  public void selectOne() throws Exception {
+    DatabaseEntry entry = dao.selectOne("1").orElseThrow(AssertionError::new);
+    assertEquals(1L, entry.getProperties().get("id"));
+    assertEquals("charlie", entry.getProperties().get("name"));
+    assertEquals(true, entry.getProperties().get("active"));
+    assertEquals(Timestamp.valueOf("2019-01-01 10:00:00"), entry.getProperties().get("created"));
+    assertNull("Empty values of non-string columns should be stored as null", dao.selectOne(2L).get().getProperties().get("created"));
+    assertFalse(dao.selectOne("4").isPresent());
+  }
+  
+  @Test
+  public void selectMultipleSorted() throws Exception {
+    assertEquals(Arrays.asList("alpha", "bravo", "charlie"), column(dao.selectMultiple(0, 10, "name", true), "name"));
+    assertEquals(Arrays.asList("charlie", "bravo"), column(dao.selectMultiple(0, 2, "name", false), "name"));
+    assertEquals("Nulls should sort first", Arrays.asList(2L, 3L, 1L), column(dao.selectMultiple(0, 10, "created", true), "id"));
+    assertEquals(Arrays.asList(3L, 2L, 1L), column(dao.selectMultiple(0, 10, "active", true), "id"));
+    assertEquals("Should keep insertion order without sort column", Arrays.asList(2L, 3L), column(dao.selectMultiple(1, 10, null, true), "id"));
+  }
+  
+  @Test
+  public void updateAndDelete() throws Exception {
+    FormPostEntry entry = new FormPostEntry();
+    entry.addKeyValue("id", "2");
+    entry.addValue("name", "zulu");
+    dao.update(entry);
+    assertEquals(Arrays.asList("bravo", "charlie", "zulu"), column(dao.selectMultiple(0, 10, "name", true), "name"));
+    
+    dao.delete("3");
+    assertEquals(2, dao.count());
+    assertEquals(Arrays.asList(1L, 2L), column(dao.selectMultiple(0, 10, null, true), "id"));
+  }
+  
+  @Test
+  public void compactsDeletedRows() throws Exception {
+    for(int i = 4; i <= 100; i++) {
+      insert(String.valueOf(i), "name" + i, "true", "");
+    }
+    for(int i = 1; i <= 90; i++) {
+      dao.delete(String.valueOf(i));
+    }
+    assertEquals(10, dao.count());
+    assertEquals(Arrays.asList(91L, 92L), column(dao.selectMultiple(0, 2, null, true), "id"));
+    assertTrue(dao.selectOne("100").isPresent());
+    assertEquals("name100", dao.selectMultiple(0, 1, "name", true).get(0).getProperties().get("name"));
+    // the last compaction took place before the final deletes
+    assertTrue("Values of deleted rows should be dropped from the dictionary", dao.dictionarySize("name") < 20);
+    
+    insert("101", "name0", "true", "");
+    assertEquals(Arrays.asList("name0", "name100", "name91"), column(dao.selectMultiple(0, 3, "name", true), "name"));
+  }
+  
+  @Test
+  public void sort() {
+    int[] rows = {5, 3, 9, 1, 7, 2, 8};
+    ColumnarInMemoryDAO.sort(rows, Integer::compare);
+    assertArrayEquals(new int[]{1, 2, 3, 5, 7, 8, 9}, rows);
+  }
+  
+  @Test(expected = DataAccessException.class)
+  public void rejectsInvalidValues() throws Exception {
+    insert("x", "name", "true", "");
+  }
+}
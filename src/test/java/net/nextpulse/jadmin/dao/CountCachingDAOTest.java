@@ -0,0 +1,94 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.FormPostEntry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author yholkamp
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CountCachingDAOTest {
+  
+  @Mock
+  private AbstractDAO delegate;
+  private CountCachingDAO dao;
+  
+  @Before
+  public void setUp() throws Exception {
+    dao = new CountCachingDAO(delegate, Duration.ofMinutes(5));
+  }
+  
+  @Test
+  public void count_cached() throws Exception {
+    when(delegate.count()).thenReturn(42);
+    
+    assertEquals(42, dao.count());
+    assertEquals(42, dao.count());
+    
+    verify(delegate, times(1)).count();
+    assertEquals(1, dao.getHitCount());
+    assertEquals(1, dao.getMissCount());
+    assertEquals(0.5, dao.getHitRatio(), 0.0001);
+  }
+  
+  @Test
+  public void count_adjustedByWrites() throws Exception {
+    when(delegate.count()).thenReturn(42);
+    dao.count();
+    
+    dao.insert(new FormPostEntry());
+    dao.insert(new FormPostEntry());
+    dao.delete("key");
+    
+    assertEquals("Writes should adjust the cached count", 43, dao.count());
+    verify(delegate, times(1)).count();
+  }
+  
+  @Test
+  public void count_notAdjustedByFailedDelete() throws Exception {
+    when(delegate.count()).thenReturn(42);
+    doThrow(new DataAccessException("missing")).when(delegate).delete("missing");
+    dao.count();
+    
+    try {
+      dao.delete("missing");
+      fail("Expected the failing delete to be reported");
+    } catch(DataAccessException e) {
+      assertEquals("Failed deletes should not adjust the cached count", 42, dao.count());
+    }
+    verify(delegate, times(1)).count();
+  }
+  
+  @Test
+  public void count_expired() throws Exception {
+    dao = new CountCachingDAO(delegate, Duration.ZERO);
+    when(delegate.count()).thenReturn(42, 43);
+    
+    assertEquals(42, dao.count());
+    assertEquals("Expired count should be retrieved again", 43, dao.count());
+    assertEquals(2, dao.getMissCount());
+  }
+  
+  @Test
+  public void invalidate() throws Exception {
+    when(delegate.count()).thenReturn(42, 50);
+    dao.count();
+    
+    dao.invalidate();
+    
+    assertEquals(50, dao.count());
+  }
+}
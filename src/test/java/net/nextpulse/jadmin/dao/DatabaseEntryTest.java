@@ -0,0 +1,45 @@
+package net.nextpulse.jadmin.dao;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yholkamp
+ */
+public class DatabaseEntryTest {
+  
+  private final ColumnIndex columns = new ColumnIndex("id", "NAME", "comment");
+  
+  @Test
+  public void arrayBackedProperties() throws Exception {
+    DatabaseEntry entry = DatabaseEntry.buildFrom(columns, new Object[]{7, "location7", null});
+    Map<String, Object> properties = entry.getProperties();
+    
+    assertEquals("location7", properties.get("name"));
+    assertEquals("location7", properties.get("NAME"));
+    assertTrue(properties.containsKey("comment"));
+    assertNull(properties.get("unknown"));
+    assertEquals(3, properties.size());
+  }
+  
+  @Test
+  public void arrayBackedProperties_update() throws Exception {
+    DatabaseEntry entry = DatabaseEntry.buildFrom(columns, new Object[]{7, "location7", null});
+    
+    entry.getProperties().put("Name", "renamed");
+    entry.getProperties().entrySet().iterator().next().setValue(8);
+    
+    assertEquals("renamed", entry.getProperties().get("name"));
+    assertEquals(8, entry.getProperties().get("id"));
+  }
+  
+  @Test(expected = UnsupportedOperationException.class)
+  public void arrayBackedProperties_unknownColumn() throws Exception {
+    DatabaseEntry.buildFrom(columns, new Object[]{7, "location7", null}).getProperties().put("unknown", 1);
+  }
+}
@@ -3,8 +3,10 @@ package net.nextpulse.jadmin.dao;
 import com.google.common.collect.ImmutableList;
 import net.nextpulse.jadmin.ColumnDefinition;
 import net.nextpulse.jadmin.ColumnType;
+import net.nextpulse.jadmin.CountStrategy;
 import net.nextpulse.jadmin.FormPostEntry;
 import net.nextpulse.jadmin.schema.ResourceSchemaProvider;
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -14,10 +16,24 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.List;
+import java.util.OptionalInt;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -33,6 +49,8 @@ public class GenericSQLDAOTest {
   @Mock
   private PreparedStatement mockPreparedStatement;
   @Mock
+  private ResultSet mockResultSet;
+  @Mock
   private ResourceSchemaProvider mockResourceProvider;
   
   private GenericSQLDAO dao;
@@ -58,12 +76,192 @@ public class GenericSQLDAOTest {
   
   @Test
   public void selectOne() throws Exception {
+  
+  }
+  
+  @Test
+  public void selectByKeys() throws Exception {
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    when(mockResourceProvider.getKeyColumns()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("key2_column", ColumnType.integer, true, false)));
+    
+    dao.selectByKeys(ImmutableList.of("1", "2", "3"));
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT * FROM tests WHERE key2_column IN (?, ?, ?)"));
+    verify(mockPreparedStatement).setInt(1, 1);
+    verify(mockPreparedStatement).setInt(3, 3);
+  }
+  
+  @Test
+  public void selectByPrefix() throws Exception {
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    when(mockResourceProvider.getKeyColumns()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("key2_column", ColumnType.integer, true, false)));
     
+    dao.selectByPrefix("key1_column", "50%_off!", 20);
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT key2_column,key1_column FROM tests WHERE key1_column LIKE ? ESCAPE '!' ORDER BY key1_column LIMIT ?"));
+    verify(mockPreparedStatement).setString(1, "50!%!_off!!%");
+    verify(mockPreparedStatement).setInt(2, 20);
   }
   
   @Test
   public void selectMultiple() throws Exception {
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    dao.selectMultiple(40, 20, "value_column", false);
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT * FROM tests ORDER BY value_column desc LIMIT ? OFFSET ?"));
+    verify(mockPreparedStatement).setLong(1, 20);
+    verify(mockPreparedStatement).setLong(2, 40);
+  }
+  
+  @Test
+  public void selectMultiple_projection() throws Exception {
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    PageQuery query = new PageQuery(0, 20, "key1_column", true)
+        .setColumns(ImmutableList.of("key1_column", "value_column", "unknown_column", "key1_column"));
+    dao.selectMultiple(query);
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT key1_column,value_column FROM tests ORDER BY key1_column asc LIMIT ? OFFSET ?"));
+  }
+  
+  @Test
+  public void selectMultiple_keysetCursor() throws Exception {
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    when(mockResourceProvider.getKeyColumns()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("key1_column", ColumnType.string, true, false),
+        new ColumnDefinition("key2_column", ColumnType.integer, true, false)));
+    
+    PageQuery query = new PageQuery(40, 20, "key2_column", true)
+        .setCursor(new KeysetCursor("42", ImmutableList.of("pk_123", "42")));
+    dao.selectMultiple(query);
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT * FROM tests WHERE key2_column >= ? AND (key2_column > ? OR (key2_column = ? AND key1_column > ?)) ORDER BY key2_column asc, key1_column asc LIMIT ?"));
+    verify(mockPreparedStatement, times(3)).setInt(anyInt(), eq(42));
+    verify(mockPreparedStatement).setString(4, "pk_123");
+    verify(mockPreparedStatement).setLong(5, 20);
+  }
+  
+  @Test
+  public void selectPage_windowFunction() throws Exception {
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+    when(metaData.getDatabaseMajorVersion()).thenReturn(11);
+    when(mockConnection.getMetaData()).thenReturn(metaData);
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    // the page is past the last row, requiring a separate count on the same connection
+    when(mockResultSet.next()).thenReturn(false, true);
+    when(mockResultSet.getInt(1)).thenReturn(41);
+    
+    Page page = dao.selectPage(new PageQuery(60, 20, "value_column", true), CountStrategy.EXACT, 100000);
+    assertTrue(page.getRows().isEmpty());
+    assertEquals(41, page.getRowCount().getValue());
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT tests.*, COUNT(*) OVER() AS jadmin_total_count FROM tests ORDER BY value_column asc LIMIT ? OFFSET ?"));
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT COUNT(*) FROM tests"));
+    verify(mockDataSource, times(1)).getConnection();
+  }
+  
+  @Test
+  public void selectPage_withoutWindowFunctions() throws Exception {
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    when(metaData.getDatabaseProductName()).thenReturn("SQLite");
+    when(metaData.getDatabaseMajorVersion()).thenReturn(3);
+    when(metaData.getDatabaseMinorVersion()).thenReturn(22);
+    when(mockConnection.getMetaData()).thenReturn(metaData);
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    when(mockResultSet.next()).thenReturn(false, true);
+    when(mockResultSet.getInt(1)).thenReturn(41);
+    
+    Page page = dao.selectPage(new PageQuery(0, 20, "value_column", true), CountStrategy.EXACT, 100000);
+    assertEquals(41, page.getRowCount().getValue());
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT * FROM tests ORDER BY value_column asc LIMIT ? OFFSET ?"));
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT COUNT(*) FROM tests"));
+    verify(mockDataSource, times(1)).getConnection();
+  }
+  
+  @Test
+  public void setValue_codecs() throws Exception {
+    ColumnDefinition idColumn = new ColumnDefinition("id", ColumnType.integer)
+        .setValueCodec(ValueCodecs.forSqlType(Types.BIGINT, "bigint", ColumnType.integer));
+    dao.setValue(mockPreparedStatement, 1, "9007199254740993", idColumn, "id");
+    verify(mockPreparedStatement).setLong(1, 9007199254740993L);
     
+    ColumnDefinition createdColumn = new ColumnDefinition("created_at", ColumnType.datetime);
+    dao.setValue(mockPreparedStatement, 2, "2019-03-01T14:30", createdColumn, "created_at");
+    verify(mockPreparedStatement).setTimestamp(2, Timestamp.valueOf("2019-03-01 14:30:00"));
+  }
+  
+  @Test(expected = DataAccessException.class)
+  public void setValue_invalidValue() throws Exception {
+    ColumnDefinition createdColumn = new ColumnDefinition("created_at", ColumnType.datetime);
+    dao.setValue(mockPreparedStatement, 1, "yesterday", createdColumn, "created_at");
+  }
+  
+  @Test
+  public void setValue_dateTimeSeparators() throws Exception {
+    ColumnDefinition createdColumn = new ColumnDefinition("created_at", ColumnType.datetime);
+    dao.setValue(mockPreparedStatement, 1, "2019-03-01 14:30:15", createdColumn, "created_at");
+    verify(mockPreparedStatement).setTimestamp(1, Timestamp.valueOf("2019-03-01 14:30:15"));
+    
+    for(String value : ImmutableList.of("2019-03-0114:30", "2019-03-01T 14:30", "2019-03-01 T14:30")) {
+      try {
+        dao.setValue(mockPreparedStatement, 2, value, createdColumn, "created_at");
+        fail("Expected " + value + " to be rejected");
+      } catch(DataAccessException expected) {
+        // expected
+      }
+    }
+  }
+  
+  @Test
+  public void count_thresholdStrategy() throws Exception {
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+    when(mockConnection.getMetaData()).thenReturn(metaData);
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    when(mockResultSet.next()).thenReturn(true);
+    when(mockResultSet.getLong(1)).thenReturn(500000L);
+    
+    RowCount rowCount = dao.count(CountStrategy.THRESHOLD, 100000);
+    assertTrue("Should use the estimate above the threshold", rowCount.isEstimated());
+    assertEquals(500000, rowCount.getValue());
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)"));
+    verify(mockPreparedStatement).setString(1, "tests");
+  }
+  
+  @Test
+  public void count_thresholdStrategyBelowThreshold() throws Exception {
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    when(metaData.getDatabaseProductName()).thenReturn("MySQL");
+    when(mockConnection.getMetaData()).thenReturn(metaData);
+    when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+    when(mockResultSet.next()).thenReturn(true);
+    when(mockResultSet.getLong(1)).thenReturn(42L);
+    when(mockResultSet.getInt(1)).thenReturn(41);
+    
+    RowCount rowCount = dao.count(CountStrategy.THRESHOLD, 100000);
+    assertTrue("Should count exactly below the threshold", rowCount.isExact());
+    assertEquals(41, rowCount.getValue());
+    verify(mockConnection).prepareStatement(Matchers.eq("SELECT COUNT(*) FROM tests"));
+  }
+  
+  @Test
+  public void estimateCount_h2() throws Exception {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    // H2 stores unquoted identifiers in upper case, unlike the table name used by the DAO
+    dataSource.setURL("jdbc:h2:mem:estimate_count;DB_CLOSE_DELAY=-1");
+    try(Connection conn = dataSource.getConnection()) {
+      conn.createStatement().execute("CREATE TABLE estimates(id INT PRIMARY KEY)");
+      conn.createStatement().execute("INSERT INTO estimates VALUES (1), (2), (3)");
+    }
+    
+    OptionalInt estimate = new GenericSQLDAO(dataSource, "estimates").estimateCount();
+    assertTrue("H2 should report an estimate", estimate.isPresent());
+    assertEquals(3, estimate.getAsInt());
+  }
+  
+  @Test
+  public void statementPlanReuse() throws Exception {
+    when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+    dao.update(postEntry);
+    dao.update(postEntry);
+    verify(mockConnection, times(2)).prepareStatement(Matchers.eq("UPDATE tests SET value_column = ? WHERE key1_column = ? AND key2_column = ?"));
+    verify(mockResourceProvider, times(1)).getColumnDefinitions();
   }
   
   @Test
@@ -86,4 +284,35 @@ public class GenericSQLDAOTest {
     verify(mockPreparedStatement).setInt(3, 42);
   }
   
+  @Test
+  public void delete() throws Exception {
+    when(mockResourceProvider.getKeyColumns()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("key2_column", ColumnType.integer, true, false)));
+    when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+    dao.delete("42");
+    verify(mockConnection).prepareStatement(Matchers.eq("DELETE FROM tests WHERE key2_column = ?"));
+    verify(mockPreparedStatement).setInt(1, 42);
+  }
+  
+  @Test(expected = DataAccessException.class)
+  public void delete_missingRow() throws Exception {
+    when(mockResourceProvider.getKeyColumns()).thenReturn(ImmutableList.of(
+        new ColumnDefinition("key2_column", ColumnType.integer, true, false)));
+    when(mockPreparedStatement.executeUpdate()).thenReturn(0);
+    dao.delete("42");
+  }
+  
+  @Test
+  public void isAvailable() throws Exception {
+    when(mockConnection.isValid(anyInt())).thenReturn(true);
+    assertTrue(dao.isAvailable());
+    verify(mockConnection).close();
+  }
+  
+  @Test
+  public void isUnavailableWithoutConnection() throws Exception {
+    when(mockDataSource.getConnection()).thenThrow(new SQLException("Connection refused"));
+    assertFalse(dao.isAvailable());
+  }
+  
 }
\ No newline at end of file
@@ -6,10 +6,20 @@ import net.nextpulse.jadmin.FormPostEntry;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -56,7 +66,54 @@ public class InMemoryDAOTest {
   public void selectMultiple() throws Exception {
     List<DatabaseEntry> results = dao.selectMultiple(1, 1, "key1_column", true);
     assertEquals("Should return 1 row", 1, results.size());
-    assertEquals("Should skip the first object and return the second object", formEntry2.toPropertiesMap(), results.get(0).getProperties());
+    assertEquals("Should skip the first object and return the second object", formEntry.toPropertiesMap(), results.get(0).getProperties());
+  }
+  
+  @Test
+  public void selectMultipleIndexed() throws Exception {
+    InMemoryDAO indexed = new InMemoryDAO("value_column");
+    InMemoryDAO unindexed = new InMemoryDAO();
+    for(int i = 0; i < 20; i++) {
+      FormPostEntry entry = new FormPostEntry();
+      entry.addKeyValue("key1_column", "key" + i);
+      entry.addValue("value_column", "value" + (i % 7));
+      indexed.insert(entry);
+      unindexed.insert(entry);
+    }
+    
+    for(boolean ascending : new boolean[]{true, false}) {
+      List<Map<String, Object>> expected = properties(unindexed.selectMultiple(5, 10, "value_column", ascending));
+      assertEquals(10, expected.size());
+      assertEquals("Index and top-k selection should return the same page", expected, properties(indexed.selectMultiple(5, 10, "value_column", ascending)));
+    }
+    List<DatabaseEntry> first = indexed.selectMultiple(0, 3, "value_column", true);
+    assertEquals("value0", first.get(0).getProperties().get("value_column"));
+    assertEquals("Equal values should be ordered by key", "key0", first.get(0).getProperties().get("key1_column"));
+    assertEquals("Keys compare as strings", "key7", first.get(2).getProperties().get("key1_column"));
+  }
+  
+  private static List<Map<String, Object>> properties(List<DatabaseEntry> entries) {
+    return entries.stream().map(DatabaseEntry::getProperties).collect(Collectors.toList());
+  }
+  
+  @Test
+  public void indexFollowsUpdatesAndDeletes() throws Exception {
+    dao.addIndex("value_column");
+    assertTrue(dao.isIndexed("value_column"));
+    
+    FormPostEntry entry = new FormPostEntry();
+    entry.addKeyValue("key1_column", "key1value");
+    entry.addKeyValue("key2_column", "key2value");
+    entry.addValue("value_column", "zzz");
+    dao.update(entry);
+    List<DatabaseEntry> results = dao.selectMultiple(0, 10, "value_column", false);
+    assertEquals(2, results.size());
+    assertEquals("zzz", results.get(0).getProperties().get("value_column"));
+    
+    dao.delete("key1value", "key2value");
+    results = dao.selectMultiple(0, 10, "value_column", false);
+    assertEquals(1, results.size());
+    assertEquals(formEntry2.toPropertiesMap(), results.get(0).getProperties());
   }
   
   @Test
@@ -84,6 +141,81 @@ public class InMemoryDAOTest {
     assertEquals("new value", dao.selectOne("key1value", "key2value").map(x -> x.getProperties().get("value_column")).orElse(""));
   }
   
+  @Test
+  public void snapshotIsolation() throws Exception {
+    InMemoryDAO.Snapshot snapshot = dao.snapshot();
+    
+    FormPostEntry entry = new FormPostEntry();
+    entry.addKeyValue("key1_column", "key3");
+    entry.addKeyValue("key2_column", "key3");
+    entry.addValue("value_column", "value3");
+    dao.insertAll(Collections.singletonList(entry));
+    dao.delete("key1value", "key2value");
+    
+    assertEquals("Snapshot should not see later changes", 2, snapshot.count());
+    assertTrue(snapshot.selectOne("key1value", "key2value").isPresent());
+    assertEquals(2, snapshot.selectMultiple(0, 10, "key1_column", true).size());
+    assertEquals(2, dao.count());
+    assertFalse(dao.selectOne("key1value", "key2value").isPresent());
+  }
+  
+  @Test
+  public void concurrentWritersAndReaders() throws Exception {
+    int writers = 4;
+    int entriesPerWriter = 250;
+    ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    try {
+      List<Future<?>> writes = new ArrayList<>();
+      for(int w = 0; w < writers; w++) {
+        String writer = "writer" + w;
+        writes.add(executor.submit(() -> {
+          for(int i = 0; i < entriesPerWriter; i++) {
+            FormPostEntry entry = new FormPostEntry();
+            entry.addKeyValue("key1_column", writer);
+            entry.addKeyValue("key2_column", String.valueOf(i));
+            entry.addValue("value_column", "inserted");
+            dao.insert(entry);
+            entry.addValue("value_column", "updated");
+            dao.update(entry);
+          }
+          return null;
+        }));
+      }
+      List<Future<?>> reads = new ArrayList<>();
+      for(int r = 0; r < 2; r++) {
+        reads.add(executor.submit(() -> {
+          int lastCount = 0;
+          while(writing.get()) {
+            InMemoryDAO.Snapshot snapshot = dao.snapshot();
+            int count = snapshot.count();
+            assertTrue("Counts should never decrease while only inserting", count >= lastCount);
+            assertEquals("A snapshot should be consistent", count, snapshot.selectMultiple(0, Integer.MAX_VALUE, "key2_column", true).size());
+            lastCount = count;
+          }
+          return null;
+        }));
+      }
+      for(Future<?> write : writes) {
+        write.get(30, TimeUnit.SECONDS);
+      }
+      writing.set(false);
+      for(Future<?> read : reads) {
+        // rethrows the assertion errors of the readers
+        read.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    
+    assertEquals(2 + writers * entriesPerWriter, dao.count());
+    for(int w = 0; w < writers; w++) {
+      Optional<DatabaseEntry> last = dao.selectOne("writer" + w, String.valueOf(entriesPerWriter - 1));
+      assertTrue(last.isPresent());
+      assertEquals("updated", last.get().getProperties().get("value_column"));
+    }
+  }
+  
   @Test
   public void testGenericCompare() throws Exception {
     assertEquals(-1, InMemoryDAO.genericCompare(1, 2));
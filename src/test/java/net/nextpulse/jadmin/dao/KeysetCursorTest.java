@@ -0,0 +1,49 @@
+package net.nextpulse.jadmin.dao;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author yholkamp
+ */
+public class KeysetCursorTest {
+  
+  @Test
+  public void encodeAndDecode() throws Exception {
+    KeysetCursor cursor = new KeysetCursor("2017-01-01 10:00:00", ImmutableList.of("1", "/bar baz"));
+    assertEquals("2017-01-01+10%3A00%3A00/1/%2Fbar+baz", cursor.encode());
+    
+    Optional<KeysetCursor> decoded = KeysetCursor.decode(cursor.encode());
+    assertTrue(decoded.isPresent());
+    assertEquals("2017-01-01 10:00:00", decoded.get().getSortValue());
+    assertEquals(ImmutableList.of("1", "/bar baz"), decoded.get().getKeyValues());
+  }
+  
+  @Test
+  public void decodeInvalidInput() throws Exception {
+    assertFalse(KeysetCursor.decode(null).isPresent());
+    assertFalse(KeysetCursor.decode("").isPresent());
+    assertFalse("Should require at least one key value", KeysetCursor.decode("42").isPresent());
+    assertFalse(KeysetCursor.decode("%zz/1").isPresent());
+  }
+  
+  @Test
+  public void after() throws Exception {
+    DatabaseEntry entry = DatabaseEntry.buildFrom(new HashMap<>(ImmutableMap.of("id", 7, "name", "location7")));
+    assertEquals("location7/7", KeysetCursor.after(entry, "name", ImmutableList.of("id")).map(KeysetCursor::encode).orElse(null));
+    
+    Map<String, Object> withoutSortValue = new HashMap<>();
+    withoutSortValue.put("id", 8);
+    withoutSortValue.put("name", null);
+    assertFalse("Should not create a cursor for a NULL sort value", KeysetCursor.after(DatabaseEntry.buildFrom(withoutSortValue), "name", ImmutableList.of("id")).isPresent());
+  }
+}
@@ -0,0 +1,223 @@
+package net.nextpulse.jadmin.dao;
+
+import net.nextpulse.jadmin.FormPostEntry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author yholkamp
+ */
+public class PersistentInMemoryDAOTest {
+  
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+  
+  private static FormPostEntry entry(String id, String name) {
+    FormPostEntry entry = new FormPostEntry();
+    entry.addKeyValue("id", id);
+    entry.addValue("name", name);
+    return entry;
+  }
+  
+  private static String name(AbstractDAO dao, String id) throws DataAccessException {
+    return dao.selectOne(id).map(e -> (String) e.getProperties().get("name")).orElse(null);
+  }
+  
+  private long logFiles(Path directory) throws Exception {
+    try(Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith("wal-")).count();
+    }
+  }
+  
+  @Test
+  public void recoversFromLog() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(new InMemoryDAO(), directory)) {
+      dao.insert(entry("1", "first"));
+      dao.insert(entry("2", "second"));
+      dao.update(entry("1", "updated"));
+      dao.delete("2");
+    }
+    
+    InMemoryDAO restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertEquals(1, dao.count());
+      assertEquals("updated", name(restored, "1"));
+      assertFalse(restored.selectOne("2").isPresent());
+    }
+  }
+  
+  @Test
+  public void recoversFromSnapshotAndLog() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(new InMemoryDAO(), directory)) {
+      dao.insert(entry("1", "first"));
+      dao.insert(entry("2", "second"));
+      dao.checkpoint();
+      assertTrue(Files.exists(directory.resolve("snapshot.bin")));
+      assertEquals("Should remove logs included in the snapshot", 1, logFiles(directory));
+      dao.insert(entry("3", "third"));
+      dao.delete("1");
+    }
+    
+    InMemoryDAO restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertEquals(2, dao.count());
+      assertEquals("second", name(restored, "2"));
+      assertEquals("third", name(restored, "3"));
+      dao.insert(entry("4", "fourth"));
+    }
+    
+    restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertEquals(3, dao.count());
+      assertEquals("fourth", name(restored, "4"));
+    }
+  }
+  
+  @Test
+  public void ignoresTornRecord() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(new InMemoryDAO(), directory)) {
+      dao.insert(entry("1", "first"));
+    }
+    Path log = directory.resolve("wal-0.log");
+    Files.write(log, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+    
+    InMemoryDAO restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertEquals(1, dao.count());
+      assertEquals("first", name(restored, "1"));
+      assertFalse("Should replace the damaged log by a snapshot", Files.exists(log));
+      dao.insert(entry("2", "second"));
+    }
+    
+    restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertEquals(2, dao.count());
+      assertEquals("second", name(restored, "2"));
+    }
+  }
+  
+  @Test
+  public void stopsReplayAtTornRecord() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(new InMemoryDAO(), directory)) {
+      dao.insert(entry("1", "first"));
+    }
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(new InMemoryDAO(), directory)) {
+      dao.insert(entry("2", "second"));
+    }
+    assertEquals(2, logFiles(directory));
+    Files.write(directory.resolve("wal-0.log"), new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+    
+    InMemoryDAO restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertEquals("Should not replay changes logged after the torn record", 1, dao.count());
+      assertEquals("first", name(restored, "1"));
+      dao.insert(entry("3", "third"));
+    }
+    
+    restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertEquals(2, dao.count());
+      assertFalse(restored.selectOne("2").isPresent());
+      assertEquals("third", name(restored, "3"));
+    }
+  }
+  
+  @Test
+  public void concurrentWritesAreAppliedInLogOrder() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    InMemoryDAO memory = new InMemoryDAO();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(memory, directory)) {
+      List<Future<?>> futures = new ArrayList<>();
+      for(int i = 0; i < 200; i++) {
+        String id = String.valueOf(i % 10);
+        String name = "name" + i;
+        futures.add(executor.submit(() -> {
+          if(!dao.selectOne(id).isPresent()) {
+            try {
+              dao.insert(entry(id, name));
+              return null;
+            } catch(DataAccessException e) {
+              // inserted concurrently, update instead
+            }
+          }
+          dao.update(entry(id, name));
+          return null;
+        }));
+      }
+      for(Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    
+    InMemoryDAO restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertEquals(10, dao.count());
+      for(int i = 0; i < 10; i++) {
+        assertEquals(name(memory, String.valueOf(i)), name(restored, String.valueOf(i)));
+      }
+    }
+  }
+  
+  @Test
+  public void rejectsWritesAfterLogFailure() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    try(FileChannel channel = FileChannel.open(directory.resolve("wal-0.log"), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      // records reach the file, but can never be forced to disk
+      FileChannel failing = mock(FileChannel.class, delegatesTo(channel));
+      doThrow(new IOException("Disk failure")).when(failing).force(anyBoolean());
+      PersistentInMemoryDAO dao = new PersistentInMemoryDAO(new InMemoryDAO(), directory) {
+        @Override
+        WriteAheadLog openLog(Path file) {
+          return new WriteAheadLog(failing);
+        }
+      };
+      try {
+        dao.insert(entry("1", "first"));
+        fail("Expected the failed sync to be reported");
+      } catch(DataAccessException expected) {
+        // expected
+      }
+      try {
+        dao.insert(entry("2", "second"));
+        fail("Expected writes to be rejected after a failed sync");
+      } catch(DataAccessException expected) {
+        // expected
+      }
+      assertEquals(0, dao.count());
+    }
+    
+    InMemoryDAO restored = new InMemoryDAO();
+    try(PersistentInMemoryDAO dao = new PersistentInMemoryDAO(restored, directory)) {
+      assertFalse("Rejected write should not be replayed", restored.selectOne("2").isPresent());
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package net.nextpulse.jadmin.dao;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author yholkamp
+ */
+public class PersistentTreeMapTest {
+  
+  @Test
+  public void matchesTreeMap() {
+    Random random = new Random(42);
+    TreeMap<Integer, String> expected = new TreeMap<>();
+    PersistentTreeMap<Integer, String> map = PersistentTreeMap.empty();
+    for(int i = 0; i < 5000; i++) {
+      Integer key = random.nextInt(500);
+      if(random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.remove(key);
+      } else {
+        expected.put(key, "value" + i);
+        map = map.put(key, "value" + i);
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    for(int key = 0; key < 500; key++) {
+      assertEquals(expected.get(key), map.get(key));
+    }
+    
+    List<String> ascending = new ArrayList<>(expected.values());
+    List<String> descending = new ArrayList<>(expected.descendingMap().values());
+    for(int offset = 0; offset <= expected.size() + 1; offset += 7) {
+      assertEquals(page(ascending, offset, 10), map.values(offset, 10, true));
+      assertEquals(page(descending, offset, 10), map.values(offset, 10, false));
+    }
+    
+    List<Integer> keys = new ArrayList<>();
+    map.forEach((key, value) -> keys.add(key));
+    assertEquals(new ArrayList<>(expected.keySet()), keys);
+  }
+  
+  @Test
+  public void changesDoNotAffectEarlierVersions() {
+    PersistentTreeMap<Integer, String> first = PersistentTreeMap.<Integer, String>empty().put(1, "a").put(2, "b");
+    PersistentTreeMap<Integer, String> second = first.put(1, "c").remove(2);
+    
+    assertEquals("a", first.get(1));
+    assertEquals("b", first.get(2));
+    assertEquals("c", second.get(1));
+    assertNull(second.get(2));
+    assertSame("Removing a missing key should return the same map", second, second.remove(3));
+  }
+  
+  private static List<String> page(List<String> values, int offset, int count) {
+    return values.stream().skip(offset).limit(count).collect(Collectors.toList());
+  }
+}
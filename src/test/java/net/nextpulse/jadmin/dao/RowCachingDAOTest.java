@@ -0,0 +1,118 @@
+package net.nextpulse.jadmin.dao;
+
+import com.google.common.collect.ImmutableMap;
+import net.nextpulse.jadmin.FormPostEntry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author yholkamp
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class RowCachingDAOTest {
+  
+  @Mock
+  private AbstractDAO delegate;
+  private RowCachingDAO dao;
+  private DatabaseEntry entry;
+  
+  @Before
+  public void setUp() throws Exception {
+    dao = new RowCachingDAO(delegate, 100, Duration.ofMinutes(5));
+    entry = DatabaseEntry.buildFrom(new HashMap<>(ImmutableMap.of("id", "1", "name", "first")));
+  }
+  
+  @Test
+  public void selectOne_cached() throws Exception {
+    when(delegate.selectOne("1")).thenReturn(Optional.of(entry));
+    
+    assertEquals(entry.getProperties(), dao.selectOne("1").get().getProperties());
+    assertEquals("Typed keys should share the cached entry", entry.getProperties(), dao.selectOne(1).get().getProperties());
+    
+    verify(delegate, times(1)).selectOne("1");
+    assertEquals(1, dao.getHitCount());
+    assertEquals(1, dao.getMissCount());
+    assertEquals(0.5, dao.getHitRatio(), 0.0001);
+  }
+  
+  @Test
+  public void selectOne_missingNotCached() throws Exception {
+    when(delegate.selectOne("2")).thenReturn(Optional.empty());
+    
+    assertFalse(dao.selectOne("2").isPresent());
+    assertFalse(dao.selectOne("2").isPresent());
+    
+    verify(delegate, times(2)).selectOne("2");
+  }
+  
+  @Test
+  public void selectOne_invalidatedByWrites() throws Exception {
+    when(delegate.selectOne("1")).thenReturn(Optional.of(entry));
+    dao.selectOne("1");
+    
+    FormPostEntry postEntry = new FormPostEntry();
+    postEntry.addKeyValue("id", "1");
+    postEntry.addValue("name", "updated");
+    dao.update(postEntry);
+    dao.selectOne("1");
+    dao.delete("1");
+    dao.selectOne("1");
+    
+    verify(delegate, times(3)).selectOne("1");
+  }
+  
+  @Test
+  public void selectOne_callersReceiveCopies() throws Exception {
+    ColumnIndex columns = new ColumnIndex("id", "name");
+    when(delegate.selectOne("1")).thenReturn(Optional.of(DatabaseEntry.buildFrom(columns, new Object[]{"1", "first"})));
+    
+    dao.selectOne("1").get().getProperties().put("name", "changed");
+    DatabaseEntry cached = dao.selectOne("1").get();
+    cached.getProperties().put("name", "changed again");
+    
+    assertEquals("first", dao.selectOne("1").get().getProperties().get("name"));
+    verify(delegate, times(1)).selectOne("1");
+  }
+  
+  @Test
+  public void selectOne_notCachedWhenWrittenDuringRetrieval() throws Exception {
+    FormPostEntry postEntry = new FormPostEntry();
+    postEntry.addKeyValue("id", "1");
+    when(delegate.selectOne("1")).thenAnswer(invocation -> {
+      // an update that is in progress while the entry is retrieved
+      dao.update(postEntry);
+      return Optional.of(entry);
+    });
+    
+    dao.selectOne("1");
+    dao.selectOne("1");
+    
+    verify(delegate, times(2)).selectOne("1");
+  }
+  
+  @Test
+  public void selectOne_evictedByWeight() throws Exception {
+    dao = new RowCachingDAO(delegate, 1, Duration.ofMinutes(5));
+    when(delegate.selectOne("1")).thenReturn(Optional.of(entry));
+    
+    dao.selectOne("1");
+    dao.selectOne("1");
+    
+    verify(delegate, times(2)).selectOne("1");
+    assertTrue("Entries heavier than the maximum weight should be evicted", dao.getEvictionCount() > 0);
+  }
+}
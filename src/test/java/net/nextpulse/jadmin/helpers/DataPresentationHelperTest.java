@@ -2,7 +2,15 @@ package net.nextpulse.jadmin.helpers;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dao.DatabaseEntry;
 import org.junit.Test;
+import testhelpers.BatchColumnResources;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.*;
 
@@ -15,9 +23,47 @@ public class DataPresentationHelperTest {
   public void extractUrlEncodedPK() throws Exception {
     String output = DataPresentationHelper.extractUrlEncodedPK(ImmutableList.of("id", "secondId"), ImmutableMap.of("id", 1, "secondId", "\\baz"));
     assertEquals("1/%5Cbaz", output);
-  
+    
     String output2 = DataPresentationHelper.extractUrlEncodedPK(ImmutableList.of("id", "secondId"), ImmutableMap.of("id", 1, "secondId", "/barbar/"));
     assertEquals("1/%2Fbarbar%2F", output2);
   }
   
-}
\ No newline at end of file
+  @Test
+  public void transformDatabaseResults_batchColumn() throws Exception {
+    Resource resource = BatchColumnResources.idAndName();
+    List<Map<String, Object>> results = DataPresentationHelper.transformDatabaseResults(resource, ImmutableList.of(
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "foo")),
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 2, "name", "bar"))));
+    
+    assertEquals(2, results.size());
+    assertEquals("foo (1/2)", results.get(0).get("name"));
+    assertEquals("bar (2/2)", results.get(1).get("name"));
+    assertEquals("#2", results.get(1).get("id"));
+    assertEquals("2", results.get(1).get("DT_RowId"));
+  }
+  
+  @Test
+  public void applyBatchTransformers_parallel() throws Exception {
+    Resource resource = BatchColumnResources.idAndName();
+    resource.setParallelBatchColumns(true);
+    List<DatabaseEntry> rows = ImmutableList.of(DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "foo")));
+    
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<List<String>> values = DataPresentationHelper.applyBatchTransformers(resource.getRenderPlan(), rows, executor);
+      assertEquals(ImmutableList.of("#1"), values.get(0));
+      assertEquals(ImmutableList.of("foo (1/1)"), values.get(1));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  @Test(expected = IllegalStateException.class)
+  public void applyBatchTransformers_invalidSize() throws Exception {
+    Resource resource = BatchColumnResources.idAndName();
+    resource.addBatchColumn("name", values -> ImmutableList.of());
+    DataPresentationHelper.applyBatchTransformers(resource.getRenderPlan(),
+        ImmutableList.of(DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "foo"))), null);
+  }
+  
+}
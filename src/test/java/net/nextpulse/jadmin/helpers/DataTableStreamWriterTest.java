@@ -0,0 +1,85 @@
+package net.nextpulse.jadmin.helpers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.ColumnType;
+import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dao.DatabaseEntry;
+import org.junit.Test;
+import testhelpers.BatchColumnResources;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author yholkamp
+ */
+public class DataTableStreamWriterTest {
+  
+  @Test
+  public void writeRow_listPageColumns() throws Exception {
+    Resource resource = new Resource("tests");
+    resource.getColumnDefinitions().add(new ColumnDefinition("id", ColumnType.integer, true, false));
+    resource.getColumnDefinitions().add(new ColumnDefinition("name", ColumnType.string));
+    resource.getColumnDefinitions().add(new ColumnDefinition("secret", ColumnType.string));
+    resource.getIndexColumns().addAll(ImmutableList.of("id", "name"));
+    
+    StringWriter out = new StringWriter();
+    DataTableStreamWriter writer = new DataTableStreamWriter(resource, out);
+    writer.begin(3);
+    writer.writeRow(DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "foo", "secret", "bar")));
+    writer.end(1, false, false, null);
+    
+    JsonObject response = new JsonParser().parse(out.toString()).getAsJsonObject();
+    assertEquals(3, response.get("draw").getAsInt());
+    assertEquals(1, response.get("recordsFiltered").getAsInt());
+    JsonObject row = response.getAsJsonArray("data").get(0).getAsJsonObject();
+    assertEquals("foo", row.get("name").getAsString());
+    assertEquals("1", row.get("DT_RowId").getAsString());
+    assertFalse("Columns not shown on the list page should be omitted", row.has("secret"));
+  }
+  
+  @Test
+  public void writeRows_batchColumn() throws Exception {
+    Resource resource = BatchColumnResources.idAndName();
+    
+    StringWriter out = new StringWriter();
+    DataTableStreamWriter writer = new DataTableStreamWriter(resource, out);
+    writer.begin(0);
+    writer.writeRows(ImmutableList.of(
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "foo")),
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 2, "name", "bar"))), null);
+    writer.end(2, false, false, null);
+    
+    JsonArray rows = new JsonParser().parse(out.toString()).getAsJsonObject().getAsJsonArray("data");
+    assertEquals(2, rows.size());
+    assertEquals(2, writer.getRowCount());
+    assertEquals("foo (1/2)", rows.get(0).getAsJsonObject().get("name").getAsString());
+    assertEquals("bar (2/2)", rows.get(1).getAsJsonObject().get("name").getAsString());
+    assertEquals("#2", rows.get(1).getAsJsonObject().get("id").getAsString());
+    assertEquals("2", rows.get(1).getAsJsonObject().get("DT_RowId").getAsString());
+  }
+  
+  @Test
+  public void fail_reportsErrorAfterRows() throws Exception {
+    Resource resource = new Resource("tests");
+    resource.getColumnDefinitions().add(new ColumnDefinition("id", ColumnType.integer, true, false));
+    resource.getIndexColumns().add("id");
+    
+    StringWriter out = new StringWriter();
+    DataTableStreamWriter writer = new DataTableStreamWriter(resource, out);
+    writer.begin(1);
+    writer.writeRow(DatabaseEntry.buildFrom(ImmutableMap.of("id", 1)));
+    writer.fail("Could not count the entries");
+    
+    JsonObject response = new JsonParser().parse(out.toString()).getAsJsonObject();
+    assertEquals(1, response.getAsJsonArray("data").size());
+    assertEquals("Could not count the entries", response.get("error").getAsString());
+    assertFalse(response.has("recordsFiltered"));
+  }
+}
@@ -0,0 +1,101 @@
+package net.nextpulse.jadmin.helpers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.ColumnType;
+import net.nextpulse.jadmin.Resource;
+import net.nextpulse.jadmin.dao.AbstractDAO;
+import net.nextpulse.jadmin.dao.DatabaseEntry;
+import net.nextpulse.jadmin.exceptions.ConfigurationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author yholkamp
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ReferenceLabelsTest {
+  
+  @Mock
+  private AbstractDAO mockDao;
+  private Resource users;
+  
+  @Before
+  public void setUp() throws Exception {
+    users = new Resource("users");
+    users.setDao(mockDao);
+    users.getColumnDefinitions().add(new ColumnDefinition("id", ColumnType.integer, true, false));
+    users.getColumnDefinitions().add(new ColumnDefinition("name", ColumnType.string));
+  }
+  
+  @Test
+  public void resolve() throws Exception {
+    when(mockDao.selectByKeys(ImmutableSet.of("1", "2", "3"))).thenReturn(ImmutableList.of(
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "alice")),
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 2, "name", "bob"))));
+    
+    ReferenceLabels labels = users.getReferenceLabels();
+    assertEquals(Arrays.asList("alice", "bob", "alice", null, "3"), labels.resolve("name", Arrays.asList(1, 2, 1, null, 3)));
+    
+    // cached labels are not retrieved again, missing keys are
+    when(mockDao.selectByKeys(ImmutableSet.of("3"))).thenReturn(Collections.emptyList());
+    assertEquals(Arrays.asList("bob", "3"), labels.resolve("name", Arrays.asList(2, 3)));
+    verify(mockDao, times(2)).selectByKeys(any());
+  }
+  
+  @Test
+  public void invalidate() throws Exception {
+    when(mockDao.selectByKeys(ImmutableSet.of("1"))).thenReturn(ImmutableList.of(
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "alice"))));
+    
+    ReferenceLabels labels = users.getReferenceLabels();
+    labels.resolve("name", Collections.singletonList(1));
+    labels.invalidate();
+    labels.resolve("name", Collections.singletonList(1));
+    verify(mockDao, times(2)).selectByKeys(any());
+  }
+  
+  @Test
+  public void search() throws Exception {
+    when(mockDao.selectByPrefix("name", "al", ReferenceLabels.OPTION_LIMIT)).thenReturn(ImmutableList.of(
+        DatabaseEntry.buildFrom(ImmutableMap.of("id", 1, "name", "alice"))));
+    
+    ReferenceLabels labels = users.getReferenceLabels();
+    List<Tuple2<String, String>> options = labels.search("name", "al");
+    assertEquals(ImmutableList.of(new Tuple2<>("1", "alice")), options);
+    assertEquals(options, labels.search("name", "al"));
+    verify(mockDao, times(1)).selectByPrefix("name", "al", ReferenceLabels.OPTION_LIMIT);
+  }
+  
+  @Test
+  public void resolveReferences() throws Exception {
+    Resource posts = new Resource("posts");
+    posts.getColumnDefinitions().add(new ColumnDefinition("id", ColumnType.integer, true, false));
+    posts.getColumnDefinitions().add(new ColumnDefinition("author_id", ColumnType.integer).setReferencedTable("USERS"));
+    posts.addReferenceColumn("author_id", null, "name");
+    
+    posts.resolveReferences(ImmutableMap.of("users", users, "posts", posts));
+    assertTrue(posts.compile().getBatchTransformer(0) instanceof ReferenceLabelTransformer);
+  }
+  
+  @Test(expected = ConfigurationException.class)
+  public void addReferenceColumn_withoutForeignKey() throws Exception {
+    users.addReferenceColumn("name", null, "name");
+  }
+}
@@ -0,0 +1,57 @@
+package net.nextpulse.jadmin.helpers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.ColumnType;
+import net.nextpulse.jadmin.Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author yholkamp
+ */
+public class RenderPlanTest {
+  private Resource resource;
+  
+  @Before
+  public void setUp() throws Exception {
+    resource = new Resource("tests");
+    resource.getColumnDefinitions().add(new ColumnDefinition("id", ColumnType.integer, true, false));
+    resource.getColumnDefinitions().add(new ColumnDefinition("name", ColumnType.string, true, true));
+    resource.getColumnDefinitions().add(new ColumnDefinition("comment", ColumnType.text));
+    resource.addColumn("name", value -> "<" + value + ">");
+    resource.addColumn("unknown");
+  }
+  
+  @Test
+  public void compile() throws Exception {
+    RenderPlan plan = resource.compile();
+    
+    assertEquals(ImmutableList.of("name", "unknown"), plan.getIndexColumns());
+    assertEquals("Only columns with a definition should be rendered", 1, plan.getDisplayedColumnCount());
+    assertEquals("<foo>", plan.transform(0, "foo"));
+    assertEquals(ImmutableList.of("id", "name"), plan.getKeyColumns());
+    assertEquals(ImmutableList.of("name", "unknown", "id"), ImmutableList.copyOf(plan.getProjection()));
+  }
+  
+  @Test
+  public void encodeKey() throws Exception {
+    RenderPlan plan = resource.compile();
+    assertEquals("12/%2Fbar%2F", plan.encodeKey(ImmutableMap.of("id", 12, "name", "/bar/")));
+  }
+  
+  @Test
+  public void getRenderPlan_invalidatedByChanges() throws Exception {
+    RenderPlan plan = resource.getRenderPlan();
+    assertSame("Should reuse the compiled plan", plan, resource.getRenderPlan());
+    
+    resource.addColumn("comment");
+    assertNotSame("Should compile a new plan after a change", plan, resource.getRenderPlan());
+    assertEquals(2, resource.getRenderPlan().getDisplayedColumnCount());
+  }
+}
@@ -0,0 +1,67 @@
+package net.nextpulse.jadmin.helpers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author yholkamp
+ */
+public class ResponseCacheTest {
+  
+  private static final String RESPONSE = "{\"draw\":0,\"recordsTotal\":1,\"data\":[]}";
+  
+  @Test
+  public void writesCachedBodyWithRequestedDraw() throws Exception {
+    ResponseCache cache = new ResponseCache(1024, Duration.ofMinutes(1));
+    long generation = cache.getGeneration("users");
+    assertNull(cache.get("users", generation, "0/10"));
+    cache.put("users", generation, "0/10", RESPONSE.getBytes(StandardCharsets.UTF_8));
+    
+    ByteBuffer body = cache.get("users", generation, "0/10");
+    assertNotNull(body);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ResponseCache.write(body, 42, out);
+    assertEquals("{\"draw\":42,\"recordsTotal\":1,\"data\":[]}", out.toString("UTF-8"));
+    
+    // every lookup returns an independent view of the cached body
+    out.reset();
+    ResponseCache.write(cache.get("users", generation, "0/10"), 7, out);
+    assertEquals("{\"draw\":7,\"recordsTotal\":1,\"data\":[]}", out.toString("UTF-8"));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+  
+  @Test
+  public void invalidateDiscardsPagesOfResource() {
+    ResponseCache cache = new ResponseCache(1024, Duration.ofMinutes(1));
+    long generation = cache.getGeneration("users");
+    cache.put("users", generation, "0/10", RESPONSE.getBytes(StandardCharsets.UTF_8));
+    cache.put("roles", cache.getGeneration("roles"), "0/10", RESPONSE.getBytes(StandardCharsets.UTF_8));
+    
+    cache.invalidate("users");
+    assertNull(cache.get("users", cache.getGeneration("users"), "0/10"));
+    assertNotNull(cache.get("roles", cache.getGeneration("roles"), "0/10"));
+  }
+  
+  @Test
+  public void pageRetrievedDuringChangeIsNotCached() {
+    ResponseCache cache = new ResponseCache(1024, Duration.ofMinutes(1));
+    long generation = cache.getGeneration("users");
+    cache.invalidate("users");
+    ByteBuffer body = cache.put("users", generation, "0/10", RESPONSE.getBytes(StandardCharsets.UTF_8));
+    
+    assertEquals(RESPONSE.length() - "{\"draw\":0".length(), body.remaining());
+    assertNull(cache.get("users", cache.getGeneration("users"), "0/10"));
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsResponseWithOtherDraw() {
+    new ResponseCache(1024, Duration.ofMinutes(1)).put("users", 0, "0/10", "{\"draw\":3}".getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,30 @@
+package testhelpers;
+
+import net.nextpulse.jadmin.ColumnDefinition;
+import net.nextpulse.jadmin.ColumnType;
+import net.nextpulse.jadmin.Resource;
+
+import java.util.stream.Collectors;
+
+/**
+ * Builds resources with batch column transformers shared by the rendering tests.
+ */
+public class BatchColumnResources {
+  
+  private BatchColumnResources() {
+  }
+  
+  /**
+   * @return a resource with an id column rendered as "#id" and a name column rendered as "name (row/rows)"
+   */
+  public static Resource idAndName() {
+    Resource resource = new Resource("tests");
+    resource.getColumnDefinitions().add(new ColumnDefinition("id", ColumnType.integer, true, false));
+    resource.getColumnDefinitions().add(new ColumnDefinition("name", ColumnType.string));
+    resource.addBatchColumn("id", values -> values.stream().map(value -> "#" + value).collect(Collectors.toList()));
+    resource.addBatchColumn("name", values -> values.stream()
+        .map(value -> value + " (" + (values.indexOf(value) + 1) + "/" + values.size() + ")")
+        .collect(Collectors.toList()));
+    return resource;
+  }
+}